@@ -3,6 +3,8 @@
 plugins {
     alias(libs.plugins.develocity.api.models)
     alias(libs.plugins.application)
+    alias(libs.plugins.java.test.fixtures)
+    alias(libs.plugins.jmh)
 }
 
 group = "dev.erichaag"
@@ -10,6 +12,9 @@ version = "0.0.2"
 
 dependencies {
     implementation("org.apache.commons:commons-math3:3.6.1")
+    testFixturesImplementation(libs.jackson.databind)
+    jmhImplementation(testFixtures(project))
+    jmhImplementation(libs.jackson.databind)
 }
 
 application {
@@ -23,6 +28,7 @@ distributions {
         contents {
             from(layout.projectDirectory.file("config.properties"))
             from(layout.projectDirectory.file("README.md"))
+            from(layout.projectDirectory.file("develocity-failure-insights.jfc"))
         }
     }
 }
@@ -37,6 +43,29 @@ val test by testing.suites.getting(JvmTestSuite::class) {
     useJUnitJupiter()
 }
 
+val runStandInServer by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Runs a local stand-in for the Develocity builds API. Pass options with --args, e.g. --args='--port=8080 --latency=50'."
+    classpath = sourceSets["testFixtures"].runtimeClasspath
+    mainClass = "dev.erichaag.develocity.api.StandInServer"
+}
+
+val runScaleTest by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Feeds a synthetic build history through the incident tracker and report. Pass options with --args, e.g. --args='--scenario=medium'."
+    classpath = sourceSets["testFixtures"].runtimeClasspath
+    mainClass = "dev.erichaag.develocity.core.ScaleTest"
+    maxHeapSize = providers.gradleProperty("scaleTestMaxHeapSize").getOrElse("8g")
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    profilers = listOf("gc")
+    includes = providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(listOf())
+}
+
 develocityApi {
     version = "2024.1"
 }
@@ -0,0 +1,66 @@
+package dev.erichaag.develocity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ArchiveBenchmark {
+
+    private static final int tables = 40;
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    private String table;
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        final var table = new StringBuilder("User,Project,Failures,Mean,Median,Min,Max,P5,P25,P75,P95");
+        for (int i = 0; i < rows; i++) {
+            table.append("\nuser-").append(i).append(",project-").append(i % 100).append(",").append(i).append(",1m 2s,45s,1s,3h 2m 1s,2s,10s,2m,1h");
+        }
+        this.table = table.toString();
+        this.directory = Files.createTempDirectory("archive-benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Path writeArchive() {
+        try (var archive = new Archive(directory.resolve("reports.zip"))) {
+            for (int i = 0; i < tables; i++) {
+                archive.write("table_" + i + ".csv", table);
+            }
+            return archive.create();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ApiBuildDecodingBenchmark {
+
+    private static final ObjectMapper objectMapper = new JsonMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Param({"100", "1000"})
+    public int buildsPerPage;
+
+    private byte[] page;
+
+    @Setup
+    public void setup() throws IOException {
+        page = objectMapper.writeValueAsBytes(SyntheticBuildHistory.generateList(Profile.named("small").withBuilds(buildsPerPage)));
+    }
+
+    @Benchmark
+    public List<ApiBuild> bindAll() throws IOException {
+        return objectMapper.readValue(page, new TypeReference<>() {});
+    }
+
+    @Benchmark
+    public void decodeHeaders(Blackhole blackhole) {
+        LazyApiBuild.ofArray(page).forEach(it -> blackhole.consume(it.toBuild().getId()));
+    }
+
+    @Benchmark
+    public void decodeAttributes(Blackhole blackhole) {
+        LazyApiBuild.ofArray(page).forEach(it -> {
+            switch (it.toBuild()) {
+                case GradleBuild b -> blackhole.consume(b.getAttributes());
+                case MavenBuild b -> blackhole.consume(b.getAttributes());
+                default -> blackhole.consume(it);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,88 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_ATTRIBUTES;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuildCacheBenchmark {
+
+    private static final Set<BuildModel> buildModels = Set.of(GRADLE_ATTRIBUTES, MAVEN_ATTRIBUTES);
+
+    @Param({"1000", "10000"})
+    public int builds;
+
+    @Param({"JSON", "BINARY", "COMPRESSED"})
+    public CacheFormat format;
+
+    private List<Build> history;
+    private Path directory;
+    private BuildCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        history = SyntheticBuildHistory.generate(Profile.named("small").withBuilds(builds)).map(Build::from).toList();
+        directory = Files.createTempDirectory("build-cache-benchmark");
+        cache = new BuildCache(directory, format);
+        history.forEach(it -> cache.write(new CachedBuild(buildModels, it)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            //noinspection ResultOfMethodCallIgnored
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) {
+        history.forEach(it -> blackhole.consume(cache.read(it.getId())));
+    }
+
+    @Benchmark
+    public void readAndDecodeAttributes(Blackhole blackhole) {
+        history.forEach(it -> cache.read(it.getId()).map(CachedBuild::asBuild).ifPresent(build -> {
+            switch (build) {
+                case GradleBuild b -> blackhole.consume(b.getAttributes());
+                case MavenBuild b -> blackhole.consume(b.getAttributes());
+                default -> blackhole.consume(build);
+            }
+        }));
+    }
+
+    @Benchmark
+    public void write() {
+        history.forEach(it -> cache.write(new CachedBuild(buildModels, it)));
+    }
+
+}
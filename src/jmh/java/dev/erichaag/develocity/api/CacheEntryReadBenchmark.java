@@ -0,0 +1,80 @@
+package dev.erichaag.develocity.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Compares reading a cache entry into the heap with mapping it and copying it out, by entry size, which is what
+ * {@link BuildCache#mapThreshold} is chosen from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CacheEntryReadBenchmark {
+
+    @Param({"16384", "65536", "262144", "1048576", "4194304"})
+    public int size;
+
+    private Path directory;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("cache-entry-read-benchmark");
+        file = directory.resolve("entry.json");
+        Files.write(file, new byte[size]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            //noinspection ResultOfMethodCallIgnored
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        return copyOut(false);
+    }
+
+    @Benchmark
+    public byte[] map() throws IOException {
+        return copyOut(true);
+    }
+
+    // the build JSON ends up in a byte array either way, so both are measured up to that copy
+    private byte[] copyOut(boolean mapped) throws IOException {
+        try (var channel = FileChannel.open(file, READ)) {
+            final var buffer = BuildCache.readBuffer(channel, mapped);
+            if (buffer.hasArray()) return buffer.array();
+            final var bytes = new byte[buffer.limit()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+    }
+
+}
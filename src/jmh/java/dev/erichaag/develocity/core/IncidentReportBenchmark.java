@@ -0,0 +1,69 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.GradleBuild;
+import dev.erichaag.develocity.api.MavenBuild;
+import dev.erichaag.develocity.api.SyntheticBuildHistory;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+import static java.time.ZoneId.systemDefault;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IncidentReportBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int builds;
+
+    private IncidentTracker tracker;
+    private ZonedDateTime since;
+    private ZonedDateTime until;
+
+    @Setup
+    public void setup() {
+        final var profile = Profile.named("medium").withBuilds(builds);
+        tracker = new IncidentTracker();
+        SyntheticBuildHistory.generate(profile).map(Build::from).forEach(build -> {
+            switch (build) {
+                case GradleBuild b -> tracker.onGradleBuild(b);
+                case MavenBuild b -> tracker.onMavenBuild(b);
+                default -> {
+                }
+            }
+        });
+        tracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        since = profile.start().atZone(systemDefault());
+        until = profile.end().atZone(systemDefault());
+    }
+
+    @Benchmark
+    public IncidentReport report() {
+        return new IncidentReport(tracker, since, until, null);
+    }
+
+    @Benchmark
+    public IncidentReport reportExcludingOutliers() {
+        return new IncidentReport(tracker, since, until, 95);
+    }
+
+}
@@ -0,0 +1,95 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.GradleBuild;
+import dev.erichaag.develocity.api.MavenBuild;
+import dev.erichaag.develocity.api.SyntheticBuildHistory;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import dev.erichaag.develocity.core.IncidentTracker.BuildView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Instant.ofEpochMilli;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IncidentTrackerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int builds;
+
+    private List<Build> history;
+    private List<BuildView> buildViews;
+
+    @Setup
+    public void setup() {
+        history = SyntheticBuildHistory.generate(Profile.named("small").withBuilds(builds)).map(Build::from).toList();
+        buildViews = history.stream().map(IncidentTrackerBenchmark::toBuildView).sorted().toList();
+    }
+
+    @Benchmark
+    public IncidentTracker onBuilds() {
+        final var tracker = new IncidentTracker();
+        history.forEach(build -> {
+            switch (build) {
+                case GradleBuild b -> tracker.onGradleBuild(b);
+                case MavenBuild b -> tracker.onMavenBuild(b);
+                default -> {
+                }
+            }
+        });
+        tracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        return tracker;
+    }
+
+    @Benchmark
+    public IncidentTracker processBuild() {
+        final var tracker = new IncidentTracker();
+        buildViews.forEach(tracker::processBuild);
+        return tracker;
+    }
+
+    private static BuildView toBuildView(Build build) {
+        return switch (build) {
+            case GradleBuild b -> b.getAttributes().map(it -> new BuildView(
+                    it.getEnvironment().getUsername(),
+                    it.getRootProjectName(),
+                    it.getRequestedTasks(),
+                    it.getTags(),
+                    it.getValues(),
+                    it.getHasFailed(),
+                    ofEpochMilli(it.getBuildStartTime()),
+                    ofMillis(it.getBuildDuration()))).orElseThrow();
+            case MavenBuild b -> b.getAttributes().map(it -> new BuildView(
+                    it.getEnvironment().getUsername(),
+                    it.getTopLevelProjectName(),
+                    it.getRequestedGoals(),
+                    it.getTags(),
+                    it.getValues(),
+                    it.getHasFailed(),
+                    ofEpochMilli(it.getBuildStartTime()),
+                    ofMillis(it.getBuildDuration()))).orElseThrow();
+            default -> throw new IllegalArgumentException("Unexpected build " + build);
+        };
+    }
+
+}
@@ -0,0 +1,95 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.GradleBuild;
+import dev.erichaag.develocity.api.MavenBuild;
+import dev.erichaag.develocity.api.SyntheticBuildHistory;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.time.ZoneId.systemDefault;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares a provisional report, after the last builds of a run in progress touched some of its incident keys, with a
+ * full report of the same incidents, which is what every provisional report used to cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProvisionalReportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int builds;
+
+    @Param({"1000"})
+    public int buildsSinceLastReport;
+
+    private IncidentTracker tracker;
+    private IncidentTracker finishedTracker;
+    private ProvisionalIncidents provisionalIncidents;
+    private List<Build> lastBuilds;
+    private ZonedDateTime since;
+    private ZonedDateTime until;
+
+    @Setup
+    public void setup() {
+        final var profile = Profile.named("medium").withBuilds(builds);
+        final var history = SyntheticBuildHistory.generate(profile).map(Build::from).toList();
+        tracker = new IncidentTracker();
+        finishedTracker = new IncidentTracker();
+        since = profile.start().atZone(systemDefault());
+        until = profile.end().atZone(systemDefault());
+        provisionalIncidents = new ProvisionalIncidents(List.of(tracker), since, null);
+        history.forEach(it -> track(tracker, it));
+        history.forEach(it -> track(finishedTracker, it));
+        finishedTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        provisionalIncidents.report(until);
+        lastBuilds = history.subList(history.size() - buildsSinceLastReport, history.size());
+    }
+
+    // the builds are tracked again, which leaves their incidents as they are but has them worked out again
+    @Setup(Level.Invocation)
+    public void trackLastBuilds() {
+        lastBuilds.forEach(it -> track(tracker, it));
+    }
+
+    @Benchmark
+    public IncidentReport provisionalReport() {
+        return provisionalIncidents.report(until);
+    }
+
+    @Benchmark
+    public IncidentReport fullReport() {
+        return new IncidentReport(finishedTracker, since, until, null);
+    }
+
+    private static void track(IncidentTracker tracker, Build build) {
+        switch (build) {
+            case GradleBuild b -> tracker.onGradleBuild(b);
+            case MavenBuild b -> tracker.onMavenBuild(b);
+            default -> {
+            }
+        }
+    }
+
+}
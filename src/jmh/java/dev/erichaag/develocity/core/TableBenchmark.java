@@ -0,0 +1,36 @@
+package dev.erichaag.develocity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TableBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int rows;
+
+    @Benchmark
+    public String render() {
+        final var table = Table.withHeader("User", "Project", "Failures", "Mean", "Median", "Min", "Max", "P5", "P25", "P75", "P95");
+        for (int i = 0; i < rows; i++) {
+            table.row("user-" + i, "project-" + (i % 100), i, "1m 2s", "45s", "1s", "3h 2m 1s", "2s", "10s", "2m", "1h");
+        }
+        return table.toString();
+    }
+
+}
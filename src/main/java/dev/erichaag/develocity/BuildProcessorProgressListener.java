@@ -1,5 +1,6 @@
 package dev.erichaag.develocity;
 
+import dev.erichaag.develocity.Configuration.ConfigurationProperties;
 import dev.erichaag.develocity.api.Build;
 import dev.erichaag.develocity.api.BuildProcessorListener;
 
@@ -25,6 +26,7 @@ final class BuildProcessorProgressListener implements BuildProcessorListener {
     private static final DateTimeFormatter formatter = ofPattern("LLL d uuuu HH:mm z");
 
     private final URI serverUrl;
+    private final String prefix;
 
     private Thread progressThread;
     private AtomicBoolean inProgress;
@@ -36,7 +38,16 @@ final class BuildProcessorProgressListener implements BuildProcessorListener {
     private int fetched = 0;
 
     public BuildProcessorProgressListener(URI serverUrl) {
+        this(serverUrl, false);
+    }
+
+    /**
+     * @param prefixWithServer whether to prefix each line with the server name, to tell apart the progress of
+     *                         servers processed concurrently
+     */
+    public BuildProcessorProgressListener(URI serverUrl, boolean prefixWithServer) {
         this.serverUrl = serverUrl;
+        this.prefix = prefixWithServer ? "[" + ConfigurationProperties.serverName(serverUrl) + "] " : "";
     }
 
     @Override
@@ -117,8 +128,8 @@ final class BuildProcessorProgressListener implements BuildProcessorListener {
         }
     }
 
-    private static void print(String format, Object... args) {
-        System.out.printf(ISO_LOCAL_TIME.format(LocalTime.now().truncatedTo(SECONDS)) + " - " + format, args);
+    private void print(String format, Object... args) {
+        System.out.printf(ISO_LOCAL_TIME.format(LocalTime.now().truncatedTo(SECONDS)) + " - " + prefix + format, args);
     }
 
 }
@@ -1,22 +1,41 @@
 package dev.erichaag.develocity;
 
+import dev.erichaag.develocity.api.BuildQuery;
+import dev.erichaag.develocity.api.CacheFormat;
+import dev.erichaag.develocity.api.CacheRetention;
+import dev.erichaag.develocity.api.RequestHedging;
+import dev.erichaag.develocity.core.Sample;
+import dev.erichaag.develocity.core.Shard;
+
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static java.lang.Integer.parseInt;
 import static java.time.ZoneId.systemDefault;
+import static java.util.function.Predicate.not;
 
 final class Configuration {
 
     private static final String configurationFile = "config.properties";
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("LLL d uuuu kk:mm");
     private static final int defaultMaxBuildsPerRequest = 100;
+    private static final int defaultMaxHedgedRequestsPercent = 10;
+    private static final Duration defaultPollInterval = Duration.ofMinutes(1);
+    private static final Duration defaultReportInterval = Duration.ofMinutes(10);
+    private static final int defaultReportsToKeep = 10;
+    private static final Duration defaultCheckpointInterval = Duration.ofMinutes(1);
+    private static final int defaultQueryCacheSize = 256;
+    private static final int defaultCacheReadAhead = 64;
+    private static final int defaultCacheWriteQueueSize = 1_000;
 
     private Configuration() {
     }
@@ -29,13 +48,51 @@ final class Configuration {
             throw new RuntimeException("Failed to load configuration from '%s' file".formatted(configurationFile), e);
         }
         return new ConfigurationProperties(
-                URI.create(properties.getProperty("serverUrl")),
+                Stream.of(properties.getProperty("serverUrl").split(",")).map(String::trim).filter(not(String::isEmpty)).map(URI::create).toList(),
                 LocalDateTime.parse(properties.getProperty("since"), formatter).atZone(systemDefault()),
                 getOrDefault("maxBuildsPerRequest", it -> parseInt(properties.getProperty(it)), defaultMaxBuildsPerRequest),
-                getOrDefault("excludeAbovePercentile", it -> parseInt(properties.getProperty(it)), null)
+                getOrDefault("excludeAbovePercentile", it -> parseInt(properties.getProperty(it)), null),
+                getOrDefault("hedgeRequestsAbovePercentile", it -> parseInt(properties.getProperty(it)), null),
+                getOrDefault("maxHedgedRequestsPercent", it -> parseInt(properties.getProperty(it)), defaultMaxHedgedRequestsPercent),
+                getOrDefault("maxRequestsPerSecond", it -> integers(properties.getProperty(it)), List.of()),
+                getOrDefault("metricsDumpInterval", it -> Duration.ofSeconds(parseInt(properties.getProperty(it))), null),
+                getOrDefault("pollInterval", it -> Duration.ofSeconds(parseInt(properties.getProperty(it))), defaultPollInterval),
+                getOrDefault("reportInterval", it -> Duration.ofSeconds(parseInt(properties.getProperty(it))), defaultReportInterval),
+                getOrDefault("reportsToKeep", it -> parseInt(properties.getProperty(it)), defaultReportsToKeep),
+                getOrDefault("reportWindow", it -> Duration.ofDays(parseInt(properties.getProperty(it))), null),
+                getOrDefault("checkpointInterval", it -> Duration.ofSeconds(parseInt(properties.getProperty(it))), defaultCheckpointInterval),
+                getOrDefault("provisionalReportInterval", it -> Duration.ofSeconds(parseInt(properties.getProperty(it))), null),
+                getOrDefault("provisionalReportBuilds", it -> parseInt(properties.getProperty(it)), null),
+                getOrDefault("queryServerPort", it -> parseInt(properties.getProperty(it)), null),
+                getOrDefault("queryCacheSize", it -> parseInt(properties.getProperty(it)), defaultQueryCacheSize),
+                getOrDefault("listenerQueueSize", it -> parseInt(properties.getProperty(it)), null),
+                BuildQuery.and(
+                        properties.getProperty("query"),
+                        anyOf("project", properties.getProperty("projects")),
+                        anyOf("tag", properties.getProperty("tags")),
+                        anyOf("buildTool", properties.getProperty("buildTools")),
+                        anyOf("user", properties.getProperty("users"))),
+                getOrDefault("shard", it -> Shard.parse(properties.getProperty(it)), Shard.all),
+                getOrDefault("sample", it -> Sample.parse(properties.getProperty(it)), Sample.all),
+                getOrDefault("cacheFormat", it -> CacheFormat.valueOf(properties.getProperty(it).trim().toUpperCase()), CacheFormat.JSON),
+                getOrDefault("cacheReadAhead", it -> parseInt(properties.getProperty(it)), defaultCacheReadAhead),
+                getOrDefault("cacheWriteQueueSize", it -> parseInt(properties.getProperty(it)), defaultCacheWriteQueueSize),
+                new CacheRetention(
+                        getOrDefault("cacheMaxAge", it -> Duration.ofDays(parseInt(properties.getProperty(it))), null),
+                        getOrDefault("cacheMaxSize", it -> Long.parseLong(properties.getProperty(it)) * 1024 * 1024, null))
         );
     }
 
+    private static List<Integer> integers(String values) {
+        if (values == null) return null;
+        return Stream.of(values.split(",")).map(String::trim).map(Integer::parseInt).toList();
+    }
+
+    private static String anyOf(String field, String values) {
+        if (values == null) return null;
+        return BuildQuery.anyOf(field, Stream.of(values.split(",")).map(String::trim).filter(not(String::isEmpty)).toList());
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static <T> T getOrDefault(String key, Function<String, T> getValue, T defaultValue) {
         try {
@@ -48,10 +105,63 @@ final class Configuration {
     }
 
     record ConfigurationProperties(
-            URI serverUrl,
+            List<URI> serverUrls,
             ZonedDateTime since,
             int maxBuildsPerRequest,
-            Integer excludeAbovePercentile) {
+            Integer excludeAbovePercentile,
+            Integer hedgeRequestsAbovePercentile,
+            int maxHedgedRequestsPercent,
+            List<Integer> maxRequestsPerSecond,
+            Duration metricsDumpInterval,
+            Duration pollInterval,
+            Duration reportInterval,
+            int reportsToKeep,
+            Duration reportWindow,
+            Duration checkpointInterval,
+            Duration provisionalReportInterval,
+            Integer provisionalReportBuilds,
+            Integer queryServerPort,
+            int queryCacheSize,
+            Integer listenerQueueSize,
+            String query,
+            Shard shard,
+            Sample sample,
+            CacheFormat cacheFormat,
+            int cacheReadAhead,
+            int cacheWriteQueueSize,
+            CacheRetention cacheRetention) {
+
+        ConfigurationProperties {
+            if (maxRequestsPerSecond.size() > 1 && maxRequestsPerSecond.size() != serverUrls.size()) {
+                throw new RuntimeException("Property 'maxRequestsPerSecond' must give a single limit or one limit per server");
+            }
+            if (serverUrls.stream().map(ConfigurationProperties::serverName).distinct().count() < serverUrls.size()) {
+                throw new RuntimeException("Property 'serverUrl' must not list the same host and port twice");
+            }
+        }
+
+        /**
+         * The name a server goes by in reports, cache directories, and checkpoints, which is its host, followed by its
+         * port when the URL gives one, so that servers on the same host are told apart.
+         */
+        static String serverName(URI serverUrl) {
+            return serverUrl.getPort() < 0 ? serverUrl.getHost() : serverUrl.getHost() + "_" + serverUrl.getPort();
+        }
+
+        /**
+         * The limit of the server at the same position in {@code serverUrl}, or the only limit given, which then applies
+         * to each server separately.
+         */
+        Integer maxRequestsPerSecond(URI serverUrl) {
+            if (maxRequestsPerSecond.isEmpty()) return null;
+            if (maxRequestsPerSecond.size() == 1) return maxRequestsPerSecond.getFirst();
+            return maxRequestsPerSecond.get(serverUrls.indexOf(serverUrl));
+        }
+
+        RequestHedging requestHedging() {
+            return hedgeRequestsAbovePercentile == null ? null : new RequestHedging(hedgeRequestsAbovePercentile, maxHedgedRequestsPercent);
+        }
+
     }
 
 }
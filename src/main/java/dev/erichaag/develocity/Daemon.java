@@ -0,0 +1,118 @@
+package dev.erichaag.develocity;
+
+import dev.erichaag.develocity.api.BuildProcessor;
+import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.core.IncidentTracker;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.time.Instant.ofEpochMilli;
+import static java.time.ZoneId.systemDefault;
+
+/**
+ * Keeps processing the newest builds on an interval, on top of the state built up by the previous runs, and
+ * regenerates the report on a schedule. With several processors, for example one per server, each one is polled
+ * concurrently from where it left off.
+ * <p>
+ * With a window, each report covers only that much time up to when it is created rather than all the time since
+ * {@code since}, and the resolved incidents that started before the window are dropped, so a daemon running for months
+ * neither reports on nor holds on to incidents no report covers anymore.
+ */
+final class Daemon {
+
+    private final Map<BuildProcessor, Watermark> watermarks = new LinkedHashMap<>();
+    private final List<IncidentTracker> trackers;
+    private final Duration pollInterval;
+    private final Duration reportInterval;
+    private final Duration window;
+    private final Consumer<ZonedDateTime> report;
+
+    /**
+     * @param window how far back each report looks, or {@code null} for reports covering all the time since {@code since}
+     * @param report writes a report covering the time from the given start until now
+     */
+    Daemon(List<BuildProcessor> processors, List<IncidentTracker> trackers, Duration pollInterval, Duration reportInterval, Duration window, Consumer<ZonedDateTime> report) {
+        this.trackers = trackers;
+        this.pollInterval = pollInterval;
+        this.reportInterval = reportInterval;
+        this.window = window;
+        this.report = report;
+        for (var processor : processors) {
+            final var watermark = new Watermark();
+            processor.registerListener(watermark);
+            watermarks.put(processor, watermark);
+        }
+    }
+
+    void run(ZonedDateTime since, String query) {
+        poll(windowStart(since, Instant.now()), query);
+        report(since, Instant.now());
+        var lastReportedOn = Instant.now();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            poll(since, query);
+            if (Duration.between(lastReportedOn, Instant.now()).compareTo(reportInterval) >= 0) {
+                report(since, Instant.now());
+                lastReportedOn = Instant.now();
+            }
+        }
+    }
+
+    void poll(ZonedDateTime since, String query) {
+        final var sinceByProcessor = new LinkedHashMap<BuildProcessor, ZonedDateTime>();
+        watermarks.forEach((processor, watermark) -> {
+            sinceByProcessor.put(processor, watermark.nextSince(since));
+            processor.skipBuilds(watermark.lastAvailableBuildIds);
+        });
+        BuildProcessor.processAll(sinceByProcessor, query);
+    }
+
+    void report(ZonedDateTime since, Instant now) {
+        final var start = windowStart(since, now);
+        if (window != null) trackers.forEach(it -> it.pruneResolvedIncidents(start.toInstant()));
+        report.accept(start);
+    }
+
+    private ZonedDateTime windowStart(ZonedDateTime since, Instant now) {
+        if (window == null || now.minus(window).isBefore(since.toInstant())) return since;
+        return now.minus(window).atZone(since.getZone());
+    }
+
+    // builds can become available in the same millisecond as the last one seen but only be indexed after the poll, so
+    // the next poll starts at that millisecond and skips the builds already seen in it
+    private static final class Watermark implements BuildProcessorListener {
+
+        private final Set<String> lastAvailableBuildIds = new HashSet<>();
+
+        private long lastAvailableAt = -1;
+
+        @Override
+        public void onDiscoveryFinished(DiscoveryFinishedEvent event) {
+            for (var build : event.builds()) {
+                if (build.getAvailableAt() > lastAvailableAt) {
+                    lastAvailableAt = build.getAvailableAt();
+                    lastAvailableBuildIds.clear();
+                }
+                if (build.getAvailableAt() == lastAvailableAt) lastAvailableBuildIds.add(build.getId());
+            }
+        }
+
+        private ZonedDateTime nextSince(ZonedDateTime since) {
+            return lastAvailableAt < 0 ? since : ofEpochMilli(lastAvailableAt).atZone(systemDefault());
+        }
+
+    }
+
+}
@@ -1,72 +1,219 @@
 package dev.erichaag.develocity;
 
+import dev.erichaag.develocity.Configuration.ConfigurationProperties;
+import dev.erichaag.develocity.api.BuildCache;
+import dev.erichaag.develocity.api.CacheBundle;
 import dev.erichaag.develocity.api.BuildProcessor;
 import dev.erichaag.develocity.api.HttpClientDevelocityClient;
 import dev.erichaag.develocity.core.IncidentReport;
 import dev.erichaag.develocity.core.IncidentTracker;
+import dev.erichaag.develocity.core.PartialState;
+import dev.erichaag.develocity.core.Shard;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import static dev.erichaag.develocity.Configuration.ConfigurationProperties.serverName;
+import static java.time.ZoneId.systemDefault;
 import static java.time.ZonedDateTime.now;
 import static java.time.format.DateTimeFormatter.ofPattern;
 import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.util.Comparator.reverseOrder;
 
 final class Main {
 
     public static void main(String[] args) {
         final var configuration = Configuration.load();
-        final var develocity = new HttpClientDevelocityClient(configuration.serverUrl());
-        final var incidentTracker = new IncidentTracker();
+        final var arguments = List.of(args);
+        if (arguments.contains("--merge")) {
+            merge(configuration, arguments.subList(arguments.indexOf("--merge") + 1, arguments.size()));
+            return;
+        }
+        if (arguments.contains("--maintain-cache")) {
+            maintainCaches(configuration);
+            return;
+        }
+        if (arguments.contains("--export-cache")) {
+            final var bundle = Path.of(arguments.get(arguments.indexOf("--export-cache") + 1));
+            final var exported = CacheBundle.export(getCaches(configuration), bundle, configuration.since().toInstant(), Instant.now());
+            System.out.println("Exported " + exported + " builds to " + bundle.toAbsolutePath());
+            return;
+        }
+        if (arguments.contains("--import-cache")) {
+            final var bundle = Path.of(arguments.get(arguments.indexOf("--import-cache") + 1));
+            final var imported = CacheBundle.importInto(getCaches(configuration), bundle);
+            System.out.println("Imported " + imported + " builds from " + bundle.toAbsolutePath());
+            return;
+        }
+        final var servers = configuration.serverUrls().stream()
+                .map(it -> createServer(configuration, it))
+                .toList();
+        if (!arguments.contains("--daemon")) {
+            final var resume = arguments.contains("--resume");
+            servers.forEach(it -> it.processor().checkpoint(getCheckpointDirectory(configuration, it.serverUrl()), configuration.checkpointInterval(), resume));
+        }
+        final var trackers = servers.stream().map(Server::tracker).toList();
+        final var processors = servers.stream().map(Server::processor).toList();
+        final var metrics = new RunMetrics(servers.stream().map(it -> it.client().getMetrics()).toList());
+
+        processors.forEach(it -> it.registerListener(metrics));
+        final var reportServer = configuration.queryServerPort() == null ? null : new ReportServer(configuration.queryServerPort(), configuration.queryCacheSize(), trackers, configuration.since(), configuration.excludeAbovePercentile());
+        if (reportServer != null) {
+            processors.forEach(it -> it.registerListener(reportServer));
+            reportServer.start();
+        }
+        if (configuration.provisionalReportInterval() != null || configuration.provisionalReportBuilds() != null) {
+            final var provisionalReports = new ProvisionalReports(Path.of("reports", "provisional.zip"), trackers, configuration.since(), configuration.excludeAbovePercentile(), configuration.provisionalReportBuilds(), configuration.provisionalReportInterval());
+            processors.forEach(it -> it.registerListener(provisionalReports));
+        }
+        if (configuration.metricsDumpInterval() != null) {
+            metrics.startPeriodicDump(Path.of("reports"), configuration.metricsDumpInterval());
+        }
+
+        if (arguments.contains("--daemon")) {
+            final var daemon = new Daemon(processors, trackers, configuration.pollInterval(), configuration.reportInterval(), configuration.reportWindow(), since -> {
+                writeReport(trackers, since, now(), configuration.excludeAbovePercentile(), metrics);
+                deleteOldReports(configuration.reportsToKeep());
+                evictFromCaches(configuration, servers);
+            });
+            daemon.run(configuration.since(), configuration.query());
+        } else {
+            final var sinceByProcessor = new LinkedHashMap<BuildProcessor, ZonedDateTime>();
+            processors.forEach(it -> sinceByProcessor.put(it, configuration.since()));
+            BuildProcessor.processAll(sinceByProcessor, configuration.query());
+            if (arguments.contains("--partial")) {
+                final var file = Path.of(arguments.get(arguments.indexOf("--partial") + 1));
+                final var incidents = PartialState.write(file, trackers, Instant.now());
+                System.out.println("\nWrote partial state for shard " + configuration.shard() + " with " + incidents + " incidents to " + file.toAbsolutePath());
+            } else {
+                writeReport(trackers, configuration.since(), now(), configuration.excludeAbovePercentile(), metrics);
+            }
+            evictFromCaches(configuration, servers);
+            // the report server keeps the process running, so the tables of the finished run can still be queried
+            if (reportServer != null) {
+                System.out.println("Still serving report tables at " + reportServer.getUrl() + " until the process is stopped");
+            }
+        }
+        metrics.close();
+    }
+
+    /**
+     * Each server gets its own client, processor, tracker, and cache directory. With several servers, the progress of
+     * each one is prefixed with its name.
+     */
+    private static Server createServer(ConfigurationProperties configuration, URI serverUrl) {
+        final var isOneOfMany = configuration.serverUrls().size() > 1;
+        final var client = new HttpClientDevelocityClient(serverUrl, configuration.requestHedging(), configuration.maxRequestsPerSecond(serverUrl));
+        final var cache = getCache(configuration, serverUrl);
+        final var processor = new BuildProcessor(client, configuration.maxBuildsPerRequest(), cache);
+        final var tracker = new IncidentTracker(serverName(serverUrl), configuration.shard(), configuration.sample());
+        if (configuration.listenerQueueSize() != null) processor.dispatchAsynchronously(configuration.listenerQueueSize());
+        processor.readCacheAhead(configuration.cacheReadAhead());
+        processor.writeCacheBehind(configuration.cacheWriteQueueSize());
+        processor.registerListener(new BuildProcessorProgressListener(serverUrl, isOneOfMany));
+        processor.registerListener(tracker);
+        return new Server(serverUrl, client, cache, processor, tracker);
+    }
+
+    // caches are always named after their server, so adding a server keeps the existing cache, and the builds cached
+    // before caches were named are moved to the first server, which is the one they were cached for
+    private static BuildCache getCache(ConfigurationProperties configuration, URI serverUrl) {
+        final var cache = BuildCache.inUserHome(configuration.cacheFormat());
+        if (serverUrl.equals(configuration.serverUrls().getFirst())) cache.moveEntriesInto(serverName(serverUrl));
+        return cache.namespace(serverName(serverUrl));
+    }
+
+    // workers of different shards or samples may run side by side, so each one gets a checkpoint of its own
+    private static Path getCheckpointDirectory(ConfigurationProperties configuration, URI serverUrl) {
+        final var shard = configuration.shard();
+        final var name = "shard_%d_of_%d_sample_%d".formatted(shard.index(), shard.count(), configuration.sample().percent());
+        return Path.of("reports", "checkpoints", serverName(serverUrl), name);
+    }
 
-        final var processor = new BuildProcessor(develocity, configuration.maxBuildsPerRequest());
-        processor.registerListener(new BuildProcessorProgressListener(configuration.serverUrl()));
-        processor.registerListener(incidentTracker);
-        processor.process(configuration.since());
+    /**
+     * Combines the partial state files written by the workers of all shards into a single report archive.
+     */
+    private static void merge(ConfigurationProperties configuration, List<String> files) {
+        final var state = PartialState.merge(files.stream().map(Path::of).toList());
+        warnOfUnevenShards(state.incidentsByShard());
+        writeReport(state.trackers(), configuration.since(), state.until().atZone(systemDefault()), configuration.excludeAbovePercentile(), new RunMetrics(List.of()));
+    }
+
+    // shards are split by the first character of the project names, so names sharing a prefix, like acme-api and
+    // acme-web, all end up in the same shard, which then takes far longer than the others
+    private static void warnOfUnevenShards(Map<Shard, Integer> incidentsByShard) {
+        final var total = incidentsByShard.values().stream().mapToInt(Integer::intValue).sum();
+        final var largest = incidentsByShard.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow();
+        if (incidentsByShard.size() < 2 || largest.getValue() * incidentsByShard.size() <= 2 * total) return;
+        System.out.printf("Warning: shard %s holds %d of the %d incidents, as shards are split by the first character of the project names, so its worker takes longer than the others%n", largest.getKey(), largest.getValue(), total);
+        incidentsByShard.forEach((shard, incidents) -> System.out.printf("  shard %s: %d incidents%n", shard, incidents));
+    }
+
+    // caches are named after their server, so a bundle only fills the caches of the same servers
+    private static Map<String, BuildCache> getCaches(ConfigurationProperties configuration) {
+        final var caches = new LinkedHashMap<String, BuildCache>();
+        configuration.serverUrls().forEach(it -> caches.put(serverName(it), getCache(configuration, it)));
+        return caches;
+    }
+
+    private static void maintainCaches(ConfigurationProperties configuration) {
+        for (var serverUrl : configuration.serverUrls()) {
+            final var cache = getCache(configuration, serverUrl);
+            final var summary = cache.maintain(configuration.cacheRetention(), Instant.now());
+            System.out.printf("Cache at %s holds %d builds in %s after evicting %d builds and %s%n", cache.getDirectory(), summary.entries(), formatSize(summary.size()), summary.evictedEntries(), formatSize(summary.evictedSize()));
+        }
+    }
+
+    private static void evictFromCaches(ConfigurationProperties configuration, List<Server> servers) {
+        if (!configuration.cacheRetention().isBounded()) return;
+        for (var server : servers) {
+            final var summary = server.cache().evict(configuration.cacheRetention(), Instant.now());
+            if (summary.evictedEntries() > 0) {
+                System.out.printf("Evicted %d builds and %s from the cache at %s%n", summary.evictedEntries(), formatSize(summary.evictedSize()), server.cache().getDirectory());
+            }
+        }
+    }
 
-        final var incidentReport = new IncidentReport(incidentTracker, configuration.since(), now(), configuration.excludeAbovePercentile());
+    private static String formatSize(long bytes) {
+        return "%.1f MB".formatted(bytes / (1024.0 * 1024.0));
+    }
+
+    private static void writeReport(List<IncidentTracker> trackers, ZonedDateTime since, ZonedDateTime until, Integer excludeAbovePercentile, RunMetrics metrics) {
+        final var reportStartedOn = System.nanoTime();
+        final var incidentReport = new IncidentReport(trackers, since, until, excludeAbovePercentile);
+        metrics.onReportComputed(incidentReport, Duration.ofNanos(System.nanoTime() - reportStartedOn));
         try (var archive = getArchive(incidentReport)) {
-            archive.write("ci_overall.csv", incidentReport.ciOverall());
-            archive.write("ci_per_project.csv", incidentReport.ciPerProject());
-            archive.write("ci_per_project_requested.csv", incidentReport.ciPerProjectRequested());
-            archive.write("local_overall.csv", incidentReport.localOverall());
-            archive.write("local_per_project.csv", incidentReport.localPerProject());
-            archive.write("local_per_user.csv", incidentReport.localPerUser());
-            archive.write("local_per_user_project.csv", incidentReport.localPerUserProject());
-            archive.write("overall.csv", incidentReport.overall());
-            archive.write("mean_trends_ci_overall.csv", incidentReport.meanTrendsCiOverall());
-            archive.write("mean_trends_ci_per_project.csv", incidentReport.meanTrendsCiPerProject());
-            archive.write("mean_trends_ci_per_project_requested.csv", incidentReport.meanTrendsCiPerProjectRequested());
-            archive.write("mean_trends_local_overall.csv", incidentReport.meanTrendsLocalOverall());
-            archive.write("mean_trends_local_per_project.csv", incidentReport.meanTrendsLocalPerProject());
-            archive.write("mean_trends_local_per_user.csv", incidentReport.meanTrendsLocalPerUser());
-            archive.write("mean_trends_local_per_user_project.csv", incidentReport.meanTrendsLocalPerUserProject());
-            archive.write("mean_trends_overall.csv", incidentReport.meanTrendsOverall());
-            archive.write("p50_trends_ci_overall.csv", incidentReport.p50TrendsCiOverall());
-            archive.write("p50_trends_ci_per_project.csv", incidentReport.p50TrendsCiPerProject());
-            archive.write("p50_trends_ci_per_project_requested.csv", incidentReport.p50TrendsCiPerProjectRequested());
-            archive.write("p50_trends_local_overall.csv", incidentReport.p50TrendsLocalOverall());
-            archive.write("p50_trends_local_per_project.csv", incidentReport.p50TrendsLocalPerProject());
-            archive.write("p50_trends_local_per_user.csv", incidentReport.p50TrendsLocalPerUser());
-            archive.write("p50_trends_local_per_user_project.csv", incidentReport.p50TrendsLocalPerUserProject());
-            archive.write("p50_trends_overall.csv", incidentReport.p50TrendsOverall());
-            archive.write("p95_trends_ci_overall.csv", incidentReport.p95TrendsCiOverall());
-            archive.write("p95_trends_ci_per_project.csv", incidentReport.p95TrendsCiPerProject());
-            archive.write("p95_trends_ci_per_project_requested.csv", incidentReport.p95TrendsCiPerProjectRequested());
-            archive.write("p95_trends_local_overall.csv", incidentReport.p95TrendsLocalOverall());
-            archive.write("p95_trends_local_per_project.csv", incidentReport.p95TrendsLocalPerProject());
-            archive.write("p95_trends_local_per_user.csv", incidentReport.p95TrendsLocalPerUser());
-            archive.write("p95_trends_local_per_user_project.csv", incidentReport.p95TrendsLocalPerUserProject());
-            archive.write("p95_trends_overall.csv", incidentReport.p95TrendsOverall());
-            archive.write("failures_trends_ci_overall.csv", incidentReport.failuresTrendsCiOverall());
-            archive.write("failures_trends_ci_per_project.csv", incidentReport.failuresTrendsCiPerProject());
-            archive.write("failures_trends_ci_per_project_requested.csv", incidentReport.failuresTrendsCiPerProjectRequested());
-            archive.write("failures_trends_local_overall.csv", incidentReport.failuresTrendsLocalOverall());
-            archive.write("failures_trends_local_per_project.csv", incidentReport.failuresTrendsLocalPerProject());
-            archive.write("failures_trends_local_per_user.csv", incidentReport.failuresTrendsLocalPerUser());
-            archive.write("failures_trends_local_per_user_project.csv", incidentReport.failuresTrendsLocalPerUserProject());
-            archive.write("failures_trends_overall.csv", incidentReport.failuresTrendsOverall());
+            incidentReport.tables().forEach((name, table) -> archive.write(name + ".csv", table));
+            archive.write("metrics.json", metrics.toJson());
+            archive.write("metrics.txt", metrics.toOpenMetrics());
             archive.create();
             System.out.println("\nCreated report archive at " + archive.getPath().toAbsolutePath());
+            if (!incidentReport.sample().isAll()) {
+                System.out.println("The report is a preview estimated from a " + incidentReport.sample() + " sample of the incidents");
+            }
+        }
+    }
+
+    // the daemon writes a report archive on every interval, so only the most recent ones are kept
+    private static void deleteOldReports(int reportsToKeep) {
+        try (var files = Files.list(Path.of("reports"))) {
+            final var reports = files
+                    .filter(it -> it.getFileName().toString().matches("reports_\\d{8}_\\d{6}\\.zip"))
+                    .sorted(reverseOrder())
+                    .toList();
+            for (var report : reports.subList(Math.min(reportsToKeep, reports.size()), reports.size())) {
+                Files.delete(report);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -77,4 +224,7 @@ final class Main {
         return new Archive(Path.of("reports").resolve(filename));
     }
 
+    private record Server(URI serverUrl, HttpClientDevelocityClient client, BuildCache cache, BuildProcessor processor, IncidentTracker tracker) {
+    }
+
 }
@@ -0,0 +1,100 @@
+package dev.erichaag.develocity;
+
+import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.core.IncidentTracker;
+import dev.erichaag.develocity.core.ProvisionalIncidents;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.time.ZonedDateTime.now;
+
+/**
+ * Writes a provisional report archive while builds are being processed, whenever the given number of builds was
+ * processed or the given interval passed since the last one, so that trends can be watched as they converge during
+ * long runs. The archive is replaced atomically each time. Only the incidents of keys that received builds since the
+ * previous report are worked out again, and only the table cells holding them are aggregated again, see
+ * {@link ProvisionalIncidents} for when all of them are.
+ * <p>
+ * Reports are computed and written on a background thread, so that processing is not held up by them. When a report
+ * is due while the previous one is still being written, it is skipped, and the next one covers its builds.
+ */
+final class ProvisionalReports implements BuildProcessorListener {
+
+    private final Path path;
+    private final ProvisionalIncidents incidents;
+    private final Integer builds;
+    private final Duration interval;
+
+    private long buildsSinceLastReport = 0;
+    private long lastReportedOn = System.nanoTime();
+    private Thread writer;
+    private RuntimeException failure;
+
+    ProvisionalReports(Path path, List<IncidentTracker> trackers, ZonedDateTime since, Integer excludeAbovePercentile, Integer builds, Duration interval) {
+        this.path = path;
+        this.incidents = new ProvisionalIncidents(trackers, since, excludeAbovePercentile);
+        this.builds = builds;
+        this.interval = interval;
+    }
+
+    @Override
+    public boolean receivesBuildBatches() {
+        return true;
+    }
+
+    @Override
+    public synchronized void onBuildBatch(BuildBatchEvent event) {
+        if (failure != null) throw failure;
+        buildsSinceLastReport += event.builds().size();
+        final var isDueByBuilds = builds != null && buildsSinceLastReport >= builds;
+        final var isDueByInterval = interval != null && System.nanoTime() - lastReportedOn >= interval.toNanos();
+        if ((isDueByBuilds || isDueByInterval) && (writer == null || !writer.isAlive())) {
+            buildsSinceLastReport = 0;
+            lastReportedOn = System.nanoTime();
+            writer = Thread.ofVirtual().name("provisional-report").start(this::write);
+        }
+    }
+
+    // waits for a report still being written, so that it is not cut off when the run ends
+    @Override
+    public void onProcessingFinished(ProcessingFinishedEvent event) {
+        final Thread writer;
+        synchronized (this) {
+            writer = this.writer;
+        }
+        try {
+            if (writer != null) writer.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        synchronized (this) {
+            if (failure != null) throw failure;
+        }
+    }
+
+    private void write() {
+        try {
+            final var report = incidents.report(now());
+            final var temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (var archive = new Archive(temporaryPath)) {
+                report.tables().forEach((name, table) -> archive.write(name + ".csv", table));
+                archive.create();
+                Files.move(temporaryPath, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write provisional report to " + path, e);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package dev.erichaag.develocity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.core.IncidentReport;
+import dev.erichaag.develocity.core.IncidentTracker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneId.systemDefault;
+import static java.time.ZonedDateTime.now;
+
+/**
+ * Serves the report tables over HTTP for arbitrary windows, computed from the incidents tracked so far.
+ * <p>
+ * {@code GET /tables} lists the table names, and {@code GET /tables/<name>?since=<date>&until=<date>&format=json|csv}
+ * returns a single table. Dates are ISO-8601 dates or date-times and default to the configured {@code since} and now.
+ * With several servers, the tables cover the incidents of all of them. Computed tables are kept in an LRU cache that is
+ * cleared whenever a processing run yields new builds.
+ */
+final class ReportServer implements BuildProcessorListener, AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+
+    private final HttpServer server;
+    private final ZonedDateTime defaultSince;
+    private final Tables tables;
+    private final Map<Query, String> results;
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean hasNewBuilds = false;
+
+    ReportServer(int port, int cacheSize, List<IncidentTracker> trackers, ZonedDateTime defaultSince, Integer excludeAbovePercentile) {
+        this(port, cacheSize, defaultSince, (table, since, until) -> IncidentReport.forTable(trackers, since, until, excludeAbovePercentile, table).tables().get(table));
+    }
+
+    ReportServer(int port, int cacheSize, ZonedDateTime defaultSince, Tables tables) {
+        this.defaultSince = defaultSince;
+        this.tables = tables;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/tables", this::handle);
+    }
+
+    void start() {
+        server.start();
+        System.out.println("Serving report tables at " + getUrl());
+    }
+
+    URI getUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/tables");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @Override
+    public void onBuild(Build build) {
+        hasNewBuilds = true;
+    }
+
+    @Override
+    public void onProcessingFinished(ProcessingFinishedEvent event) {
+        if (!hasNewBuilds) return;
+        hasNewBuilds = false;
+        synchronized (results) {
+            generation.incrementAndGet();
+            results.clear();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "text/plain", "Method not allowed");
+                return;
+            }
+            final var path = exchange.getRequestURI().getPath().replaceFirst("^/tables/?", "");
+            if (path.isEmpty()) {
+                respond(exchange, 200, "application/json", objectMapper.writeValueAsString(IncidentReport.tableNames()));
+                return;
+            }
+            if (!IncidentReport.tableNames().contains(path)) {
+                respond(exchange, 404, "text/plain", "Unknown table: " + path);
+                return;
+            }
+            final var parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+            final Query query;
+            try {
+                query = new Query(path, parseDate(parameters.get("since")), parseDate(parameters.get("until")));
+            } catch (DateTimeParseException e) {
+                respond(exchange, 400, "text/plain", "Invalid date: " + e.getParsedString());
+                return;
+            }
+            final var table = getOrCompute(query);
+            switch (parameters.getOrDefault("format", "json")) {
+                case "csv" -> respond(exchange, 200, "text/csv", table);
+                case "json" -> respond(exchange, 200, "application/json", toJson(table));
+                default -> respond(exchange, 400, "text/plain", "Unknown format: " + parameters.get("format"));
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "text/plain", String.valueOf(e.getMessage()));
+        }
+    }
+
+    private String getOrCompute(Query query) {
+        final long computedForGeneration;
+        synchronized (results) {
+            final var result = results.get(query);
+            if (result != null) return result;
+            computedForGeneration = generation.get();
+        }
+        final var since = query.since() == null ? defaultSince : query.since();
+        final var until = query.until() == null ? now() : query.until();
+        final var result = tables.compute(query.table(), since, until);
+        synchronized (results) {
+            if (generation.get() == computedForGeneration) results.put(query, result);
+        }
+        return result;
+    }
+
+    private static String toJson(String csv) throws JsonProcessingException {
+        final var lines = csv.lines().toList();
+        final var header = lines.getFirst().split(",", -1);
+        final var rows = lines.stream().skip(1).map(line -> {
+            final var values = line.split(",", -1);
+            final var row = new LinkedHashMap<String, String>();
+            for (int i = 0; i < header.length && i < values.length; i++) {
+                row.put(header[i], values[i]);
+            }
+            return row;
+        }).toList();
+        return objectMapper.writeValueAsString(rows);
+    }
+
+    private static ZonedDateTime parseDate(String value) {
+        if (value == null || value.isEmpty()) return null;
+        return value.contains("T") ? ZonedDateTime.parse(value) : LocalDate.parse(value).atStartOfDay(systemDefault());
+    }
+
+    private static Map<String, String> parseParameters(String query) {
+        final var parameters = new HashMap<String, String>();
+        if (query == null) return parameters;
+        for (var parameter : query.split("&")) {
+            final var pair = parameter.split("=", 2);
+            parameters.put(URLDecoder.decode(pair[0], UTF_8), pair.length > 1 ? URLDecoder.decode(pair[1], UTF_8) : "");
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String contentType, String body) throws IOException {
+        final var bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private record Query(String table, ZonedDateTime since, ZonedDateTime until) {
+    }
+
+    /**
+     * Computes a single table for a window, which is a report restricted to that table unless tests say otherwise.
+     */
+    interface Tables {
+        String compute(String table, ZonedDateTime since, ZonedDateTime until);
+    }
+
+}
@@ -0,0 +1,308 @@
+package dev.erichaag.develocity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.api.RequestMetrics;
+import dev.erichaag.develocity.core.IncidentReport;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.time.Instant.now;
+
+/**
+ * Collects metrics about a run, from the build processor events, the requests sent to Develocity, and the computed
+ * report. The metrics are available as JSON and in the OpenMetrics text format.
+ */
+final class RunMetrics implements BuildProcessorListener, AutoCloseable {
+
+    private static final ObjectMapper objectMapper = JsonMapper.builder().enable(INDENT_OUTPUT).build();
+    private static final String prefix = "develocity_failure_insights_";
+    private static final int buildsPerHeapSample = 1_000;
+
+    private final List<RequestMetrics> requestMetrics;
+    private final AtomicLong discovered = new AtomicLong();
+    private final AtomicInteger activeDiscoveries = new AtomicInteger();
+    private final AtomicInteger activeProcessings = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong peakHeapUsage = new AtomicLong();
+
+    private volatile Instant discoveryStartedOn;
+    private volatile Instant discoveryFinishedOn;
+    private volatile Instant processingStartedOn;
+    private volatile Instant processingFinishedOn;
+    private volatile IncidentReport report;
+    private volatile Duration reportDuration;
+
+    private Thread dumpThread;
+    private AtomicBoolean dumping;
+
+    /**
+     * Collects the metrics of several processors running concurrently, for example one per server. A stage starts
+     * when the first processor enters it and finishes when the last one leaves it.
+     */
+    RunMetrics(List<RequestMetrics> requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    public void onDiscoveryStarted(DiscoveryStartedEvent event) {
+        sampleHeapUsage();
+        if (activeDiscoveries.getAndIncrement() > 0) return;
+        discoveryStartedOn = event.triggeredAt();
+        discoveryFinishedOn = null;
+        discovered.set(0);
+    }
+
+    @Override
+    public void onDiscoveryFinished(DiscoveryFinishedEvent event) {
+        sampleHeapUsage();
+        discovered.addAndGet(event.builds().size());
+        if (activeDiscoveries.decrementAndGet() == 0) discoveryFinishedOn = event.triggeredAt();
+    }
+
+    @Override
+    public void onProcessingStarted(ProcessingStartedEvent event) {
+        sampleHeapUsage();
+        if (activeProcessings.getAndIncrement() > 0) return;
+        processingStartedOn = event.triggeredAt();
+        processingFinishedOn = null;
+    }
+
+    @Override
+    public void onProcessingFinished(ProcessingFinishedEvent event) {
+        sampleHeapUsage();
+        if (activeProcessings.decrementAndGet() == 0) processingFinishedOn = event.triggeredAt();
+    }
+
+    @Override
+    public void onBuild(Build build) {
+        if (processed.incrementAndGet() % buildsPerHeapSample == 0) sampleHeapUsage();
+    }
+
+    @Override
+    public void onCachedBuild(CachedBuildEvent event) {
+        cached.incrementAndGet();
+    }
+
+    @Override
+    public void onFetchedBuild(FetchedBuildEvent event) {
+        fetched.incrementAndGet();
+    }
+
+    void onReportComputed(IncidentReport report, Duration duration) {
+        sampleHeapUsage();
+        this.report = report;
+        this.reportDuration = duration;
+    }
+
+    /**
+     * Periodically writes the metrics collected so far to {@code metrics.json} and {@code metrics.txt} in the given
+     * directory, until closed. Files are replaced atomically, so they can be picked up by other tools at any time.
+     */
+    void startPeriodicDump(Path directory, Duration interval) {
+        dumping = new AtomicBoolean(true);
+        dumpThread = Thread.startVirtualThread(() -> {
+            while (dumping.get()) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                dump(directory);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        if (dumpThread == null) return;
+        dumping.set(false);
+        dumpThread.interrupt();
+        try {
+            dumpThread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    String toJson() {
+        try {
+            return objectMapper.writeValueAsString(snapshot());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    String toOpenMetrics() {
+        final var now = now();
+        final var out = new StringBuilder();
+        gauge(out, "discovered_builds", "Builds discovered", discovered.get());
+        counter(out, "builds", "Builds processed by source", Map.of("source", "cache"), cached.get());
+        sample(out, "builds_total", Map.of("source", "fetched"), fetched.get());
+        gauge(out, "cache_hit_ratio", "Ratio of builds read from the cache", cacheHitRatio());
+        gauge(out, "stage_duration_seconds", "Time spent in each stage", Map.of("stage", "discovery"), seconds(between(discoveryStartedOn, discoveryFinishedOn, now)));
+        sample(out, "stage_duration_seconds", Map.of("stage", "processing"), seconds(between(processingStartedOn, processingFinishedOn, now)));
+        if (reportDuration != null) sample(out, "stage_duration_seconds", Map.of("stage", "report"), seconds(reportDuration));
+        gauge(out, "stage_builds_per_second", "Builds handled per second in each stage", Map.of("stage", "discovery"), perSecond(discovered.get(), between(discoveryStartedOn, discoveryFinishedOn, now)));
+        sample(out, "stage_builds_per_second", Map.of("stage", "processing"), perSecond(processed.get(), between(processingStartedOn, processingFinishedOn, now)));
+        if (!requestMetrics.isEmpty()) {
+            final var requestMetrics = RequestMetrics.combine(this.requestMetrics);
+            final var bounds = requestMetrics.getBucketBounds();
+            final var counts = requestMetrics.getBucketCounts();
+            out.append("# TYPE ").append(prefix).append("http_request_duration_seconds histogram\n");
+            out.append("# HELP ").append(prefix).append("http_request_duration_seconds Latency of requests to Develocity\n");
+            var cumulative = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                sample(out, "http_request_duration_seconds_bucket", Map.of("le", i < bounds.size() ? String.valueOf(seconds(bounds.get(i))) : "+Inf"), cumulative);
+            }
+            sample(out, "http_request_duration_seconds_sum", Map.of(), seconds(requestMetrics.getTotalLatency()));
+            sample(out, "http_request_duration_seconds_count", Map.of(), requestMetrics.getRequests());
+            counter(out, "http_failed_requests", "Requests to Develocity that failed", Map.of(), requestMetrics.getFailedRequests());
+            counter(out, "http_received_bytes", "Bytes received from Develocity", Map.of(), requestMetrics.getReceivedBytes());
+        }
+        if (report != null) {
+            gauge(out, "incidents", "Resolved incidents in the report", report.incidentCount());
+            gauge(out, "incidents_per_second", "Incidents handled per second while computing the report", perSecond(report.incidentCount(), reportDuration));
+            out.append("# TYPE ").append(prefix).append("table_duration_seconds gauge\n");
+            out.append("# HELP ").append(prefix).append("table_duration_seconds Time spent computing each report table\n");
+            report.tableDurations().forEach((table, duration) -> sample(out, "table_duration_seconds", Map.of("table", table), seconds(duration)));
+        }
+        gauge(out, "heap_peak_bytes", "Highest heap usage sampled during the run", sampleHeapUsage());
+        return out.append("# EOF\n").toString();
+    }
+
+    private void dump(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory.resolve("metrics.json"), toJson());
+            writeAtomically(directory.resolve("metrics.txt"), toOpenMetrics());
+        } catch (IOException e) {
+            System.out.println("Failed to write metrics to " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> snapshot() {
+        final var now = now();
+        final var snapshot = new LinkedHashMap<String, Object>();
+        final var discovery = new LinkedHashMap<String, Object>();
+        discovery.put("builds", discovered.get());
+        discovery.put("durationSeconds", seconds(between(discoveryStartedOn, discoveryFinishedOn, now)));
+        discovery.put("buildsPerSecond", perSecond(discovered.get(), between(discoveryStartedOn, discoveryFinishedOn, now)));
+        snapshot.put("discovery", discovery);
+        final var processing = new LinkedHashMap<String, Object>();
+        processing.put("builds", processed.get());
+        processing.put("cachedBuilds", cached.get());
+        processing.put("fetchedBuilds", fetched.get());
+        processing.put("cacheHitRatio", cacheHitRatio());
+        processing.put("durationSeconds", seconds(between(processingStartedOn, processingFinishedOn, now)));
+        processing.put("buildsPerSecond", perSecond(processed.get(), between(processingStartedOn, processingFinishedOn, now)));
+        processing.put("fetchedBuildsPerSecond", perSecond(fetched.get(), between(processingStartedOn, processingFinishedOn, now)));
+        snapshot.put("processing", processing);
+        if (!requestMetrics.isEmpty()) {
+            final var requestMetrics = RequestMetrics.combine(this.requestMetrics);
+            final var http = new LinkedHashMap<String, Object>();
+            http.put("requests", requestMetrics.getRequests());
+            http.put("failedRequests", requestMetrics.getFailedRequests());
+            http.put("receivedBytes", requestMetrics.getReceivedBytes());
+            http.put("totalLatencySeconds", seconds(requestMetrics.getTotalLatency()));
+            final var histogram = new LinkedHashMap<String, Long>();
+            final var bounds = requestMetrics.getBucketBounds();
+            final var counts = requestMetrics.getBucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                histogram.put(i < bounds.size() ? "<=" + bounds.get(i).toMillis() + "ms" : ">" + bounds.getLast().toMillis() + "ms", counts[i]);
+            }
+            http.put("latencyHistogram", histogram);
+            snapshot.put("http", http);
+        }
+        if (report != null) {
+            final var reportMetrics = new LinkedHashMap<String, Object>();
+            reportMetrics.put("incidents", report.incidentCount());
+            reportMetrics.put("durationSeconds", seconds(reportDuration));
+            reportMetrics.put("incidentsPerSecond", perSecond(report.incidentCount(), reportDuration));
+            final var tables = new LinkedHashMap<String, Double>();
+            report.tableDurations().forEach((table, duration) -> tables.put(table, seconds(duration)));
+            reportMetrics.put("tableDurationSeconds", tables);
+            snapshot.put("report", reportMetrics);
+        }
+        snapshot.put("heapPeakBytes", sampleHeapUsage());
+        return snapshot;
+    }
+
+    private double cacheHitRatio() {
+        final var total = cached.get() + fetched.get();
+        return total == 0 ? 0 : cached.get() / (double) total;
+    }
+
+    private static Duration between(Instant startedOn, Instant finishedOn, Instant now) {
+        if (startedOn == null) return Duration.ZERO;
+        return Duration.between(startedOn, finishedOn == null ? now : finishedOn);
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toNanos() / 1e9;
+    }
+
+    private static double perSecond(long count, Duration duration) {
+        return duration == null || duration.isZero() ? 0 : count / seconds(duration);
+    }
+
+    // the peaks of the heap pools are reached at different times, so their sum overstates the peak of the heap, which
+    // is instead sampled as a whole on each event, every so many builds, and whenever the metrics are written
+    private long sampleHeapUsage() {
+        return peakHeapUsage.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Number value) {
+        gauge(out, name, help, Map.of(), value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Map<String, String> labels, Number value) {
+        out.append("# TYPE ").append(prefix).append(name).append(" gauge\n");
+        out.append("# HELP ").append(prefix).append(name).append(' ').append(help).append('\n');
+        sample(out, name, labels, value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, Map<String, String> labels, Number value) {
+        out.append("# TYPE ").append(prefix).append(name).append(" counter\n");
+        out.append("# HELP ").append(prefix).append(name).append(' ').append(help).append('\n');
+        sample(out, name + "_total", labels, value);
+    }
+
+    private static void sample(StringBuilder out, String name, Map<String, String> labels, Number value) {
+        out.append(prefix).append(name);
+        if (!labels.isEmpty()) {
+            out.append('{');
+            labels.forEach((key, label) -> out.append(key).append("=\"").append(label).append("\","));
+            out.setLength(out.length() - 1);
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void writeAtomically(Path path, String content) throws IOException {
+        final var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, content);
+        Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,118 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * The binary encoding of cached builds. A fixed header holds a magic number, the format version, and flags, followed
+ * by the names of the models and the length-prefixed build JSON, all of which is optionally compressed with Deflate.
+ * <p>
+ * The build JSON is kept as is, so that it can still be decoded lazily, but unlike the JSON encoding its position is
+ * known up front and the build does not have to be scanned to find where it ends.
+ * <p>
+ * Entries are read from byte buffers, which may be memory-mapped, so that the header is decoded and the body inflated
+ * in place. Only the build JSON is copied to the heap, as builds are decoded lazily from byte arrays.
+ */
+final class BinaryCachedBuild {
+
+    private static final byte[] magic = {'D', 'F', 'I', 'C'};
+    private static final byte version = 1;
+    private static final byte compressedFlag = 1;
+    private static final int headerLength = magic.length + 2;
+
+    private BinaryCachedBuild() {
+    }
+
+    static boolean isBinary(byte[] bytes) {
+        return isBinary(ByteBuffer.wrap(bytes));
+    }
+
+    static boolean isBinary(ByteBuffer buffer) {
+        return buffer.limit() >= headerLength && buffer.slice(0, magic.length).equals(ByteBuffer.wrap(magic));
+    }
+
+    static byte[] write(CachedBuild cachedBuild, boolean compressed) throws IOException {
+        final var json = new ByteArrayOutputStream();
+        LazyApiBuild.of(cachedBuild.build()).writeTo(json);
+        final var outputStream = new ByteArrayOutputStream(headerLength + json.size() + 64);
+        outputStream.write(magic);
+        outputStream.write(version);
+        outputStream.write(compressed ? compressedFlag : 0);
+        try (var body = new DataOutputStream(compressed ? new DeflaterOutputStream(outputStream) : outputStream)) {
+            body.writeShort(cachedBuild.buildModels().size());
+            for (var buildModel : cachedBuild.buildModels()) {
+                final var name = buildModel.name().getBytes(US_ASCII);
+                body.writeByte(name.length);
+                body.write(name);
+            }
+            body.writeInt(json.size());
+            json.writeTo(body);
+        }
+        return outputStream.toByteArray();
+    }
+
+    static CachedBuild read(byte[] bytes) throws IOException {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    static CachedBuild read(ByteBuffer entry) throws IOException {
+        if (entry.get(magic.length) != version) throw new IOException("Unsupported cached build version " + entry.get(magic.length));
+        final var isCompressed = (entry.get(magic.length + 1) & compressedFlag) != 0;
+        final var buffer = isCompressed ? inflate(entry.slice(headerLength, entry.limit() - headerLength)) : entry.position(headerLength);
+        try {
+            final var buildModels = EnumSet.noneOf(BuildModel.class);
+            final var buildModelCount = buffer.getShort();
+            for (int i = 0; i < buildModelCount; i++) {
+                final var name = new byte[buffer.get()];
+                buffer.get(name);
+                buildModels.add(BuildModel.valueOf(new String(name, US_ASCII)));
+            }
+            final var length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) throw new IOException("Truncated cached build");
+            return new CachedBuild(buildModels, toLazyApiBuild(buffer, length).toBuild());
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt cached build", e);
+        }
+    }
+
+    // heap buffers are decoded from their backing array as is, mapped ones have the build copied out of them
+    private static LazyApiBuild toLazyApiBuild(ByteBuffer buffer, int length) {
+        if (buffer.hasArray()) return LazyApiBuild.of(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        final var json = new byte[length];
+        buffer.get(json);
+        return LazyApiBuild.of(json);
+    }
+
+    private static ByteBuffer inflate(ByteBuffer compressed) throws IOException {
+        final var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            var inflated = new byte[Math.max(64, compressed.remaining() * 4)];
+            var length = 0;
+            while (!inflater.finished()) {
+                if (length == inflated.length) inflated = Arrays.copyOf(inflated, inflated.length * 2);
+                final var count = inflater.inflate(inflated, length, inflated.length - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) throw new IOException("Truncated cached build");
+                length += count;
+            }
+            return ByteBuffer.wrap(inflated, 0, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt cached build", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
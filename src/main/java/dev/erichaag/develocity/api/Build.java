@@ -13,13 +13,11 @@ public sealed interface Build permits GradleBuild, MavenBuild, BazelBuild, SbtBu
     ApiBuild getBuild();
 
     static Build from(ApiBuild build) {
-        return switch (build.getBuildToolType()) {
-            case "gradle" -> new GradleBuild(build);
-            case "maven" -> new MavenBuild(build);
-            case "bazel" -> new BazelBuild(build);
-            case "sbt" -> new SbtBuild(build);
-            default -> throw new IllegalArgumentException("Unknown build tool: " + build.getBuildToolType());
-        };
+        return LazyApiBuild.of(build).toBuild();
+    }
+
+    static Build fromJson(byte[] json) {
+        return LazyApiBuild.of(json).toBuild();
     }
 
 }
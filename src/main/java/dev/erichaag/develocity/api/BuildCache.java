@@ -0,0 +1,455 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.Optional.empty;
+
+public final class BuildCache {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final TypeReference<Set<BuildModel>> buildModelsType = new TypeReference<>() {};
+    private static final String cacheDirectoryName = ".develocity-failure-insights";
+    private static final Duration strayFileAge = Duration.ofHours(1);
+    // below this size, reading an entry into the heap is faster than mapping it and copying it out, see
+    // CacheEntryReadBenchmark, which measured 8 against 12 µs at 64 KiB, break-even at 256 KiB, and 150 against 110 µs
+    // at 1 MiB on a warm page cache
+    static final long mapThreshold = 256 * 1024;
+
+    private final Path directory;
+    private final CacheFormat format;
+
+    private CacheIndex index;
+
+    public BuildCache(Path directory) {
+        this(directory, CacheFormat.JSON);
+    }
+
+    public BuildCache(Path directory, CacheFormat format) {
+        this.directory = directory;
+        this.format = format;
+    }
+
+    public static BuildCache inUserHome() {
+        return inUserHome(CacheFormat.JSON);
+    }
+
+    public static BuildCache inUserHome(CacheFormat format) {
+        return new BuildCache(Path.of(System.getProperty("user.home")).resolve(cacheDirectoryName), format);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns a cache in a subdirectory of this one, keeping the builds of different servers apart.
+     */
+    public BuildCache namespace(String name) {
+        return new BuildCache(directory.resolve(name), format);
+    }
+
+    /**
+     * Moves the entries cached directly in this directory, as they were before caches were named after their server,
+     * into the given namespace, so that they are not left behind. Entries already in the namespace are kept.
+     */
+    public void moveEntriesInto(String name) {
+        if (Files.notExists(directory)) return;
+        final var target = namespace(name);
+        try (var subdirectories = Files.list(directory)) {
+            for (var subdirectory : subdirectories.filter(it -> it.getFileName().toString().length() == 2 && Files.isDirectory(it)).toList()) {
+                try (var files = Files.list(subdirectory)) {
+                    for (var file : files.toList()) {
+                        final var fileName = file.getFileName().toString();
+                        final var extension = allExtensions().stream().filter(fileName::endsWith).findFirst();
+                        if (extension.isEmpty()) continue;
+                        final var id = fileName.substring(0, fileName.length() - extension.get().length());
+                        final var targetFile = target.getCachedBuildFile(id, extension.get()).toPath();
+                        Files.createDirectories(targetFile.getParent());
+                        if (Files.exists(targetFile)) Files.delete(file);
+                        else Files.move(file, targetFile, ATOMIC_MOVE);
+                    }
+                }
+                try (var entries = Files.list(subdirectory)) {
+                    if (entries.findAny().isEmpty()) Files.delete(subdirectory);
+                }
+            }
+            // the log only applies to entries that exist, so it is kept unless the namespace already has its own
+            final var logFile = directory.resolve(CacheIndex.logFileName);
+            final var targetLogFile = target.getDirectory().resolve(CacheIndex.logFileName);
+            if (Files.exists(logFile) && Files.notExists(targetLogFile)) {
+                Files.createDirectories(target.getDirectory());
+                Files.move(logFile, targetLogFile, ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(logFile);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to move cached builds into " + target.getDirectory(), e);
+        }
+    }
+
+    // entries are looked up in the configured format first, then in the other one, so both formats can be read
+    Optional<CachedBuild> read(String id) {
+        final var event = new JfrEvents.CacheRead();
+        event.begin();
+        event.buildId = id;
+        try {
+            for (var extension : extensions()) {
+                final var cachedBuildFile = getCachedBuildFile(id, extension);
+                try {
+                    final var entry = readEntry(cachedBuildFile.toPath());
+                    if (entry.isEmpty()) continue;
+                    event.hit = true;
+                    event.bytes = entry.get().size();
+                    event.mapped = entry.get().size() >= mapThreshold;
+                    return Optional.of(entry.get().cachedBuild());
+                } catch (IOException ignored) {
+                    //noinspection ResultOfMethodCallIgnored
+                    cachedBuildFile.delete();
+                    synchronized (this) {
+                        if (index != null) index.remove(id);
+                    }
+                }
+            }
+        } finally {
+            event.commit();
+        }
+        return empty();
+    }
+
+    /**
+     * Whether the build is cached with the given models, as far as the index knows. Builds whose models are not in the
+     * index are assumed to be cached with the given models, and have to be read to be sure.
+     */
+    boolean isCached(String id, Set<BuildModel> buildModels) {
+        final var index = index();
+        return index.contains(id) && index.buildModels(id).map(buildModels::equals).orElse(true);
+    }
+
+    // loaded on first use, as listing the cache directory takes a while for large caches
+    synchronized CacheIndex index() {
+        if (index == null) index = CacheIndex.load(directory, allExtensions());
+        return index;
+    }
+
+    void write(CachedBuild cachedBuild) {
+        writeAll(List.of(cachedBuild), e -> {
+            throw e;
+        });
+    }
+
+    /**
+     * Writes each build to its own entry file, then adds all the written builds to the index log in a single append.
+     * Builds that fail to be written are passed to the given callback and left out of the index.
+     */
+    void writeAll(List<CachedBuild> cachedBuilds, Consumer<RuntimeException> onFailure) {
+        final var written = new LinkedHashMap<String, CacheIndex.Entry>();
+        for (var cachedBuild : cachedBuilds) {
+            try {
+                written.put(cachedBuild.build().getId(), writeEntry(cachedBuild));
+            } catch (RuntimeException e) {
+                onFailure.accept(e);
+            }
+        }
+        if (!written.isEmpty()) index().addAll(written);
+    }
+
+    private CacheIndex.Entry writeEntry(CachedBuild cachedBuild) {
+        final var event = new JfrEvents.CacheWrite();
+        event.begin();
+        final var id = cachedBuild.build().getId();
+        final var cachedBuildFile = getCachedBuildFile(id, format.extension);
+        //noinspection ResultOfMethodCallIgnored
+        cachedBuildFile.getParentFile().mkdirs();
+        try {
+            final var bytes = cachedBuild.write(format);
+            writeAtomically(cachedBuildFile, id, bytes);
+            // drop the entry in the other format, which would otherwise be stale and take up space
+            for (var extension : extensions()) {
+                if (!extension.equals(format.extension)) Files.deleteIfExists(getCachedBuildFile(id, extension).toPath());
+            }
+            event.buildId = cachedBuild.build().getId();
+            event.bytes = bytes.length;
+            event.commit();
+            return CacheIndex.Entry.of(cachedBuild.buildModels(), cachedBuild.build().getAvailableAt(), bytes.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Evicts the builds outside the retention bounds, oldest first, as far as the index knows when they became available
+     * and how large they are. This only involves deleting the evicted entries, so it is cheap enough to run after every
+     * processing run. Entries without known details are left alone until {@link #maintain(CacheRetention, Instant)}.
+     */
+    public Summary evict(CacheRetention retention, Instant now) {
+        final var index = index();
+        final var known = index.entries().entrySet().stream()
+                .filter(it -> it.getValue().isKnown())
+                .sorted(comparingLong(it -> it.getValue().availableAt()))
+                .toList();
+        final var evicted = new ArrayList<String>();
+        var evictedSize = 0L;
+        var size = known.stream().mapToLong(it -> it.getValue().size()).sum();
+        final var minAvailableAt = retention.maxAge() == null ? Long.MIN_VALUE : now.minus(retention.maxAge()).toEpochMilli();
+        for (var entry : known) {
+            final var isTooOld = entry.getValue().availableAt() < minAvailableAt;
+            final var isOverSize = retention.maxSize() != null && size > retention.maxSize();
+            if (!isTooOld && !isOverSize) break;
+            delete(entry.getKey());
+            evicted.add(entry.getKey());
+            evictedSize += entry.getValue().size();
+            size -= entry.getValue().size();
+        }
+        index.removeAll(evicted);
+        return new Summary(index.size(), size, evicted.size(), evictedSize);
+    }
+
+    /**
+     * Brings the whole cache in order: reads the entries whose details are not yet indexed, removes unreadable entries,
+     * leftovers of interrupted writes, and entries duplicated in both formats, evicts the builds outside the retention
+     * bounds, and compacts the index. This reads every entry the index knows nothing about, so it is meant to be run
+     * as a maintenance task rather than after every run.
+     */
+    public Summary maintain(CacheRetention retention, Instant now) {
+        removeStrayFiles(now);
+        resolveUnknownEntries();
+        final var summary = evict(retention, now);
+        index().compactLog();
+        return summary;
+    }
+
+    // reads the entries the index has no details for, and removes those that cannot be read
+    void resolveUnknownEntries() {
+        final var index = index();
+        final var unreadable = new ArrayList<String>();
+        index.entries().forEach((id, entry) -> {
+            if (entry.isKnown()) return;
+            final var details = readDetails(id);
+            if (details == null) {
+                delete(id);
+                unreadable.add(id);
+            } else {
+                index.entries().put(id, details);
+            }
+        });
+        index.removeAll(unreadable);
+    }
+
+    Optional<Path> findEntryFile(String id) {
+        return extensions().stream().map(it -> getCachedBuildFile(id, it).toPath()).filter(Files::exists).findFirst();
+    }
+
+    /**
+     * Moves an entry into the cache as is, for example one unpacked from a bundle, in whichever format it was written.
+     * The entry is only added to the index in memory, until the index is compacted.
+     */
+    void moveEntry(String id, String extension, Path file, CacheIndex.Entry details) {
+        final var target = getCachedBuildFile(id, extension).toPath();
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        index().entries().put(id, details);
+    }
+
+    // written to a temporary file first, so that readers never see a partially written entry
+    private static void writeAtomically(File file, String id, byte[] bytes) throws IOException {
+        final var temporaryFile = Files.createTempFile(file.getParentFile().toPath(), id, ".tmp");
+        try {
+            Files.write(temporaryFile, bytes);
+            Files.move(temporaryFile, file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private CacheIndex.Entry readDetails(String id) {
+        for (var extension : extensions()) {
+            try {
+                final var entry = readEntry(getCachedBuildFile(id, extension).toPath());
+                if (entry.isEmpty()) continue;
+                final var cachedBuild = entry.get().cachedBuild();
+                return CacheIndex.Entry.of(cachedBuild.buildModels(), cachedBuild.build().getAvailableAt(), entry.get().size());
+            } catch (IOException | RuntimeException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads an entry without checking whether it exists first, so that a hit takes a single open. Large entries are
+     * memory-mapped rather than read, as reading them into the heap goes through an intermediate buffer. Compressed
+     * bodies are inflated straight from the mapping, while the build JSON is copied out of it once, as builds are
+     * decoded lazily from byte arrays.
+     */
+    private static Optional<Entry> readEntry(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Cached build too large: " + file);
+            return Optional.of(new Entry(CachedBuild.read(readBuffer(channel, size >= mapThreshold)), size));
+        } catch (NoSuchFileException e) {
+            return empty();
+        }
+    }
+
+    static ByteBuffer readBuffer(FileChannel channel, boolean mapped) throws IOException {
+        return mapped ? channel.map(READ_ONLY, 0, channel.size()) : readFully(channel, (int) channel.size());
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        final var buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Cached build truncated while reading");
+        }
+        return buffer.flip();
+    }
+
+    // temporary files are only removed once they are old enough to not belong to a write that is still in progress
+    private void removeStrayFiles(Instant now) {
+        if (Files.notExists(directory)) return;
+        try (var files = Files.walk(directory, 2)) {
+            for (var file : files.toList()) {
+                final var name = file.getFileName().toString();
+                if (Files.isDirectory(file)) continue;
+                if (name.endsWith(".tmp") && Files.getLastModifiedTime(file).toInstant().isBefore(now.minus(strayFileAge))) {
+                    Files.deleteIfExists(file);
+                } else if (!name.endsWith(format.extension) && allExtensions().stream().anyMatch(name::endsWith)) {
+                    // an entry in the other format is stale when the same build is also cached in the configured one
+                    final var id = name.substring(0, name.lastIndexOf('.'));
+                    if (getCachedBuildFile(id, format.extension).exists()) Files.deleteIfExists(file);
+                }
+            }
+            try (var subdirectories = Files.list(directory)) {
+                for (var subdirectory : subdirectories.filter(it -> it.getFileName().toString().length() == 2 && Files.isDirectory(it)).toList()) {
+                    try (var entries = Files.list(subdirectory)) {
+                        if (entries.findAny().isEmpty()) Files.deleteIfExists(subdirectory);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void delete(String id) {
+        try {
+            for (var extension : allExtensions()) {
+                Files.deleteIfExists(getCachedBuildFile(id, extension).toPath());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> allExtensions() {
+        return List.of(CacheFormat.JSON.extension, CacheFormat.BINARY.extension);
+    }
+
+    private List<String> extensions() {
+        final var other = format == CacheFormat.JSON ? CacheFormat.BINARY.extension : CacheFormat.JSON.extension;
+        return List.of(format.extension, other);
+    }
+
+    private File getCachedBuildFile(String id, String extension) {
+        return directory
+                .resolve(id.substring(0, 2))
+                .resolve(id + extension)
+                .toFile();
+    }
+
+    /**
+     * The entries left in the cache and their total size, and the entries evicted from it and their total size, in
+     * bytes.
+     */
+    public record Summary(int entries, long size, int evictedEntries, long evictedSize) {
+    }
+
+    private record Entry(CachedBuild cachedBuild, long size) {
+    }
+
+    record CachedBuild(Set<BuildModel> buildModels, Build build) {
+
+        Build asBuild() {
+            return build;
+        }
+
+        private static CachedBuild read(ByteBuffer buffer) throws IOException {
+            return BinaryCachedBuild.isBinary(buffer) ? BinaryCachedBuild.read(buffer) : readJson(toArray(buffer));
+        }
+
+        private static byte[] toArray(ByteBuffer buffer) {
+            if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) return buffer.array();
+            final var bytes = new byte[buffer.limit()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+
+        private static CachedBuild readJson(byte[] json) throws IOException {
+            Set<BuildModel> buildModels = null;
+            Build build = null;
+            try (var parser = objectMapper.createParser(json)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Expected a JSON object");
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final var fieldName = parser.currentName();
+                    parser.nextToken();
+                    switch (fieldName) {
+                        case "buildModels" -> buildModels = parser.readValueAs(buildModelsType);
+                        case "build" -> build = LazyApiBuild.of(json, parser).toBuild();
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+            if (buildModels == null || build == null) throw new IOException("Incomplete cached build");
+            return new CachedBuild(buildModels, build);
+        }
+
+        private byte[] write(CacheFormat format) throws IOException {
+            return switch (format) {
+                case JSON -> writeJson();
+                case BINARY -> BinaryCachedBuild.write(this, false);
+                case COMPRESSED -> BinaryCachedBuild.write(this, true);
+            };
+        }
+
+        // the field is named 'build' rather than 'apiBuild' for backwards compatibility
+        private byte[] writeJson() throws IOException {
+            final var outputStream = new ByteArrayOutputStream();
+            outputStream.write("{\"buildModels\":".getBytes(UTF_8));
+            outputStream.write(objectMapper.writeValueAsBytes(buildModels));
+            outputStream.write(",\"build\":".getBytes(UTF_8));
+            LazyApiBuild.of(build).writeTo(outputStream);
+            outputStream.write('}');
+            return outputStream.toByteArray();
+        }
+
+    }
+
+}
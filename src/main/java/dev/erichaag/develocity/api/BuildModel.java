@@ -7,15 +7,29 @@ public enum BuildModel {
     GRADLE_BUILD_CACHE_PERFORMANCE("gradle-build-cache-performance"),
     GRADLE_NETWORK_ACTIVITY("gradle-network-activity"),
     GRADLE_PROJECTS("gradle-projects"),
+    GRADLE_DEPRECATIONS("gradle-deprecations"),
+    GRADLE_ARTIFACT_TRANSFORM_EXECUTIONS("gradle-artifact-transform-executions"),
     MAVEN_ATTRIBUTES("maven-attributes"),
     MAVEN_BUILD_CACHE_PERFORMANCE("maven-build-cache-performance"),
     MAVEN_DEPENDENCY_RESOLUTION("maven-dependency-resolution"),
     MAVEN_MODULES("maven-modules");
 
     final String modelName;
+    final String propertyName;
 
     BuildModel(String modelName) {
         this.modelName = modelName;
+        this.propertyName = toPropertyName(modelName);
+    }
+
+    private static String toPropertyName(String modelName) {
+        final var propertyName = new StringBuilder();
+        final var parts = modelName.split("-");
+        propertyName.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            propertyName.append(Character.toUpperCase(parts[i].charAt(0))).append(parts[i].substring(1));
+        }
+        return propertyName.toString();
     }
 
 }
@@ -1,42 +1,58 @@
 package dev.erichaag.develocity.api;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+import dev.erichaag.develocity.api.BuildProcessorListener.BuildBatchEvent;
 import dev.erichaag.develocity.api.BuildProcessorListener.CachedBuildEvent;
 import dev.erichaag.develocity.api.BuildProcessorListener.DiscoveryStartedEvent;
 import dev.erichaag.develocity.api.BuildProcessorListener.FetchedBuildEvent;
+import dev.erichaag.develocity.api.BuildProcessorListener.Provenance;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 
 import static dev.erichaag.develocity.api.BuildProcessorListener.DiscoveryFinishedEvent;
 import static dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
 import static dev.erichaag.develocity.api.BuildProcessorListener.ProcessingStartedEvent;
 import static java.time.Instant.now;
-import static java.util.Optional.empty;
 
 public final class BuildProcessor {
 
-    private static final ObjectMapper objectMapper = new JsonMapper();
-    private static final String cacheDirectoryName = ".develocity-failure-insights";
     private static final int maxDiscoveryBuildsPerRequest = 1_000;
+    private static final int maxBuildBatchSize = 1_000;
 
     private final DevelocityClient develocity;
     private final int maxBuildsPerRequest;
+    private final BuildCache cache;
     private final List<BuildProcessorListener> listeners = new ArrayList<>();
     private final Set<BuildModel> requiredBuildModels = new HashSet<>();
 
+    private Integer listenerQueueCapacity;
+    private Integer cacheReadAheadDepth;
+    private Integer cacheWriteQueueCapacity;
+    private Path checkpointDirectory;
+    private Duration checkpointInterval;
+    private boolean resume;
+    private Set<String> skippedBuildIds = Set.of();
+
     public BuildProcessor(DevelocityClient develocity, int maxBuildsPerRequest) {
+        this(develocity, maxBuildsPerRequest, BuildCache.inUserHome());
+    }
+
+    public BuildProcessor(DevelocityClient develocity, int maxBuildsPerRequest, BuildCache cache) {
         this.develocity = develocity;
         this.maxBuildsPerRequest = maxBuildsPerRequest;
+        this.cache = cache;
     }
 
     public void registerListener(BuildProcessorListener listener) {
@@ -44,108 +60,334 @@ public final class BuildProcessor {
         requiredBuildModels.addAll(listener.getRequiredBuildModels());
     }
 
+    /**
+     * Dispatches the callbacks of each listener on a separate thread, through a queue holding at most the given number
+     * of callbacks. Callbacks are still received in order, and processing only finishes once every listener is done.
+     */
+    public void dispatchAsynchronously(int queueCapacity) {
+        this.listenerQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * Reads the cache entries of up to the given number of upcoming builds concurrently, instead of one build at a time.
+     * Builds are still processed in the order they were discovered.
+     */
+    public void readCacheAhead(int depth) {
+        this.cacheReadAheadDepth = depth;
+    }
+
+    /**
+     * Writes fetched builds to the cache on a background thread, through a queue holding at most the given number of
+     * builds. All writes are finished before listeners are notified that processing finished.
+     */
+    public void writeCacheBehind(int queueCapacity) {
+        this.cacheWriteQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * Writes checkpoints of the run to the given directory at the given interval, and removes them once the run
+     * finishes. When resuming, a run continues from the last checkpoint left behind by an interrupted run, if any, and
+     * neither discovers nor dispatches the builds it covers again.
+     */
+    public void checkpoint(Path directory, Duration interval, boolean resume) {
+        this.checkpointDirectory = directory;
+        this.checkpointInterval = interval;
+        this.resume = resume;
+    }
+
+    /**
+     * Skips the builds with the given IDs in the following runs, for example builds that a previous run already
+     * processed and that are discovered again.
+     */
+    public void skipBuilds(Set<String> buildIds) {
+        this.skippedBuildIds = Set.copyOf(buildIds);
+    }
+
     public void process(ZonedDateTime since) {
         process(since, null);
     }
 
     public void process(ZonedDateTime since, String query) {
-        new BuildProcessorWorker(develocity, maxBuildsPerRequest, since, query, listeners, requiredBuildModels).process();
+        final var checkpoint = checkpointDirectory == null ? null : new ProcessingCheckpoint(checkpointDirectory, checkpointInterval, resume);
+        new BuildProcessorWorker(develocity, maxBuildsPerRequest, cache, since, query, listeners, requiredBuildModels, listenerQueueCapacity, cacheReadAheadDepth, cacheWriteQueueCapacity, checkpoint, skippedBuildIds).process();
+    }
+
+    /**
+     * Processes the builds of several processors concurrently, each on its own thread, and waits for all of them to
+     * finish. Listeners registered on more than one of the processors receive callbacks from several threads at once.
+     */
+    public static void processAll(Map<BuildProcessor, ZonedDateTime> sinceByProcessor, String query) {
+        if (sinceByProcessor.size() == 1) {
+            sinceByProcessor.forEach((processor, since) -> processor.process(since, query));
+            return;
+        }
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var futures = sinceByProcessor.entrySet().stream()
+                    .map(it -> executor.submit(() -> it.getKey().process(it.getValue(), query)))
+                    .toList();
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        }
     }
 
     private static class BuildProcessorWorker {
 
         private final DevelocityClient develocity;
         private final int maxBuildsPerRequest;
+        private final BuildCache cache;
         private final ZonedDateTime since;
         private final String query;
         private final List<BuildProcessorListener> listeners;
         private final Set<BuildModel> requiredBuildModels;
-
-        private String lastCachedBuildId;
-        private String lastUncachedBuildId;
-        private int uncached = 0;
-
-        BuildProcessorWorker(DevelocityClient develocity, int maxBuildsPerRequest, ZonedDateTime since, String query, List<BuildProcessorListener> listeners, Set<BuildModel> requiredBuildModels) {
+        private final Integer listenerQueueCapacity;
+        private final int cacheReadAheadDepth;
+        private final Integer cacheWriteQueueCapacity;
+        private final ProcessingCheckpoint checkpoint;
+        private final Set<String> skippedBuildIds;
+        private final Map<BuildProcessorListener, ListenerQueue> listenerQueues = new IdentityHashMap<>();
+        private final Map<BuildProcessorListener, Set<Class<? extends Build>>> buildTypes = new IdentityHashMap<>();
+        private final List<BuildProcessorListener> buildListeners;
+        private final List<BuildProcessorListener> batchListeners;
+        private final List<BuildProcessorListener> relevanceListeners;
+        private final List<Build> batch = new ArrayList<>();
+
+        private CacheWriter cacheWriter;
+
+        private Provenance batchProvenance;
+
+        // the uncached builds are fetched as a page of the builds following the last build before them, which can
+        // include builds that no listener is interested in, so both the page size and the relevant builds are tracked
+        private final Set<String> uncachedBuildIds = new HashSet<>();
+        private String lastBuildIdBeforeUncached;
+        private String lastBuildId;
+        private int buildsSinceLastBuildBeforeUncached = 0;
+        private int uncachedPageSize = 0;
+
+        BuildProcessorWorker(DevelocityClient develocity, int maxBuildsPerRequest, BuildCache cache, ZonedDateTime since, String query, List<BuildProcessorListener> listeners, Set<BuildModel> requiredBuildModels, Integer listenerQueueCapacity, Integer cacheReadAheadDepth, Integer cacheWriteQueueCapacity, ProcessingCheckpoint checkpoint, Set<String> skippedBuildIds) {
             this.develocity = develocity;
             this.maxBuildsPerRequest = maxBuildsPerRequest;
+            this.cache = cache;
             this.since = since;
-            this.query = query;
             this.listeners = listeners;
             this.requiredBuildModels = requiredBuildModels;
+            this.listenerQueueCapacity = listenerQueueCapacity;
+            this.cacheReadAheadDepth = cacheReadAheadDepth == null ? 1 : cacheReadAheadDepth;
+            this.cacheWriteQueueCapacity = cacheWriteQueueCapacity;
+            this.checkpoint = checkpoint;
+            this.skippedBuildIds = skippedBuildIds;
+            // asked for once, as relevance is checked for every build and listener
+            listeners.forEach(it -> buildTypes.put(it, it.getBuildTypes()));
+            this.buildListeners = listeners.stream().filter(it -> !it.receivesBuildBatches()).toList();
+            this.batchListeners = listeners.stream().filter(BuildProcessorListener::receivesBuildBatches).toList();
+            final var listenersRequiringModels = listeners.stream().filter(it -> !it.getRequiredBuildModels().isEmpty()).toList();
+            this.relevanceListeners = listenersRequiringModels.isEmpty() ? listeners : listenersRequiringModels;
+            this.query = BuildQuery.and(query, getListenersQuery());
         }
 
         public void process() {
-            notifyListenersDiscoveryStarted();
-            final var builds = discoverBuilds(query, since);
-            notifyListenersDiscoveryFinished(builds);
-            notifyListenersProcessingStarted();
-            builds.forEach(this::process);
-            if (uncached > 0) processUncachedBuilds();
-            notifyListenersProcessingFinished();
+            if (listenerQueueCapacity != null) {
+                listeners.forEach(it -> listenerQueues.put(it, new ListenerQueue(it, listenerQueueCapacity)));
+            }
+            if (cacheWriteQueueCapacity != null) cacheWriter = new CacheWriter(cache, cacheWriteQueueCapacity);
+            try {
+                final var resumed = checkpoint == null ? null : checkpoint.open(since, query, this::restoreListenerState);
+                // the cache index is only needed once discovery finishes, so it is loaded in the meantime
+                Thread.startVirtualThread(cache::index);
+                notifyListenersDiscoveryStarted();
+                final var discoveredBuilds = resumed == null ? discoverBuilds(query, since, List.of())
+                        : resumed.discoveryComplete() ? resumed.builds()
+                        : discoverBuilds(query, since, resumed.builds());
+                final var builds = discoveredBuilds.stream().filter(this::isRelevant).toList();
+                notifyListenersDiscoveryFinished(builds);
+                notifyListenersProcessingStarted();
+                var processed = resumed == null ? 0 : resumed.processed();
+                if (processed > 0) {
+                    lastBuildIdBeforeUncached = discoveredBuilds.get(processed - 1).getId();
+                    lastBuildId = lastBuildIdBeforeUncached;
+                }
+                final var remainingBuilds = discoveredBuilds.subList(processed, discoveredBuilds.size());
+                try (var cachedBuilds = new CacheReadAhead(cache, remainingBuilds, this::isCachedAndRelevant, cacheReadAheadDepth)) {
+                    for (var build : remainingBuilds) {
+                        process(build, cachedBuilds.next());
+                        processed++;
+                        // only covers the builds up to the last one before those pending a fetch, which were all dispatched
+                        if (checkpoint != null && checkpoint.isDue()) writeCheckpoint(true, processed - buildsSinceLastBuildBeforeUncached);
+                    }
+                }
+                if (!uncachedBuildIds.isEmpty()) processUncachedBuilds();
+                notifyListenersBuildBatch();
+                if (cacheWriter != null) cacheWriter.flush();
+                notifyListenersProcessingFinished();
+                listenerQueues.values().forEach(ListenerQueue::drain);
+                if (checkpoint != null) checkpoint.delete();
+            } finally {
+                if (cacheWriter != null) cacheWriter.close();
+                listenerQueues.values().forEach(ListenerQueue::close);
+                if (checkpoint != null) checkpoint.close();
+            }
+        }
+
+        private void writeCheckpoint(boolean discoveryComplete, int processed) {
+            notifyListenersBuildBatch();
+            listenerQueues.values().forEach(ListenerQueue::drain);
+            final var listenerStates = new LinkedHashMap<String, byte[]>();
+            listeners.forEach(it -> {
+                final var state = it.saveState();
+                if (state != null) listenerStates.put(it.getClass().getName(), state);
+            });
+            checkpoint.write(since, query, discoveryComplete, processed, listenerStates);
+        }
+
+        private void restoreListenerState(String listenerName, byte[] state) {
+            listeners.stream().filter(it -> it.getClass().getName().equals(listenerName)).forEach(it -> it.restoreState(state));
         }
 
         private void notifyListenersDiscoveryStarted() {
             final var event = new DiscoveryStartedEvent(now(), since);
-            listeners.forEach(it -> it.onDiscoveryStarted(event));
+            listeners.forEach(it -> dispatch(it, "onDiscoveryStarted", null, () -> it.onDiscoveryStarted(event)));
         }
 
         private void notifyListenersDiscoveryFinished(List<Build> builds) {
             final var event = new DiscoveryFinishedEvent(now(), builds);
-            listeners.forEach(it -> it.onDiscoveryFinished(event));
+            listeners.forEach(it -> dispatch(it, "onDiscoveryFinished", null, () -> it.onDiscoveryFinished(event)));
         }
 
         private void notifyListenersProcessingStarted() {
             final var event = new ProcessingStartedEvent(now());
-            listeners.forEach(it -> it.onProcessingStarted(event));
+            listeners.forEach(it -> dispatch(it, "onProcessingStarted", null, () -> it.onProcessingStarted(event)));
         }
 
         private void notifyListenersProcessingFinished() {
             final var event = new ProcessingFinishedEvent(now());
-            listeners.forEach(it -> it.onProcessingFinished(event));
+            listeners.forEach(it -> dispatch(it, "onProcessingFinished", null, () -> it.onProcessingFinished(event)));
         }
 
         private void notifyListenersBuild(Build build) {
-            listeners.forEach(it -> process(build, it));
+            buildListeners.forEach(it -> {
+                if (isRelevant(it, build)) dispatch(it, "onBuild", build, () -> process(build, it));
+            });
         }
 
         private void notifyListenersCachedBuild(Build build) {
             final var event = new CachedBuildEvent(now(), build);
-            listeners.forEach(it -> it.onCachedBuild(event));
+            buildListeners.forEach(it -> {
+                if (isRelevant(it, build)) dispatch(it, "onCachedBuild", build, () -> it.onCachedBuild(event));
+            });
+            addToBatch(build, Provenance.CACHED);
         }
 
         private void notifyListenersFetchedBuild(Build build) {
             final var event = new FetchedBuildEvent(now(), build);
-            listeners.forEach(it -> it.onFetchedBuild(event));
+            buildListeners.forEach(it -> {
+                if (isRelevant(it, build)) dispatch(it, "onFetchedBuild", build, () -> it.onFetchedBuild(event));
+            });
+            addToBatch(build, Provenance.FETCHED);
+        }
+
+        private void addToBatch(Build build, Provenance provenance) {
+            if (batchListeners.isEmpty()) return;
+            if (provenance != batchProvenance || batch.size() == maxBuildBatchSize) notifyListenersBuildBatch();
+            batchProvenance = provenance;
+            batch.add(build);
+        }
+
+        private void notifyListenersBuildBatch() {
+            if (batch.isEmpty()) return;
+            final var builds = List.copyOf(batch);
+            batchListeners.forEach(listener -> {
+                final var relevantBuilds = builds.stream().allMatch(it -> isRelevant(listener, it)) ? builds : builds.stream().filter(it -> isRelevant(listener, it)).toList();
+                if (relevantBuilds.isEmpty()) return;
+                final var event = new BuildBatchEvent(now(), relevantBuilds, batchProvenance);
+                dispatch(listener, "onBuildBatch", null, () -> listener.onBuildBatch(event));
+            });
+            batch.clear();
         }
 
-        private List<Build> discoverBuilds(String query, ZonedDateTime since) {
+        // builds matching any listener's query, as long as every listener narrows down the builds it is interested in
+        private String getListenersQuery() {
+            final var queries = relevanceListeners.stream().map(BuildProcessorListener::getQuery).toList();
+            if (queries.isEmpty() || queries.stream().anyMatch(it -> it == null || it.isBlank())) return null;
+            return BuildQuery.or(queries.toArray(new String[0]));
+        }
+
+        // decided in memory from the cache index, so builds that are not cached, or are cached without the required
+        // models, are fetched in pages along with the other uncached builds without touching the disk
+        private boolean isCachedAndRelevant(Build build) {
+            return isRelevant(build) && cache.isCached(build.getId(), requiredBuildModels);
+        }
+
+        private boolean isRelevant(Build build) {
+            if (skippedBuildIds.contains(build.getId())) return false;
+            return relevanceListeners.isEmpty() || relevanceListeners.stream().anyMatch(it -> isRelevant(it, build));
+        }
+
+        private boolean isRelevant(BuildProcessorListener listener, Build build) {
+            return buildTypes.get(listener).contains(build.getClass()) && listener.isRelevant(build);
+        }
+
+        private void dispatch(BuildProcessorListener listener, String callback, Build build, Runnable runnable) {
+            final var queue = listenerQueues.get(listener);
+            if (queue == null) {
+                dispatchNow(listener, callback, build, runnable);
+            } else {
+                queue.submit(() -> dispatchNow(listener, callback, build, runnable));
+            }
+        }
+
+        private static void dispatchNow(BuildProcessorListener listener, String callback, Build build, Runnable runnable) {
+            final var event = new JfrEvents.ListenerDispatch();
+            event.begin();
+            runnable.run();
+            event.end();
+            if (event.shouldCommit()) {
+                event.listener = listener.getClass();
+                event.callback = callback;
+                event.buildId = build == null ? null : build.getId();
+                event.commit();
+            }
+        }
+
+        private List<Build> discoverBuilds(String query, ZonedDateTime since, List<Build> discoveredBuilds) {
             final var sinceMilli = since.toInstant().toEpochMilli();
-            final var builds = new ArrayList<Build>();
+            final var builds = new ArrayList<>(discoveredBuilds);
             while (true) {
-                final var response = develocity.getBuilds(query, maxDiscoveryBuildsPerRequest, getLastId(builds));
-                if (response.isEmpty()) return builds;
-                if (response.getLast().getAvailableAt() < sinceMilli) {
-                    builds.addAll(response.stream().filter(it -> it.getAvailableAt() >= sinceMilli).toList());
-                    return builds;
+                final var event = new JfrEvents.DiscoveryPage();
+                event.begin();
+                event.fromBuild = getLastId(builds);
+                final var response = develocity.getBuilds(query, maxDiscoveryBuildsPerRequest, event.fromBuild);
+                event.builds = response.size();
+                event.commit();
+                final var isLastPage = response.isEmpty() || response.getLast().getAvailableAt() < sinceMilli;
+                final var page = isLastPage ? response.stream().filter(it -> it.getAvailableAt() >= sinceMilli).toList() : response;
+                builds.addAll(page);
+                if (checkpoint != null) {
+                    checkpoint.addDiscovered(page);
+                    if (isLastPage || checkpoint.isDue()) writeCheckpoint(isLastPage, 0);
                 }
-                builds.addAll(response);
+                if (isLastPage) return builds;
             }
         }
 
-        private void process(Build build) {
-            final var cachedBuild = getCachedBuild(build.getId());
-            if (uncached == maxBuildsPerRequest || (cachedBuild.isPresent() && uncached > 0)) {
+        private void process(Build build, Optional<CachedBuild> cachedBuild) {
+            final var isRelevant = isRelevant(build);
+            if (!uncachedBuildIds.isEmpty() && (cachedBuild.isPresent() || buildsSinceLastBuildBeforeUncached == maxBuildsPerRequest)) {
                 processUncachedBuilds();
-                lastCachedBuildId = lastUncachedBuildId;
-                uncached = 0;
             }
-            if (cachedBuild.isPresent()) {
-                processCachedBuild(cachedBuild.get());
-                lastCachedBuildId = build.getId();
+            if (isRelevant && cachedBuild.isEmpty()) {
+                uncachedBuildIds.add(build.getId());
+                uncachedPageSize = ++buildsSinceLastBuildBeforeUncached;
+            } else if (uncachedBuildIds.isEmpty()) {
+                if (cachedBuild.isPresent()) processCachedBuild(cachedBuild.get());
+                lastBuildIdBeforeUncached = build.getId();
             } else {
-                lastUncachedBuildId = build.getId();
-                uncached++;
+                buildsSinceLastBuildBeforeUncached++;
             }
+            lastBuildId = build.getId();
         }
 
         private void processCachedBuild(CachedBuild cachedBuild) {
@@ -155,18 +397,38 @@ public final class BuildProcessor {
                 return;
             }
             final var build = develocity.getBuild(cachedBuild.asBuild().getId(), requiredBuildModels.toArray(new BuildModel[0]));
-            writeCachedBuild(new CachedBuild(requiredBuildModels, build));
+            writeToCache(new CachedBuild(requiredBuildModels, build));
             notifyListenersBuild(build);
             notifyListenersFetchedBuild(build);
         }
 
         private void processUncachedBuilds() {
-            final var builds = develocity.getBuilds(query, uncached, lastCachedBuildId, requiredBuildModels.toArray(new BuildModel[0]));
-            builds.forEach(build -> {
-                writeCachedBuild(new CachedBuild(requiredBuildModels, build));
+            final var event = new JfrEvents.BatchFetch();
+            event.begin();
+            final var builds = develocity.getBuilds(query, uncachedPageSize, lastBuildIdBeforeUncached, requiredBuildModels.toArray(new BuildModel[0]));
+            event.fromBuild = lastBuildIdBeforeUncached;
+            event.requested = uncachedPageSize;
+            event.fetched = builds.size();
+            event.commit();
+            notifyListenersBuildBatch();
+            builds.stream().filter(it -> uncachedBuildIds.contains(it.getId())).forEach(build -> {
+                writeToCache(new CachedBuild(requiredBuildModels, build));
                 notifyListenersBuild(build);
                 notifyListenersFetchedBuild(build);
             });
+            notifyListenersBuildBatch();
+            uncachedBuildIds.clear();
+            lastBuildIdBeforeUncached = lastBuildId;
+            buildsSinceLastBuildBeforeUncached = 0;
+            uncachedPageSize = 0;
+        }
+
+        private void writeToCache(CachedBuild cachedBuild) {
+            if (cacheWriter == null) {
+                cache.write(cachedBuild);
+            } else {
+                cacheWriter.submit(cachedBuild);
+            }
         }
 
         private static void process(Build build, BuildProcessorListener listener) {
@@ -179,54 +441,10 @@ public final class BuildProcessor {
             }
         }
 
-        private static File getCachedBuildFile(String id) {
-            return Path.of(System.getProperty("user.home"))
-                    .resolve(cacheDirectoryName)
-                    .resolve(id.substring(0, 2))
-                    .resolve(id + ".json")
-                    .toFile();
-        }
-
-        private static Optional<CachedBuild> getCachedBuild(String id) {
-            final var cachedBuildFile = getCachedBuildFile(id);
-            try {
-                if (cachedBuildFile.exists()) {
-                    return Optional.of(objectMapper.readValue(cachedBuildFile, CachedBuild.class));
-                }
-            } catch (IOException ignored) {
-                //noinspection ResultOfMethodCallIgnored
-                cachedBuildFile.delete();
-            }
-            return empty();
-        }
-
-        private static void writeCachedBuild(CachedBuild cachedBuild) {
-            final var cachedBuildFile = getCachedBuildFile(cachedBuild.build().getId());
-            //noinspection ResultOfMethodCallIgnored
-            cachedBuildFile.getParentFile().mkdirs();
-            try {
-                Files.write(cachedBuildFile.toPath(), objectMapper.writeValueAsBytes(cachedBuild));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
-
         private static String getLastId(List<Build> builds) {
             return builds.isEmpty() ? null : builds.getLast().getId();
         }
 
-        private record CachedBuild(Set<BuildModel> buildModels, ApiBuild build) { // todo rename to apiBuild. done for backwards compatibility.
-
-            private CachedBuild(Set<BuildModel> buildModels, Build build) {
-                this(buildModels, build.getBuild());
-            }
-
-            private Build asBuild() {
-                return Build.from(build);
-            }
-
-        }
-
     }
 
 }
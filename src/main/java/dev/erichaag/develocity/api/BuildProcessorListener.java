@@ -13,6 +13,55 @@ public interface BuildProcessorListener {
         return emptySet();
     }
 
+    /**
+     * Builds are only fetched, cached and dispatched when a listener requiring build models is interested in them, by
+     * type and by {@link #isRelevant}. Listeners requiring no models receive the relevant builds they are interested in.
+     */
+    default Set<Class<? extends Build>> getBuildTypes() {
+        return Set.of(GradleBuild.class, MavenBuild.class, BazelBuild.class, SbtBuild.class);
+    }
+
+    /**
+     * Called with the discovered build, which only has the data returned by discovery, and none of the models.
+     */
+    default boolean isRelevant(Build build) {
+        return true;
+    }
+
+    /**
+     * An advanced search query matching the builds this listener is interested in, which is pushed down into discovery
+     * and fetching. Returning {@code null} means the listener is interested in all builds.
+     */
+    default String getQuery() {
+        return null;
+    }
+
+    /**
+     * Listeners receiving batches get {@link #onBuildBatch} instead of the per-build callbacks.
+     */
+    default boolean receivesBuildBatches() {
+        return false;
+    }
+
+    default void onBuildBatch(BuildBatchEvent event) {
+    }
+
+    /**
+     * The state built up from the builds received since the previous call, appended to checkpoints so that an
+     * interrupted run can be resumed without dispatching the same builds again. Returning {@code null} means nothing
+     * changed that is worth keeping.
+     */
+    default byte[] saveState() {
+        return null;
+    }
+
+    /**
+     * Called with each state saved up to the checkpoint a run resumes from, in the order they were saved, before any
+     * callbacks of the resumed run.
+     */
+    default void restoreState(byte[] state) {
+    }
+
     default void onBuild(Build build) {
     }
 
@@ -52,6 +101,12 @@ public interface BuildProcessorListener {
     record FetchedBuildEvent(Instant triggeredAt, Build build) implements BuildProcessorEvent {
     }
 
+    /**
+     * A contiguous run of builds in processing order that were all either read from the cache or fetched.
+     */
+    record BuildBatchEvent(Instant triggeredAt, List<Build> builds, Provenance provenance) implements BuildProcessorEvent {
+    }
+
     record DiscoveryStartedEvent(Instant triggeredAt, ZonedDateTime since) implements BuildProcessorEvent {
     }
 
@@ -67,6 +122,7 @@ public interface BuildProcessorListener {
     sealed interface BuildProcessorEvent permits
             CachedBuildEvent,
             FetchedBuildEvent,
+            BuildBatchEvent,
             DiscoveryStartedEvent,
             DiscoveryFinishedEvent,
             ProcessingStartedEvent,
@@ -74,4 +130,9 @@ public interface BuildProcessorListener {
         Instant triggeredAt();
     }
 
+    enum Provenance {
+        CACHED,
+        FETCHED
+    }
+
 }
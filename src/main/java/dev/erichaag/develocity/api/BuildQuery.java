@@ -0,0 +1,51 @@
+package dev.erichaag.develocity.api;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Helpers for composing Develocity advanced search queries. Blank queries match all builds and are left out.
+ */
+public final class BuildQuery {
+
+    private BuildQuery() {
+    }
+
+    public static String and(String... queries) {
+        return combine(" and ", Stream.of(queries));
+    }
+
+    public static String or(String... queries) {
+        return combine(" or ", Stream.of(queries));
+    }
+
+    /**
+     * Matches builds not matching the given query, which must not be blank.
+     */
+    public static String not(String query) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Cannot negate a blank query");
+        return "not (" + query + ")";
+    }
+
+    /**
+     * Matches builds having any of the given values for the field, for example {@code anyOf("tag", List.of("CI", "LOCAL"))}.
+     */
+    public static String anyOf(String field, Collection<String> values) {
+        return combine(" or ", values.stream().map(it -> field + ":" + quote(it)));
+    }
+
+    private static String combine(String operator, Stream<String> queries) {
+        final var nonBlank = queries.filter(Objects::nonNull).filter(it -> !it.isBlank()).toList();
+        if (nonBlank.isEmpty()) return null;
+        if (nonBlank.size() == 1) return nonBlank.getFirst();
+        return nonBlank.stream().map(it -> "(" + it + ")").collect(joining(operator));
+    }
+
+    private static String quote(String value) {
+        return value.chars().anyMatch(it -> Character.isWhitespace(it) || it == '(' || it == ')') ? "\"" + value + "\"" : value;
+    }
+
+}
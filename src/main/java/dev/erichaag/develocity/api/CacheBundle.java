@@ -0,0 +1,186 @@
+package dev.erichaag.develocity.api;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.reverseOrder;
+
+/**
+ * Packs cached builds into a single file that can be carried to another machine, for example to warm up the cache of
+ * an ephemeral CI agent, and unpacks them into a cache there.
+ * <p>
+ * A bundle is a zip file with one compressed entry per build, named {@code <cache>/<id><extension>} after the cache it
+ * came from, followed by a manifest. Besides the CRC of every entry, the manifest holds a SHA-256 checksum over the
+ * names and contents of all entries and the index details of every build, so the builds can be imported without
+ * decoding them.
+ */
+public final class CacheBundle {
+
+    private static final String manifestName = "manifest";
+    private static final String header = "develocity-failure-insights-cache-bundle 1";
+
+    private CacheBundle() {
+    }
+
+    /**
+     * Writes the builds that became available within the given range from each of the named caches into a bundle.
+     *
+     * @return the number of exported builds
+     */
+    public static int export(Map<String, BuildCache> caches, Path bundle, Instant from, Instant until) {
+        final var digest = sha256();
+        final var manifest = new ArrayList<String>();
+        try {
+            final var parent = bundle.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final var temporaryFile = Files.createTempFile(parent, bundle.getFileName().toString(), ".tmp");
+            try (var outputStream = new ZipOutputStream(Files.newOutputStream(temporaryFile))) {
+                for (var cache : caches.entrySet()) {
+                    cache.getValue().resolveUnknownEntries();
+                    for (var entry : cache.getValue().index().entries().entrySet()) {
+                        final var availableAt = entry.getValue().availableAt();
+                        if (availableAt < from.toEpochMilli() || availableAt >= until.toEpochMilli()) continue;
+                        final var file = cache.getValue().findEntryFile(entry.getKey());
+                        if (file.isEmpty()) continue;
+                        final var fileName = file.get().getFileName().toString();
+                        final var name = cache.getKey() + "/" + fileName;
+                        outputStream.putNextEntry(new ZipEntry(name));
+                        digest.update(name.getBytes(UTF_8));
+                        final var digestingStream = new DigestOutputStream(outputStream, digest);
+                        Files.copy(file.get(), digestingStream);
+                        outputStream.closeEntry();
+                        manifest.add(name + " " + entry.getValue());
+                    }
+                }
+                outputStream.putNextEntry(new ZipEntry(manifestName));
+                final var lines = new ArrayList<String>();
+                lines.add(header);
+                lines.add(HexFormat.of().formatHex(digest.digest()));
+                lines.addAll(manifest);
+                outputStream.write((String.join("\n", lines) + "\n").getBytes(UTF_8));
+                outputStream.closeEntry();
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temporaryFile);
+                throw e;
+            }
+            Files.move(temporaryFile, bundle, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export the cache to " + bundle, e);
+        }
+        return manifest.size();
+    }
+
+    /**
+     * Unpacks a bundle into the named caches, skipping builds that are already cached and builds of caches that are not
+     * given. Nothing is imported when the bundle does not match its checksum.
+     *
+     * @return the number of imported builds
+     */
+    public static int importInto(Map<String, BuildCache> caches, Path bundle) {
+        final var digest = sha256();
+        // entries are unpacked next to each cache first, and only moved into place once the whole bundle is verified
+        final var stagingDirectories = new HashMap<String, Path>();
+        try {
+            final List<String> manifest;
+            try (var inputStream = new ZipInputStream(Files.newInputStream(bundle))) {
+                for (var entry = inputStream.getNextEntry(); ; entry = inputStream.getNextEntry()) {
+                    if (entry == null) throw new IOException("The bundle has no manifest");
+                    if (entry.getName().equals(manifestName)) {
+                        manifest = new String(inputStream.readAllBytes(), UTF_8).lines().toList();
+                        break;
+                    }
+                    final var bytes = inputStream.readAllBytes();
+                    digest.update(entry.getName().getBytes(UTF_8));
+                    digest.update(bytes);
+                    final var name = Name.parse(entry.getName());
+                    final var cache = caches.get(name.cache());
+                    if (cache == null) continue;
+                    final var stagingDirectory = stagingDirectories.computeIfAbsent(name.cache(), __ -> createStagingDirectory(cache));
+                    Files.write(stagingDirectory.resolve(name.fileName()), bytes);
+                }
+            }
+            if (manifest.size() < 2 || !manifest.getFirst().equals(header)) throw new IOException("Unsupported bundle format");
+            if (!manifest.get(1).equals(HexFormat.of().formatHex(digest.digest()))) throw new IOException("The bundle does not match its checksum");
+            var imported = 0;
+            for (var line : manifest.subList(2, manifest.size())) {
+                final var fields = line.split(" ", -1);
+                final var name = Name.parse(fields[0]);
+                final var cache = caches.get(name.cache());
+                if (cache == null || cache.index().contains(name.id())) continue;
+                final var details = new CacheIndex.Entry(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                cache.moveEntry(name.id(), name.extension(), stagingDirectories.get(name.cache()).resolve(name.fileName()), details);
+                imported++;
+            }
+            caches.values().forEach(it -> it.index().compactLog());
+            return imported;
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Failed to import the cache from " + bundle, e);
+        } finally {
+            stagingDirectories.values().forEach(CacheBundle::deleteRecursively);
+        }
+    }
+
+    private static Path createStagingDirectory(BuildCache cache) {
+        try {
+            Files.createDirectories(cache.getDirectory());
+            return Files.createTempDirectory(cache.getDirectory(), ".import");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // entries are named '<cache>/<id><extension>'
+    private record Name(String cache, String fileName) {
+
+        static Name parse(String name) throws IOException {
+            final var separator = name.lastIndexOf('/');
+            final var fileName = name.substring(separator + 1);
+            if (separator <= 0 || fileName.indexOf('.') <= 0) throw new IOException("Unexpected bundle entry " + name);
+            return new Name(name.substring(0, separator), fileName);
+        }
+
+        String id() {
+            return fileName.substring(0, fileName.lastIndexOf('.'));
+        }
+
+        String extension() {
+            return fileName.substring(fileName.lastIndexOf('.'));
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package dev.erichaag.develocity.api;
+
+/**
+ * How builds are encoded in the cache. Entries in any format can be read regardless of the configured one, so the
+ * format can be changed without clearing the cache.
+ */
+public enum CacheFormat {
+
+    /**
+     * The build as returned by the Develocity API, wrapped in a JSON object along with its models.
+     */
+    JSON(".json"),
+
+    /**
+     * A versioned binary header holding the models and the position of the build JSON, so reads skip scanning it.
+     */
+    BINARY(".bin"),
+
+    /**
+     * Like {@link #BINARY}, with everything after the header compressed using Deflate.
+     */
+    COMPRESSED(".bin");
+
+    final String extension;
+
+    CacheFormat(String extension) {
+        this.extension = extension;
+    }
+
+}
@@ -0,0 +1,215 @@
+package dev.erichaag.develocity.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The ids of the builds in a cache directory and, where known, the models they were stored with, when they became
+ * available, and the size of their entry, so that whether a build is cached can be decided in memory.
+ * <p>
+ * The ids are listed from the cache directory when the index is loaded, while the details are kept in a log file next
+ * to the entries, appended to on every write. Entries written before the log existed, or by another process while the
+ * log was being compacted, are indexed without details and have to be read to find out.
+ */
+final class CacheIndex {
+
+    static final String logFileName = "index";
+    private static final String removed = "-";
+
+    private final Path logFile;
+    private final Map<String, Entry> entries;
+
+    private CacheIndex(Path logFile, Map<String, Entry> entries) {
+        this.logFile = logFile;
+        this.entries = entries;
+    }
+
+    static CacheIndex load(Path directory, List<String> extensions) {
+        final var logFile = directory.resolve(logFileName);
+        final var entries = new ConcurrentHashMap<String, Entry>();
+        listIds(directory, extensions).forEach(it -> entries.put(it, Entry.unknown));
+        final var log = readLog(logFile);
+        log.entries().forEach((id, entry) -> entries.computeIfPresent(id, (__, ___) -> entry));
+        final var index = new CacheIndex(logFile, entries);
+        if (log.lines() > entries.size()) index.compactLog();
+        return index;
+    }
+
+    boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * The models the build was stored with, or nothing when the build is not cached or its models are not known.
+     */
+    Optional<Set<BuildModel>> buildModels(String id) {
+        final var entry = entries.get(id);
+        if (entry == null || entry.buildModels() == null) return Optional.empty();
+        try {
+            return Optional.of(parse(entry.buildModels()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Map<String, Entry> entries() {
+        return entries;
+    }
+
+    // the entries of a whole batch of writes are appended with a single open and flush of the log
+    void addAll(Map<String, Entry> added) {
+        entries.putAll(added);
+        append(added.entrySet().stream().map(it -> it.getKey() + " " + it.getValue()).toList());
+    }
+
+    void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    void removeAll(Collection<String> ids) {
+        final var lines = ids.stream().filter(it -> entries.remove(it) != null).map(it -> it + " " + removed).toList();
+        if (!lines.isEmpty()) append(lines);
+    }
+
+    private synchronized void append(List<String> lines) {
+        try {
+            Files.createDirectories(logFile.getParent());
+            Files.write(logFile, lines, UTF_8, CREATE, APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrites the log with a single line per cached build with known details, dropping removed and overwritten entries.
+     */
+    synchronized void compactLog() {
+        if (entries.isEmpty() && Files.notExists(logFile)) return;
+        try {
+            Files.createDirectories(logFile.getParent());
+            final var temporaryFile = Files.createTempFile(logFile.getParent(), logFileName, ".tmp");
+            try (var writer = Files.newBufferedWriter(temporaryFile, UTF_8)) {
+                for (var entry : entries.entrySet()) {
+                    if (entry.getValue().buildModels() == null) continue;
+                    writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+                }
+            }
+            Files.move(temporaryFile, logFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Stream<String> listIds(Path directory, List<String> extensions) {
+        if (Files.notExists(directory)) return Stream.empty();
+        try (var subdirectories = Files.list(directory)) {
+            // entries are stored in subdirectories named after the first two characters of the id
+            return subdirectories
+                    .filter(it -> it.getFileName().toString().length() == 2 && Files.isDirectory(it))
+                    .toList()
+                    .stream()
+                    .flatMap(subdirectory -> listIds(subdirectory, subdirectory.getFileName().toString(), extensions));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Stream<String> listIds(Path subdirectory, String prefix, List<String> extensions) {
+        try (var files = Files.list(subdirectory)) {
+            return files
+                    .map(it -> it.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .flatMap(name -> extensions.stream().filter(name::endsWith).map(it -> name.substring(0, name.length() - it.length())))
+                    .toList()
+                    .stream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // lines are '<id> <models> <available at> <size>', or '<id> -' for removed entries
+    private static Log readLog(Path logFile) {
+        final var entries = new HashMap<String, Entry>();
+        if (Files.notExists(logFile)) return new Log(entries, 0);
+        var lineCount = 0;
+        try (var reader = Files.newBufferedReader(logFile, UTF_8)) {
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineCount++;
+                final var fields = line.split(" ", -1);
+                if (fields.length == 2 && fields[1].equals(removed)) {
+                    entries.remove(fields[0]);
+                } else if (fields.length == 4) {
+                    try {
+                        entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the log only speeds things up, so entries fall back to unknown details when it cannot be read
+            return new Log(Map.of(), lineCount);
+        }
+        return new Log(entries, lineCount);
+    }
+
+    private static String format(Set<BuildModel> buildModels) {
+        return buildModels.stream().map(Enum::name).sorted().collect(joining(","));
+    }
+
+    private static Set<BuildModel> parse(String buildModels) {
+        final var parsed = EnumSet.noneOf(BuildModel.class);
+        if (buildModels.isEmpty()) return parsed;
+        for (var name : buildModels.split(",")) {
+            parsed.add(BuildModel.valueOf(name));
+        }
+        return parsed;
+    }
+
+    /**
+     * The details of a cached build, where the models are null and the other details -1 while they are not known.
+     */
+    record Entry(String buildModels, long availableAt, long size) {
+
+        static final Entry unknown = new Entry(null, -1, -1);
+
+        static Entry of(Set<BuildModel> buildModels, long availableAt, long size) {
+            return new Entry(format(buildModels), availableAt, size);
+        }
+
+        boolean isKnown() {
+            return buildModels != null;
+        }
+
+        @Override
+        public String toString() {
+            return buildModels + " " + availableAt + " " + size;
+        }
+
+    }
+
+    private record Log(Map<String, Entry> entries, int lines) {
+    }
+
+}
@@ -0,0 +1,69 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Reads the cache entries of upcoming builds ahead of time on virtual threads, keeping at most the given number of
+ * reads in flight, and hands them out in the order the builds were discovered. With a depth of one, entries are read
+ * on the calling thread when needed.
+ */
+final class CacheReadAhead implements AutoCloseable {
+
+    private final BuildCache cache;
+    private final Iterator<Build> upcoming;
+    private final Predicate<Build> shouldRead;
+    private final int depth;
+    private final Queue<Future<Optional<CachedBuild>>> pending = new ArrayDeque<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    CacheReadAhead(BuildCache cache, List<Build> builds, Predicate<Build> shouldRead, int depth) {
+        this.cache = cache;
+        this.upcoming = builds.iterator();
+        this.shouldRead = shouldRead;
+        this.depth = depth;
+    }
+
+    /**
+     * Returns the cache entry of the next build, or nothing if it is not cached or not to be read.
+     */
+    Optional<CachedBuild> next() {
+        if (depth <= 1) {
+            final var build = upcoming.next();
+            return shouldRead.test(build) ? cache.read(build.getId()) : Optional.empty();
+        }
+        while (pending.size() < depth && upcoming.hasNext()) {
+            final var build = upcoming.next();
+            pending.add(shouldRead.test(build)
+                    ? executor.submit(() -> cache.read(build.getId()))
+                    : CompletableFuture.completedFuture(Optional.empty()));
+        }
+        final var next = pending.remove();
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        pending.forEach(it -> it.cancel(true));
+        executor.shutdownNow();
+        executor.close();
+    }
+
+}
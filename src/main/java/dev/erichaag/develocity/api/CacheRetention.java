@@ -0,0 +1,16 @@
+package dev.erichaag.develocity.api;
+
+import java.time.Duration;
+
+/**
+ * Bounds on the builds kept in the cache. Builds that became available longer than {@code maxAge} ago are evicted,
+ * then the oldest builds until the entries take up at most {@code maxSize} bytes. Either bound can be null to leave it
+ * out.
+ */
+public record CacheRetention(Duration maxAge, Long maxSize) {
+
+    public boolean isBounded() {
+        return maxAge != null || maxSize != null;
+    }
+
+}
@@ -0,0 +1,135 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Writes fetched builds to the cache on a background thread, so that writing overlaps with fetching and listener work.
+ * Submitting blocks while the queue is full. Failed writes do not fail processing, as the builds are simply fetched
+ * again next time, and are reported when flushing. This includes failures to append to the index log. Should the
+ * writer thread end anyway, submitting and flushing fail instead of waiting for it.
+ */
+final class CacheWriter implements AutoCloseable {
+
+    private static final int maxBatchSize = 256;
+
+    private final BuildCache cache;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+
+    private final AtomicInteger failedWrites = new AtomicInteger();
+    private volatile RuntimeException lastFailure;
+
+    CacheWriter(BuildCache cache, int capacity) {
+        this.cache = cache;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = Thread.ofVirtual().name("cache-writer").start(this::consume);
+    }
+
+    void submit(CachedBuild cachedBuild) {
+        put(cachedBuild);
+    }
+
+    /**
+     * Waits until all builds submitted so far are written.
+     */
+    void flush() {
+        final var flush = new Flush(new CountDownLatch(1));
+        put(flush);
+        try {
+            while (!flush.latch().await(100, MILLISECONDS)) checkRunning();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        final var failed = failedWrites.getAndSet(0);
+        if (failed > 0) System.out.println("Failed to write " + failed + " builds to the cache: " + lastFailure.getMessage());
+    }
+
+    @Override
+    public void close() {
+        if (thread.isAlive()) put(new Stop());
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void consume() {
+        final var batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            // builds are written in runs up to the next flush or stop, so that each run is indexed with one append
+            final var cachedBuilds = new ArrayList<CachedBuild>(batch.size());
+            for (var item : batch) {
+                switch (item) {
+                    case CachedBuild cachedBuild -> cachedBuilds.add(cachedBuild);
+                    case Flush flush -> {
+                        try {
+                            write(cachedBuilds);
+                        } finally {
+                            flush.latch().countDown();
+                        }
+                    }
+                    case Stop __ -> {
+                        write(cachedBuilds);
+                        return;
+                    }
+                    default -> throw new IllegalStateException("Unexpected item " + item);
+                }
+            }
+            write(cachedBuilds);
+            batch.clear();
+        }
+    }
+
+    private void write(List<CachedBuild> cachedBuilds) {
+        if (cachedBuilds.isEmpty()) return;
+        final var failed = new AtomicInteger();
+        try {
+            cache.writeAll(cachedBuilds, e -> {
+                failed.incrementAndGet();
+                lastFailure = e;
+            });
+        } catch (RuntimeException e) {
+            // the index could not be loaded or appended to, so none of the builds count as cached
+            failed.set(cachedBuilds.size());
+            lastFailure = e;
+        } finally {
+            failedWrites.addAndGet(failed.get());
+            cachedBuilds.clear();
+        }
+    }
+
+    private void put(Object item) {
+        try {
+            while (!queue.offer(item, 100, MILLISECONDS)) checkRunning();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkRunning() {
+        if (!thread.isAlive()) throw new IllegalStateException("The cache writer stopped unexpectedly");
+    }
+
+    private record Flush(CountDownLatch latch) {
+    }
+
+    private record Stop() {
+    }
+
+}
@@ -4,74 +4,87 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
-import static java.util.Optional.ofNullable;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ARTIFACT_TRANSFORM_EXECUTIONS;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_BUILD_CACHE_PERFORMANCE;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_DEPRECATIONS;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_NETWORK_ACTIVITY;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_PROJECTS;
 
 public final class GradleBuild implements Build {
 
-    private final ApiBuild build;
+    private final LazyApiBuild build;
 
     GradleBuild(ApiBuild build) {
+        this(LazyApiBuild.of(build));
+    }
+
+    GradleBuild(LazyApiBuild build) {
         this.build = build;
     }
 
     @Override
     public String getId() {
-        return build.getId();
+        return build.header().getId();
     }
 
     @Override
     public long getAvailableAt() {
-        return build.getAvailableAt();
+        return build.header().getAvailableAt();
     }
 
     @Override
     public String getBuildToolVersion() {
-        return build.getBuildToolVersion();
+        return build.header().getBuildToolVersion();
     }
 
     @Override
     public String getBuildAgentVersion() {
-        return build.getBuildAgentVersion();
+        return build.header().getBuildAgentVersion();
     }
 
     @Override
     public ApiBuild getBuild() {
+        return build.fully();
+    }
+
+    LazyApiBuild lazyBuild() {
         return build;
     }
 
     public Optional<GradleAttributes> getAttributes() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_ATTRIBUTES)
                 .map(BuildModels::getGradleAttributes)
                 .map(BuildModelsGradleAttributes::getModel);
     }
 
     public Optional<GradleBuildCachePerformance> getBuildCachePerformance() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_BUILD_CACHE_PERFORMANCE)
                 .map(BuildModels::getGradleBuildCachePerformance)
                 .map(BuildModelsGradleBuildCachePerformance::getModel);
     }
 
     public Optional<GradleNetworkActivity> getNetworkActivity() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_NETWORK_ACTIVITY)
                 .map(BuildModels::getGradleNetworkActivity)
                 .map(BuildModelsGradleNetworkActivity::getModel);
     }
 
     public Optional<List<GradleProject>> getProjects() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_PROJECTS)
                 .map(BuildModels::getGradleProjects)
                 .map(BuildModelsGradleProjects::getModel);
     }
 
     public Optional<List<GradleDeprecationEntry>> getDeprecations() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_DEPRECATIONS)
                 .map(BuildModels::getGradleDeprecations)
                 .map(BuildModelsGradleDeprecations::getModel)
                 .map(GradleDeprecations::getDeprecations);
     }
 
     public Optional<List<GradleArtifactTransformExecutionEntry>> getArtifactTransformExecutions() {
-        return ofNullable(build.getModels())
+        return build.models(GRADLE_ARTIFACT_TRANSFORM_EXECUTIONS)
                 .map(BuildModels::getGradleArtifactTransformExecutions)
                 .map(BuildModelsGradleArtifactTransformExecutions::getModel)
                 .map(GradleArtifactTransformExecutions::getArtifactTransformExecutions);
@@ -82,17 +95,17 @@ public final class GradleBuild implements Build {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         GradleBuild that = (GradleBuild) o;
-        return Objects.equals(build, that.build);
+        return Objects.equals(getId(), that.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(build);
+        return Objects.hashCode(getId());
     }
 
     @Override
     public String toString() {
-        return "GradleBuild{build=" + build + "}";
+        return "GradleBuild{id=" + getId() + ", availableAt=" + getAvailableAt() + "}";
     }
 
 }
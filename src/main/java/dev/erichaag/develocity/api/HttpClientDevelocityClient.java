@@ -1,10 +1,5 @@
 package dev.erichaag.develocity.api;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
-
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -12,51 +7,185 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandler;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.net.http.HttpResponse.BodyHandlers.ofByteArray;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public final class HttpClientDevelocityClient implements DevelocityClient {
 
     private final URI serverUrl;
     private final String accessKey;
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final RequestHedging hedging;
+    private final RateLimiter rateLimiter;
+    private final Map<RequestType, LatencyTracker> latencies = new EnumMap<>(RequestType.class);
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final AtomicLong sentRequests = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
 
     private static final int maxRetries = 5;
 
     public HttpClientDevelocityClient(URI serverUrl) {
+        this(serverUrl, null);
+    }
+
+    public HttpClientDevelocityClient(URI serverUrl, RequestHedging hedging) {
+        this(serverUrl, hedging, null);
+    }
+
+    public HttpClientDevelocityClient(URI serverUrl, RequestHedging hedging, Integer maxRequestsPerSecond) {
         this.serverUrl = serverUrl;
         this.accessKey = AccessKeyProvider.lookupAccessKey(serverUrl).orElse(null);
         this.httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
-        this.objectMapper = new JsonMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.hedging = hedging;
+        this.rateLimiter = maxRequestsPerSecond == null ? null : new RateLimiter(maxRequestsPerSecond);
+        for (var type : RequestType.values()) {
+            latencies.put(type, new LatencyTracker());
+        }
+    }
+
+    LatencyTracker getLatencies(RequestType type) {
+        return latencies.get(type);
+    }
+
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    public RequestMetrics getMetrics() {
+        return metrics;
     }
 
     public Build getBuild(String id, BuildModel... buildModels) {
-        final var response = sendRequest("/api/builds/" + id, null, false, null, null, Set.of(buildModels));
-        return Build.from(handleResponse(response, new TypeReference<>() {}));
+        final var response = sendRequest(RequestType.BUILD, "/api/builds/" + id, null, false, null, null, Set.of(buildModels));
+        return handleResponse(response, it -> LazyApiBuild.of(it).toBuild());
     }
 
     public List<Build> getBuilds(String query, Integer maxBuilds, String fromBuild, BuildModel... buildModels) {
-        final var response = sendRequest("/api/builds", query, true, maxBuilds, fromBuild, Set.of(buildModels));
-        return handleResponse(response, new TypeReference<List<ApiBuild>>() {}).stream().map(Build::from).toList();
+        final var type = buildModels.length == 0 ? RequestType.DISCOVERY : RequestType.MODELS;
+        final var response = sendRequest(type, "/api/builds", query, true, maxBuilds, fromBuild, Set.of(buildModels));
+        return handleResponse(response, it -> LazyApiBuild.ofArray(it).stream().map(LazyApiBuild::toBuild).toList());
     }
 
-    private HttpResponse<byte[]> sendRequest(String path, String query, Boolean reverse, Integer maxBuilds, String fromBuild, Set<BuildModel> buildModels) {
+    private HttpResponse<byte[]> sendRequest(RequestType type, String path, String query, Boolean reverse, Integer maxBuilds, String fromBuild, Set<BuildModel> buildModels) {
         final var request = buildRequest(path, query, reverse, maxBuilds, fromBuild, buildModels);
-        return retry(() -> sendRequest(request, ofByteArray()));
+        final var event = new JfrEvents.HttpRequest();
+        event.begin();
+        final var response = retry(() -> {
+            event.attempts++;
+            return sendRequest(request, ofByteArray(), latencies.get(type));
+        });
+        event.uri = request.uri().toString();
+        event.statusCode = response.statusCode();
+        event.bytes = response.body().length;
+        event.commit();
+        metrics.recordReceivedBytes(response.body().length);
+        if (response.statusCode() >= 400) metrics.recordFailedRequest();
+        return response;
     }
 
-    private HttpResponse<byte[]> sendRequest(HttpRequest request, BodyHandler<byte[]> bodyHandler) {
+    private <T> HttpResponse<T> sendRequest(HttpRequest request, BodyHandler<T> bodyHandler, LatencyTracker latencies) {
+        if (rateLimiter != null) rateLimiter.acquire();
+        final var startedOn = System.nanoTime();
+        sentRequests.incrementAndGet();
         try {
-            return httpClient.send(request, bodyHandler);
+            final HttpResponse<T> response;
+            if (hedging == null) {
+                response = httpClient.send(request, bodyHandler);
+                if (isSuccessful(response)) latencies.record(Duration.ofNanos(System.nanoTime() - startedOn));
+            } else {
+                response = sendHedgedRequest(request, bodyHandler, latencies);
+            }
+            metrics.recordRequest(Duration.ofNanos(System.nanoTime() - startedOn));
+            return response;
         } catch (IOException | InterruptedException e) {
+            metrics.recordFailedRequest();
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            metrics.recordFailedRequest();
+            throw e;
+        }
+    }
+
+    // only the latencies of successful primaries are recorded, as fast errors would lower the percentile that requests
+    // are hedged after, and the hedge taking over for a slow primary would hide the very latencies hedging cuts short,
+    // so a primary is left to complete when its hedge wins
+    private <T> HttpResponse<T> sendHedgedRequest(HttpRequest request, BodyHandler<T> bodyHandler, LatencyTracker latencies) throws InterruptedException {
+        final var startedOn = System.nanoTime();
+        final var primary = httpClient.sendAsync(request, bodyHandler).whenComplete((response, e) -> {
+            if (e == null && isSuccessful(response)) latencies.record(Duration.ofNanos(System.nanoTime() - startedOn));
+        });
+        final var hedgeAfter = latencies.percentile(hedging.percentile());
+        if (hedgeAfter.isEmpty()) return await(primary);
+        try {
+            return primary.get(hedgeAfter.get().toNanos(), NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException ignored) {
+        }
+        if (!isHedgeWithinBudget()) return await(primary);
+        // a hedge is a request like any other, so it waits for its own permit and is dropped if the primary completed meanwhile
+        if (rateLimiter != null) rateLimiter.acquire();
+        if (primary.isDone()) return await(primary);
+        hedgedRequests.incrementAndGet();
+        final var hedge = httpClient.sendAsync(request, bodyHandler);
+        try {
+            return await(firstSuccessful(primary, hedge));
+        } finally {
+            hedge.cancel(true);
+        }
+    }
+
+    private boolean isHedgeWithinBudget() {
+        return hedgedRequests.get() * 100 < sentRequests.get() * hedging.maxExtraRequestsPercent();
+    }
+
+    // a fast error response must not win over a slower successful one, and when neither succeeds, the primary's
+    // outcome is passed on as if the request had not been hedged
+    private static <T> CompletableFuture<HttpResponse<T>> firstSuccessful(CompletableFuture<HttpResponse<T>> primary, CompletableFuture<HttpResponse<T>> hedge) {
+        final var result = new CompletableFuture<HttpResponse<T>>();
+        final var failures = new AtomicInteger();
+        Stream.of(primary, hedge).forEach(future -> future.whenComplete((response, e) -> {
+            if (e == null && isSuccessful(response)) {
+                result.complete(response);
+            } else if (failures.incrementAndGet() == 2) {
+                primary.whenComplete((primaryResponse, primaryException) -> {
+                    if (primaryException == null) {
+                        result.complete(primaryResponse);
+                    } else {
+                        result.completeExceptionally(primaryException);
+                    }
+                });
+            }
+        }));
+        return result;
+    }
+
+    private static boolean isSuccessful(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
     }
 
@@ -86,21 +215,13 @@ public final class HttpClientDevelocityClient implements DevelocityClient {
         }
     }
 
-    private <T> T handleResponse(HttpResponse<byte[]> response, TypeReference<T> typeReference) {
+    private static <T> T handleResponse(HttpResponse<byte[]> response, Function<byte[], T> readValue) {
         if (response.statusCode() == 200) {
-            return readValue(response.body(), typeReference);
+            return readValue.apply(response.body());
         }
         throw new RuntimeException("Received response code " + response.statusCode() + " from " + response.request().uri());
     }
 
-    private <T> T readValue(byte[] value, TypeReference<T> typeReference) {
-        try {
-            return objectMapper.readValue(value, typeReference);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private <T> T retry(Supplier<T> supplier) {
         final var exceptions = new ArrayList<RuntimeException>();
         do {
@@ -123,4 +244,11 @@ public final class HttpClientDevelocityClient implements DevelocityClient {
         }
     }
 
+    // discovery pages, single builds and pages of models take very different times, so each is hedged by its own latencies
+    enum RequestType {
+        DISCOVERY,
+        BUILD,
+        MODELS
+    }
+
 }
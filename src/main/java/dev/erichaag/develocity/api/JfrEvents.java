@@ -0,0 +1,158 @@
+package dev.erichaag.develocity.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+final class JfrEvents {
+
+    private static final String category = "Develocity Failure Insights";
+
+    private JfrEvents() {
+    }
+
+    @Name("dev.erichaag.develocity.DiscoveryPage")
+    @Label("Discovery Page")
+    @Description("A page of builds requested while discovering builds")
+    @Category({category, "Processing"})
+    @StackTrace(false)
+    static final class DiscoveryPage extends Event {
+
+        @Label("From Build")
+        String fromBuild;
+
+        @Label("Builds")
+        int builds;
+
+    }
+
+    @Name("dev.erichaag.develocity.BatchFetch")
+    @Label("Batch Fetch")
+    @Description("A batch of uncached builds fetched with their required models")
+    @Category({category, "Processing"})
+    @StackTrace(false)
+    static final class BatchFetch extends Event {
+
+        @Label("From Build")
+        String fromBuild;
+
+        @Label("Requested Builds")
+        int requested;
+
+        @Label("Fetched Builds")
+        int fetched;
+
+    }
+
+    @Name("dev.erichaag.develocity.HttpRequest")
+    @Label("HTTP Request")
+    @Description("A request to the Develocity API, including all of its retries")
+    @Category({category, "HTTP"})
+    @StackTrace(false)
+    static final class HttpRequest extends Event {
+
+        @Label("URI")
+        String uri;
+
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Response Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Attempts")
+        int attempts;
+
+    }
+
+    @Name("dev.erichaag.develocity.CacheRead")
+    @Label("Cache Read")
+    @Category({category, "Cache"})
+    @StackTrace(false)
+    static final class CacheRead extends Event {
+
+        @Label("Build Id")
+        String buildId;
+
+        @Label("Hit")
+        boolean hit;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Memory-Mapped")
+        boolean mapped;
+
+    }
+
+    @Name("dev.erichaag.develocity.CacheWrite")
+    @Label("Cache Write")
+    @Category({category, "Cache"})
+    @StackTrace(false)
+    static final class CacheWrite extends Event {
+
+        @Label("Build Id")
+        String buildId;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+    }
+
+    @Name("dev.erichaag.develocity.BuildDecode")
+    @Label("Build Decode")
+    @Description("Decoding of the header, a single model, or all of a build from its raw JSON")
+    @Category({category, "JSON"})
+    @StackTrace(false)
+    static final class BuildDecode extends Event {
+
+        @Label("Part")
+        String part;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+    }
+
+    @Name("dev.erichaag.develocity.ListenerDispatch")
+    @Label("Listener Dispatch")
+    @Description("A single callback of a build processor listener")
+    @Category({category, "Processing"})
+    @StackTrace(false)
+    static final class ListenerDispatch extends Event {
+
+        @Label("Listener")
+        Class<?> listener;
+
+        @Label("Callback")
+        String callback;
+
+        @Label("Build Id")
+        String buildId;
+
+    }
+
+    @Name("dev.erichaag.develocity.Checkpoint")
+    @Label("Checkpoint")
+    @Description("A checkpoint of the discovered builds, the processing position, and the listener states")
+    @Category({category, "Processing"})
+    @StackTrace(false)
+    static final class Checkpoint extends Event {
+
+        @Label("Discovered Builds")
+        int discovered;
+
+        @Label("Processed Builds")
+        int processed;
+
+    }
+
+}
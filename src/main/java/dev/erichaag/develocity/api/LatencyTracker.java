@@ -0,0 +1,48 @@
+package dev.erichaag.develocity.api;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Optional.empty;
+
+public final class LatencyTracker {
+
+    private static final int defaultWindowSize = 1_000;
+    private static final int minSamples = 20;
+
+    private final long[] latencies;
+
+    private int next = 0;
+    private int size = 0;
+
+    public LatencyTracker() {
+        this(defaultWindowSize);
+    }
+
+    LatencyTracker(int windowSize) {
+        this.latencies = new long[windowSize];
+    }
+
+    public synchronized void record(Duration latency) {
+        latencies[next] = latency.toNanos();
+        next = (next + 1) % latencies.length;
+        size = min(size + 1, latencies.length);
+    }
+
+    public synchronized Optional<Duration> percentile(double percentile) {
+        if (size < minSamples) return empty();
+        final var sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        final var index = (int) ceil(percentile / 100 * size) - 1;
+        return Optional.of(Duration.ofNanos(sorted[max(0, min(size - 1, index))]));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,164 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.JsonPointerBasedFilter;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.fasterxml.jackson.core.filter.TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH;
+import static java.util.Optional.ofNullable;
+
+final class LazyApiBuild {
+
+    private static final ObjectMapper objectMapper = createObjectMapper();
+    private static final TokenFilter headerFilter = new TokenFilter() {
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return name.equals("models") ? null : TokenFilter.INCLUDE_ALL;
+        }
+    };
+
+    private final byte[] json;
+    private final int offset;
+    private final int length;
+    private final ApiBuild build;
+    private final Set<BuildModel> decodedModels = EnumSet.noneOf(BuildModel.class);
+
+    private boolean decodedHeader;
+    private boolean decodedAll;
+
+    private LazyApiBuild(byte[] json, int offset, int length, ApiBuild build, boolean decoded) {
+        this.json = json;
+        this.offset = offset;
+        this.length = length;
+        this.build = build;
+        this.decodedHeader = decoded;
+        this.decodedAll = decoded;
+    }
+
+    static LazyApiBuild of(ApiBuild build) {
+        return new LazyApiBuild(null, 0, 0, build, true);
+    }
+
+    static LazyApiBuild of(byte[] json) {
+        return of(json, 0, json.length);
+    }
+
+    static LazyApiBuild of(byte[] json, int offset, int length) {
+        return new LazyApiBuild(json, offset, length, new ApiBuild(), false);
+    }
+
+    static List<LazyApiBuild> ofArray(byte[] json) {
+        final var builds = new ArrayList<LazyApiBuild>();
+        try (var parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of builds");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                builds.add(of(json, parser));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return builds;
+    }
+
+    static LazyApiBuild of(byte[] json, JsonParser parser) throws IOException {
+        final var start = (int) parser.currentTokenLocation().getByteOffset();
+        parser.skipChildren();
+        final var end = (int) parser.currentTokenLocation().getByteOffset() + 1;
+        return of(json, start, end - start);
+    }
+
+    static LazyApiBuild of(Build build) {
+        return switch (build) {
+            case GradleBuild b -> b.lazyBuild();
+            case MavenBuild b -> b.lazyBuild();
+            case BazelBuild b -> b.lazyBuild();
+            case SbtBuild b -> b.lazyBuild();
+        };
+    }
+
+    Build toBuild() {
+        final var buildToolType = header().getBuildToolType();
+        return switch (buildToolType) {
+            case "gradle" -> new GradleBuild(this);
+            case "maven" -> new MavenBuild(this);
+            case "bazel" -> new BazelBuild(this);
+            case "sbt" -> new SbtBuild(this);
+            default -> throw new IllegalArgumentException("Unknown build tool: " + buildToolType);
+        };
+    }
+
+    synchronized ApiBuild header() {
+        if (!decodedHeader) {
+            decode(headerFilter, "header");
+            decodedHeader = true;
+        }
+        return build;
+    }
+
+    synchronized Optional<BuildModels> models(BuildModel model) {
+        if (!decodedAll && !decodedModels.contains(model)) {
+            decode(new JsonPointerBasedFilter("/models/" + model.propertyName), model.propertyName);
+            decodedModels.add(model);
+        }
+        return ofNullable(build.getModels());
+    }
+
+    synchronized ApiBuild fully() {
+        if (!decodedAll) {
+            decode(TokenFilter.INCLUDE_ALL, "all");
+            decodedHeader = true;
+            decodedAll = true;
+        }
+        return build;
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        if (json != null) {
+            outputStream.write(json, offset, length);
+        } else {
+            outputStream.write(objectMapper.writeValueAsBytes(build));
+        }
+    }
+
+    private void decode(TokenFilter filter, String part) {
+        final var event = new JfrEvents.BuildDecode();
+        event.begin();
+        try (var parser = createFilteringParser(filter)) {
+            if (parser.nextToken() != null) {
+                objectMapper.readerForUpdating(build).readValue(parser);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        event.part = part;
+        event.bytes = length;
+        event.commit();
+    }
+
+    private JsonParser createFilteringParser(TokenFilter filter) throws IOException {
+        return new FilteringParserDelegate(objectMapper.createParser(json, offset, length), filter, INCLUDE_ALL_AND_PATH, true);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        final var objectMapper = new JsonMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // merge each separately decoded model into the same BuildModels instance instead of replacing it
+        objectMapper.configOverride(BuildModels.class).setMergeable(true);
+        return objectMapper;
+    }
+
+}
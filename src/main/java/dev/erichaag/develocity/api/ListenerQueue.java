@@ -0,0 +1,105 @@
+package dev.erichaag.develocity.api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the callbacks of a single listener in submission order on its own thread. Submitting blocks while the queue
+ * is full, so a slow listener slows down processing instead of buffering an unbounded number of builds.
+ * <p>
+ * When a callback fails, the remaining callbacks are skipped and the failure is rethrown on the next submit or drain.
+ */
+final class ListenerQueue implements AutoCloseable {
+
+    private final BlockingQueue<Runnable> queue;
+    private final Thread thread;
+
+    private volatile RuntimeException failure;
+
+    ListenerQueue(BuildProcessorListener listener, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = Thread.ofVirtual().name("listener-" + listener.getClass().getSimpleName()).start(this::consume);
+    }
+
+    void submit(Runnable callback) {
+        rethrowFailure();
+        put(callback);
+    }
+
+    void drain() {
+        final var latch = new CountDownLatch(1);
+        put(new Barrier(latch));
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        rethrowFailure();
+    }
+
+    @Override
+    public void close() {
+        put(new Stop());
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void consume() {
+        while (true) {
+            final Runnable callback;
+            try {
+                callback = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            switch (callback) {
+                case Stop __ -> {
+                    return;
+                }
+                case Barrier barrier -> barrier.run();
+                default -> {
+                    if (failure != null) continue;
+                    try {
+                        callback.run();
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+    }
+
+    private void put(Runnable callback) {
+        try {
+            queue.put(callback);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void rethrowFailure() {
+        if (failure != null) throw new RuntimeException("Listener failed", failure);
+    }
+
+    private record Barrier(CountDownLatch latch) implements Runnable {
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+
+    }
+
+    private record Stop() implements Runnable {
+
+        @Override
+        public void run() {
+        }
+
+    }
+
+}
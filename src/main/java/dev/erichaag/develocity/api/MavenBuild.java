@@ -4,61 +4,72 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
-import static java.util.Optional.ofNullable;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_BUILD_CACHE_PERFORMANCE;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_DEPENDENCY_RESOLUTION;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_MODULES;
 
 public final class MavenBuild implements Build {
 
-    private final ApiBuild build;
+    private final LazyApiBuild build;
 
     MavenBuild(ApiBuild build) {
+        this(LazyApiBuild.of(build));
+    }
+
+    MavenBuild(LazyApiBuild build) {
         this.build = build;
     }
 
     @Override
     public String getId() {
-        return build.getId();
+        return build.header().getId();
     }
 
     @Override
     public long getAvailableAt() {
-        return build.getAvailableAt();
+        return build.header().getAvailableAt();
     }
 
     @Override
     public String getBuildToolVersion() {
-        return build.getBuildToolVersion();
+        return build.header().getBuildToolVersion();
     }
 
     @Override
     public String getBuildAgentVersion() {
-        return build.getBuildAgentVersion();
+        return build.header().getBuildAgentVersion();
     }
 
     @Override
     public ApiBuild getBuild() {
+        return build.fully();
+    }
+
+    LazyApiBuild lazyBuild() {
         return build;
     }
 
     public Optional<MavenAttributes> getAttributes() {
-        return ofNullable(build.getModels())
+        return build.models(MAVEN_ATTRIBUTES)
                 .map(BuildModels::getMavenAttributes)
                 .map(BuildModelsMavenAttributes::getModel);
     }
 
     public Optional<MavenBuildCachePerformance> getPerformance() {
-        return ofNullable(build.getModels())
+        return build.models(MAVEN_BUILD_CACHE_PERFORMANCE)
                 .map(BuildModels::getMavenBuildCachePerformance)
                 .map(BuildModelsMavenBuildCachePerformance::getModel);
     }
 
     public Optional<MavenDependencyResolution> getDependencyResolution() {
-        return ofNullable(build.getModels())
+        return build.models(MAVEN_DEPENDENCY_RESOLUTION)
                 .map(BuildModels::getMavenDependencyResolution)
                 .map(BuildModelsMavenDependencyResolution::getModel);
     }
 
     public Optional<List<MavenModule>> getModules() {
-        return ofNullable(build.getModels())
+        return build.models(MAVEN_MODULES)
                 .map(BuildModels::getMavenModules)
                 .map(BuildModelsMavenModules::getModel);
     }
@@ -68,17 +79,17 @@ public final class MavenBuild implements Build {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MavenBuild that = (MavenBuild) o;
-        return Objects.equals(build, that.build);
+        return Objects.equals(getId(), that.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(build);
+        return Objects.hashCode(getId());
     }
 
     @Override
     public String toString() {
-        return "MavenBuild{build=" + build + "}";
+        return "MavenBuild{id=" + getId() + ", availableAt=" + getAvailableAt() + "}";
     }
 
 }
@@ -0,0 +1,250 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Checkpoints of a single processing run in a directory, from which the run can be resumed after it was interrupted.
+ * <p>
+ * Discovered builds are appended to a file as they are discovered, so each one is written once. The states saved by
+ * the listeners at each checkpoint are appended to another file, so a checkpoint only writes what changed since the
+ * previous one rather than the whole history. The checkpoint itself is written atomically and records how much of
+ * both files is known to be on disk and how many builds were processed. Anything written after the last checkpoint is
+ * discarded when resuming, so a run interrupted at any point resumes from a consistent state.
+ */
+final class ProcessingCheckpoint implements AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final int version = 2;
+    private static final String buildsFileName = "builds";
+    private static final String statesFileName = "states";
+    private static final String checkpointFileName = "checkpoint.json";
+
+    private final Path directory;
+    private final Duration interval;
+    private final boolean resume;
+
+    private FileOutputStream buildsFile;
+    private OutputStream builds;
+    private FileOutputStream statesFile;
+    private DataOutputStream states;
+    private int discovered;
+    private long discoveredBytes;
+    private long statesBytes;
+    private long lastWrittenAt;
+
+    ProcessingCheckpoint(Path directory, Duration interval, boolean resume) {
+        this.directory = directory;
+        this.interval = interval;
+        this.resume = resume;
+    }
+
+    /**
+     * Opens the checkpoint for a run, returning the state to resume from, or {@code null} when starting from scratch.
+     * When resuming, the saved listener states are passed to the given callback in the order they were saved, along
+     * with the name of the listener that saved them. Fails when resuming from a checkpoint written for a different
+     * period or query.
+     */
+    Resumed open(ZonedDateTime since, String query, BiConsumer<String, byte[]> restoreState) {
+        try {
+            Files.createDirectories(directory);
+            final var checkpointFile = directory.resolve(checkpointFileName);
+            final var buildsPath = directory.resolve(buildsFileName);
+            final var statesPath = directory.resolve(statesFileName);
+            Resumed resumed = null;
+            if (resume && Files.exists(checkpointFile)) {
+                final var checkpoint = objectMapper.readValue(checkpointFile.toFile(), CheckpointFile.class);
+                if (checkpoint.version() != version) {
+                    throw new IllegalStateException("Unsupported checkpoint version " + checkpoint.version() + " in " + checkpointFile);
+                }
+                if (checkpoint.since() != since.toInstant().toEpochMilli() || !Objects.equals(checkpoint.query(), query)) {
+                    throw new IllegalStateException("Checkpoint in " + directory + " was written for a different period or query");
+                }
+                final var builds = readBuilds(buildsPath, checkpoint.discoveredBytes());
+                if (builds.size() != checkpoint.discovered()) throw new IllegalStateException("Checkpoint in " + directory + " is missing discovered builds");
+                readStates(statesPath, checkpoint.statesBytes(), restoreState);
+                discovered = checkpoint.discovered();
+                discoveredBytes = checkpoint.discoveredBytes();
+                statesBytes = checkpoint.statesBytes();
+                resumed = new Resumed(builds, checkpoint.discoveryComplete(), checkpoint.processed());
+                System.out.println("Resuming from checkpoint with " + discovered + " builds discovered and " + checkpoint.processed() + " processed");
+            } else {
+                Files.deleteIfExists(checkpointFile);
+            }
+            // drops whatever was appended after the last checkpoint, or everything when starting from scratch
+            try (var channel = FileChannel.open(buildsPath, CREATE, WRITE)) {
+                channel.truncate(discoveredBytes);
+            }
+            try (var channel = FileChannel.open(statesPath, CREATE, WRITE)) {
+                channel.truncate(statesBytes);
+            }
+            buildsFile = new FileOutputStream(buildsPath.toFile(), true);
+            builds = new BufferedOutputStream(buildsFile);
+            statesFile = new FileOutputStream(statesPath.toFile(), true);
+            states = new DataOutputStream(new BufferedOutputStream(statesFile));
+            lastWrittenAt = System.nanoTime();
+            return resumed;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open checkpoint in " + directory, e);
+        }
+    }
+
+    void addDiscovered(List<Build> discoveredBuilds) {
+        try {
+            final var json = new ByteArrayOutputStream();
+            for (var build : discoveredBuilds) {
+                json.reset();
+                LazyApiBuild.of(build).writeTo(json);
+                json.write('\n');
+                json.writeTo(builds);
+                discoveredBytes += json.size();
+            }
+            discovered += discoveredBuilds.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write discovered builds to checkpoint in " + directory, e);
+        }
+    }
+
+    boolean isDue() {
+        return System.nanoTime() - lastWrittenAt >= interval.toNanos();
+    }
+
+    /**
+     * Writes a checkpoint after the given number of builds were processed, once the discovered builds and the listener
+     * states it refers to are safely on disk. The listener states are those saved since the previous checkpoint.
+     */
+    void write(ZonedDateTime since, String query, boolean discoveryComplete, int processed, Map<String, byte[]> listenerStates) {
+        final var event = new JfrEvents.Checkpoint();
+        event.begin();
+        try {
+            for (var state : listenerStates.entrySet()) {
+                final var name = state.getKey().getBytes(UTF_8);
+                states.writeInt(name.length);
+                states.write(name);
+                states.writeInt(state.getValue().length);
+                states.write(state.getValue());
+                statesBytes += 8L + name.length + state.getValue().length;
+            }
+            builds.flush();
+            buildsFile.getFD().sync();
+            states.flush();
+            statesFile.getFD().sync();
+            final var checkpoint = new CheckpointFile(version, since.toInstant().toEpochMilli(), query, discovered, discoveredBytes, statesBytes, discoveryComplete, processed);
+            final var temporaryFile = Files.createTempFile(directory, checkpointFileName, ".tmp");
+            try {
+                objectMapper.writeValue(temporaryFile.toFile(), checkpoint);
+                Files.move(temporaryFile, directory.resolve(checkpointFileName), ATOMIC_MOVE, REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+            event.discovered = discovered;
+            event.processed = processed;
+            event.commit();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write checkpoint to " + directory, e);
+        }
+        lastWrittenAt = System.nanoTime();
+    }
+
+    /**
+     * Removes the checkpoint once the run it belongs to has finished.
+     */
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(directory.resolve(checkpointFileName));
+            Files.deleteIfExists(directory.resolve(buildsFileName));
+            Files.deleteIfExists(directory.resolve(statesFileName));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete checkpoint in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (builds == null) return;
+        try {
+            builds.close();
+            builds = null;
+            states.close();
+            states = null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // read one line at a time rather than as a whole, so that the builds file can grow beyond the size of an array
+    private static List<Build> readBuilds(Path file, long length) throws IOException {
+        final var builds = new ArrayList<Build>();
+        try (var input = new BufferedInputStream(Files.newInputStream(file))) {
+            final var line = new ByteArrayOutputStream();
+            for (long read = 0; read < length; read++) {
+                final var next = input.read();
+                if (next < 0) throw new IOException("Discovered builds in " + file + " are truncated");
+                if (next != '\n') {
+                    line.write(next);
+                    continue;
+                }
+                builds.add(LazyApiBuild.of(line.toByteArray()).toBuild());
+                line.reset();
+            }
+        }
+        return builds;
+    }
+
+    private static void readStates(Path file, long length, BiConsumer<String, byte[]> restoreState) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (long read = 0; read < length; ) {
+                final var name = new byte[input.readInt()];
+                input.readFully(name);
+                final var state = new byte[input.readInt()];
+                input.readFully(state);
+                restoreState.accept(new String(name, UTF_8), state);
+                read += 8L + name.length + state.length;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Listener states in " + file + " are truncated", e);
+        }
+    }
+
+    record Resumed(List<Build> builds, boolean discoveryComplete, int processed) {
+    }
+
+    private record CheckpointFile(
+            int version,
+            long since,
+            String query,
+            int discovered,
+            long discoveredBytes,
+            long statesBytes,
+            boolean discoveryComplete,
+            int processed) {
+    }
+
+}
@@ -0,0 +1,36 @@
+package dev.erichaag.develocity.api;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Spaces out requests evenly so that no more than the given number of requests are sent per second.
+ */
+final class RateLimiter {
+
+    private final long intervalNanos;
+
+    private long nextPermitAt = System.nanoTime();
+
+    RateLimiter(int permitsPerSecond) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("Permits per second must be positive");
+        this.intervalNanos = SECONDS.toNanos(1) / permitsPerSecond;
+    }
+
+    void acquire() {
+        final long waitNanos;
+        synchronized (this) {
+            final var now = System.nanoTime();
+            final var permitAt = Math.max(now, nextPermitAt);
+            nextPermitAt = permitAt + intervalNanos;
+            waitNanos = permitAt - now;
+        }
+        if (waitNanos <= 0) return;
+        try {
+            NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
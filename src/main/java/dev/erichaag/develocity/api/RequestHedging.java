@@ -0,0 +1,14 @@
+package dev.erichaag.develocity.api;
+
+public record RequestHedging(int percentile, int maxExtraRequestsPercent) {
+
+    public RequestHedging {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Hedging percentile must be between 0 and 100 exclusive, but was " + percentile);
+        }
+        if (maxExtraRequestsPercent < 0) {
+            throw new IllegalArgumentException("Maximum extra requests must not be negative, but was " + maxExtraRequestsPercent);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package dev.erichaag.develocity.api;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class RequestMetrics {
+
+    private static final List<Duration> bucketBounds = Arrays.stream(new long[]{10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000})
+            .mapToObj(Duration::ofMillis)
+            .toList();
+
+    private final LongAdder[] buckets = new LongAdder[bucketBounds.size() + 1];
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    RequestMetrics() {
+        Arrays.setAll(buckets, __ -> new LongAdder());
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all the given clients added together.
+     */
+    public static RequestMetrics combine(Collection<RequestMetrics> metrics) {
+        final var combined = new RequestMetrics();
+        for (var it : metrics) {
+            final var counts = it.getBucketCounts();
+            for (int i = 0; i < counts.length; i++) combined.buckets[i].add(counts[i]);
+            combined.requests.add(it.getRequests());
+            combined.failedRequests.add(it.getFailedRequests());
+            combined.receivedBytes.add(it.getReceivedBytes());
+            combined.totalLatencyNanos.add(it.getTotalLatency().toNanos());
+        }
+        return combined;
+    }
+
+    void recordRequest(Duration latency) {
+        requests.increment();
+        totalLatencyNanos.add(latency.toNanos());
+        var bucket = 0;
+        while (bucket < bucketBounds.size() && latency.compareTo(bucketBounds.get(bucket)) > 0) bucket++;
+        buckets[bucket].increment();
+    }
+
+    void recordFailedRequest() {
+        failedRequests.increment();
+    }
+
+    void recordReceivedBytes(long bytes) {
+        receivedBytes.add(bytes);
+    }
+
+    /**
+     * The upper bounds of the latency histogram buckets, excluding the last bucket which is unbounded.
+     */
+    public List<Duration> getBucketBounds() {
+        return bucketBounds;
+    }
+
+    public long[] getBucketCounts() {
+        return Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    public Duration getTotalLatency() {
+        return Duration.ofNanos(totalLatencyNanos.sum());
+    }
+
+}
@@ -4,34 +4,42 @@ import java.util.Objects;
 
 public final class SbtBuild implements Build {
 
-    private final ApiBuild build;
+    private final LazyApiBuild build;
 
     SbtBuild(ApiBuild build) {
+        this(LazyApiBuild.of(build));
+    }
+
+    SbtBuild(LazyApiBuild build) {
         this.build = build;
     }
 
     @Override
     public String getId() {
-        return build.getId();
+        return build.header().getId();
     }
 
     @Override
     public long getAvailableAt() {
-        return build.getAvailableAt();
+        return build.header().getAvailableAt();
     }
 
     @Override
     public String getBuildToolVersion() {
-        return build.getBuildToolVersion();
+        return build.header().getBuildToolVersion();
     }
 
     @Override
     public String getBuildAgentVersion() {
-        return build.getBuildAgentVersion();
+        return build.header().getBuildAgentVersion();
     }
 
     @Override
     public ApiBuild getBuild() {
+        return build.fully();
+    }
+
+    LazyApiBuild lazyBuild() {
         return build;
     }
 
@@ -40,17 +48,17 @@ public final class SbtBuild implements Build {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SbtBuild that = (SbtBuild) o;
-        return Objects.equals(build, that.build);
+        return Objects.equals(getId(), that.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(build);
+        return Objects.hashCode(getId());
     }
 
     @Override
     public String toString() {
-        return "SbtBuild{build=" + build + "}";
+        return "SbtBuild{id=" + getId() + ", availableAt=" + getAvailableAt() + "}";
     }
 
 }
@@ -5,6 +5,7 @@ import java.time.Instant;
 import java.util.Collection;
 
 record Incident(
+        String server,
         String key,
         String username,
         String projectName,
@@ -2,15 +2,20 @@ package dev.erichaag.develocity.core;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collector;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.lang.String.valueOf;
@@ -19,12 +24,13 @@ import static java.time.Duration.between;
 import static java.time.Duration.ofMillis;
 import static java.time.ZoneId.systemDefault;
 import static java.util.Arrays.stream;
-import static java.util.Collections.emptyList;
 import static java.util.Collections.reverseOrder;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Comparator.comparing;
-import static java.util.Map.Entry.comparingByKey;
 import static java.util.function.Predicate.not;
+import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.iterate;
@@ -32,11 +38,22 @@ import static java.util.stream.Stream.iterate;
 @SuppressWarnings("Convert2MethodRef")
 public final class IncidentReport {
 
+    private static final List<String> tableNames = Stream.of("", "mean_trends_", "p50_trends_", "p95_trends_", "failures_trends_")
+            .flatMap(statistic -> Stream.of("ci_overall", "ci_per_project", "ci_per_project_requested", "ci_per_server", "local_overall", "local_per_project", "local_per_user", "local_per_user_project", "local_per_server", "overall").map(scope -> statistic + scope))
+            .toList();
+
+    private static final double z95 = 1.96;
+    private static final String whole = "";
+
     private final ZonedDateTime since;
     private final ZonedDateTime until;
     private final Resolution resolution;
-    private final List<Incident> incidents;
-    private final Map<ZonedDateTime, List<Incident>> incidentsPartitioned;
+    private final Sample sample;
+    private final Aggregates aggregates;
+    private final List<ZonedDateTime> ticks;
+    private final Predicate<String> includeTable;
+    private final Map<String, String> tables = new LinkedHashMap<>();
+    private final Map<String, Duration> tableDurations = new LinkedHashMap<>();
 
     private String ciOverall;
     private String ciPerProject;
@@ -84,11 +101,35 @@ public final class IncidentReport {
     private String failuresTrendsOverall;
 
     public IncidentReport(IncidentTracker tracker, ZonedDateTime since, ZonedDateTime until, Integer excludeAbovePercentile) {
+        this(List.of(tracker), since, until, excludeAbovePercentile);
+    }
+
+    /**
+     * Reports on the incidents of all trackers together. With more than one tracker, the report also includes tables
+     * grouped by server.
+     * <p>
+     * When the trackers only track a sample of the incidents, failure counts are scaled up to estimate those of all
+     * incidents, and the mean, median, and 95th percentile come with the bounds of their 95% confidence intervals.
+     */
+    public IncidentReport(Collection<IncidentTracker> trackers, ZonedDateTime since, ZonedDateTime until, Integer excludeAbovePercentile) {
+        this(resolvedIncidents(trackers), sampleOf(trackers), since, until, excludeAbovePercentile, includedTables(trackers));
+    }
+
+    private IncidentReport(List<Incident> incidents, Sample sample, ZonedDateTime since, ZonedDateTime until, Integer excludeAbovePercentile, Predicate<String> includeTable) {
+        this(new AllIncidents(sortChronologicallyAndApplyExclusions(incidents, excludeAbovePercentile), Resolution.from(between(since, until))), sample, since, until, includeTable);
+    }
+
+    IncidentReport(Aggregates aggregates, Sample sample, ZonedDateTime since, ZonedDateTime until, Predicate<String> includeTable) {
         this.since = since;
         this.until = until;
+        this.sample = sample;
+        this.includeTable = includeTable;
         this.resolution = Resolution.from(between(since, until));
-        this.incidents = sortChronologicallyAndApplyExclusions(tracker.getResolvedIncidents(), excludeAbovePercentile);
-        this.incidentsPartitioned = partition(incidents);
+        this.aggregates = aggregates;
+        this.ticks = concat(iterate(resolution.truncate(since), it -> it.compareTo(until) < 0, it -> it.plus(1, resolution.asChronoUnit())), aggregates.ticks().stream())
+                .distinct()
+                .sorted()
+                .toList();
         initializeCiOverall();
         initializeCiPerProject();
         initializeCiPerProjectRequested();
@@ -97,30 +138,87 @@ public final class IncidentReport {
         initializeLocalPerUser();
         initializeLocalPerUserProject();
         initializeOverall();
+        initializeCiPerServer();
+        initializeLocalPerServer();
+    }
+
+    /**
+     * Computes only the given table, from the incidents that started within the window.
+     * All other tables of the returned report are {@code null}.
+     */
+    public static IncidentReport forTable(Collection<IncidentTracker> trackers, ZonedDateTime since, ZonedDateTime until, Integer excludeAbovePercentile, String table) {
+        if (!tableNames.contains(table)) throw new IllegalArgumentException("Unknown table: " + table);
+        final var incidents = resolvedIncidents(trackers)
+                .stream()
+                .filter(it -> !it.startedOn().isBefore(since.toInstant()) && it.startedOn().isBefore(until.toInstant()))
+                .toList();
+        return new IncidentReport(incidents, sampleOf(trackers), since, until, excludeAbovePercentile, table::equals);
+    }
+
+    public static List<String> tableNames() {
+        return tableNames;
+    }
+
+    private static List<Incident> resolvedIncidents(Collection<IncidentTracker> trackers) {
+        return trackers.size() == 1
+                ? trackers.iterator().next().getResolvedIncidents()
+                : trackers.stream().flatMap(it -> it.getResolvedIncidents().stream()).toList();
+    }
+
+    static Sample sampleOf(Collection<IncidentTracker> trackers) {
+        final var samples = trackers.stream().map(IncidentTracker::getSample).distinct().toList();
+        if (samples.size() > 1) throw new IllegalArgumentException("Trackers must all track the same sample: " + samples);
+        return samples.isEmpty() ? Sample.all : samples.getFirst();
+    }
+
+    static Predicate<String> includedTables(Collection<IncidentTracker> trackers) {
+        return trackers.size() > 1 ? __ -> true : not(IncidentReport::isPerServer);
+    }
+
+    private static boolean isPerServer(String table) {
+        return table.endsWith("_per_server");
+    }
+
+    private String table(String name, Supplier<String> supplier) {
+        if (!includeTable.test(name)) return null;
+        final var event = new JfrEvents.ReportTable();
+        final var startedOn = System.nanoTime();
+        event.begin();
+        final var table = supplier.get();
+        event.end();
+        tables.put(name, table);
+        tableDurations.put(name, Duration.ofNanos(System.nanoTime() - startedOn));
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.rows = table.lines().count() - 1;
+            event.size = table.length();
+            event.commit();
+        }
+        return table;
     }
 
     private void initializeOverall() {
-        this.overall = computeOverall(allBuilds());
-        this.meanTrendsOverall = computeOverallTrends(allBuilds(), it -> format(it.getMean()));
-        this.p50TrendsOverall = computeOverallTrends(allBuilds(), it -> format(it.getPercentile(50)));
-        this.p95TrendsOverall = computeOverallTrends(allBuilds(), it -> format(it.getPercentile(95)));
-        this.failuresTrendsOverall = computeOverallTrends(allBuilds(), it -> it.getN());
+        this.overall = table("overall", () -> computeOverall("overall", allBuilds()));
+        this.meanTrendsOverall = table("mean_trends_overall", () -> computeOverallTrends("overall", allBuilds(), it -> format(it.getMean())));
+        this.p50TrendsOverall = table("p50_trends_overall", () -> computeOverallTrends("overall", allBuilds(), it -> format(it.getPercentile(50))));
+        this.p95TrendsOverall = table("p95_trends_overall", () -> computeOverallTrends("overall", allBuilds(), it -> format(it.getPercentile(95))));
+        this.failuresTrendsOverall = table("failures_trends_overall", () -> computeOverallTrends("overall", allBuilds(), it -> failures(it)));
     }
 
     private void initializeCiOverall() {
-        this.ciOverall = computeOverall(onlyCiBuilds());
-        this.meanTrendsCiOverall = computeOverallTrends(onlyCiBuilds(), it -> format(it.getMean()));
-        this.p50TrendsCiOverall = computeOverallTrends(onlyCiBuilds(), it -> format(it.getPercentile(50)));
-        this.p95TrendsCiOverall = computeOverallTrends(onlyCiBuilds(), it -> format(it.getPercentile(95)));
-        this.failuresTrendsCiOverall = computeOverallTrends(onlyCiBuilds(), it -> it.getN());
+        this.ciOverall = table("ci_overall", () -> computeOverall("ci_overall", onlyCiBuilds()));
+        this.meanTrendsCiOverall = table("mean_trends_ci_overall", () -> computeOverallTrends("ci_overall", onlyCiBuilds(), it -> format(it.getMean())));
+        this.p50TrendsCiOverall = table("p50_trends_ci_overall", () -> computeOverallTrends("ci_overall", onlyCiBuilds(), it -> format(it.getPercentile(50))));
+        this.p95TrendsCiOverall = table("p95_trends_ci_overall", () -> computeOverallTrends("ci_overall", onlyCiBuilds(), it -> format(it.getPercentile(95))));
+        this.failuresTrendsCiOverall = table("failures_trends_ci_overall", () -> computeOverallTrends("ci_overall", onlyCiBuilds(), it -> failures(it)));
     }
 
     private void initializeLocalOverall() {
-        this.localOverall = computeOverall(onlyLocalBuilds());
-        this.meanTrendsLocalOverall = computeOverallTrends(onlyLocalBuilds(), it -> format(it.getMean()));
-        this.p50TrendsLocalOverall = computeOverallTrends(onlyLocalBuilds(), it -> format(it.getPercentile(50)));
-        this.p95TrendsLocalOverall = computeOverallTrends(onlyLocalBuilds(), it -> format(it.getPercentile(95)));
-        this.failuresTrendsLocalOverall = computeOverallTrends(onlyLocalBuilds(), it -> it.getN());
+        this.localOverall = table("local_overall", () -> computeOverall("local_overall", onlyLocalBuilds()));
+        this.meanTrendsLocalOverall = table("mean_trends_local_overall", () -> computeOverallTrends("local_overall", onlyLocalBuilds(), it -> format(it.getMean())));
+        this.p50TrendsLocalOverall = table("p50_trends_local_overall", () -> computeOverallTrends("local_overall", onlyLocalBuilds(), it -> format(it.getPercentile(50))));
+        this.p95TrendsLocalOverall = table("p95_trends_local_overall", () -> computeOverallTrends("local_overall", onlyLocalBuilds(), it -> format(it.getPercentile(95))));
+        this.failuresTrendsLocalOverall = table("failures_trends_local_overall", () -> computeOverallTrends("local_overall", onlyLocalBuilds(), it -> failures(it)));
     }
 
     private void initializeCiPerProject() {
@@ -128,11 +226,11 @@ public final class IncidentReport {
         final var headers = List.of("Project");
         final var groupingBy = groupBy(it -> new Key(it.projectName()));
         final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.projectName()));
-        this.ciPerProject = computeGroupedBy(headers, onlyCiBuilds(), groupingBy, keyExtractor);
-        this.meanTrendsCiPerProject = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor);
-        this.p50TrendsCiPerProject = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor);
-        this.p95TrendsCiPerProject = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor);
-        this.failuresTrendsCiPerProject = computeGroupedByTrends(headers, onlyCiBuilds(), it -> it.getN(), groupingBy, keyExtractor);
+        this.ciPerProject = table("ci_per_project", () -> computeGroupedBy(headers, "ci_per_project", onlyCiBuilds(), groupingBy, keyExtractor));
+        this.meanTrendsCiPerProject = table("mean_trends_ci_per_project", () -> computeGroupedByTrends(headers, "ci_per_project", onlyCiBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        this.p50TrendsCiPerProject = table("p50_trends_ci_per_project", () -> computeGroupedByTrends(headers, "ci_per_project", onlyCiBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        this.p95TrendsCiPerProject = table("p95_trends_ci_per_project", () -> computeGroupedByTrends(headers, "ci_per_project", onlyCiBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        this.failuresTrendsCiPerProject = table("failures_trends_ci_per_project", () -> computeGroupedByTrends(headers, "ci_per_project", onlyCiBuilds(), it -> failures(it), groupingBy, keyExtractor));
     }
 
     private void initializeCiPerProjectRequested() {
@@ -140,11 +238,35 @@ public final class IncidentReport {
         final var headers = List.of("Project", "Requested tasks/goals");
         final var groupingBy = groupBy(it -> new Key(it.projectName(), it.requested()));
         final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.projectName(), String.join(" ", it.requested())));
-        this.ciPerProjectRequested = computeGroupedBy(headers, onlyCiBuilds(), groupingBy, keyExtractor);
-        this.meanTrendsCiPerProjectRequested = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor);
-        this.p50TrendsCiPerProjectRequested = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor);
-        this.p95TrendsCiPerProjectRequested = computeGroupedByTrends(headers, onlyCiBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor);
-        this.failuresTrendsCiPerProjectRequested = computeGroupedByTrends(headers, onlyCiBuilds(), it -> it.getN(), groupingBy, keyExtractor);
+        this.ciPerProjectRequested = table("ci_per_project_requested", () -> computeGroupedBy(headers, "ci_per_project_requested", onlyCiBuilds(), groupingBy, keyExtractor));
+        this.meanTrendsCiPerProjectRequested = table("mean_trends_ci_per_project_requested", () -> computeGroupedByTrends(headers, "ci_per_project_requested", onlyCiBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        this.p50TrendsCiPerProjectRequested = table("p50_trends_ci_per_project_requested", () -> computeGroupedByTrends(headers, "ci_per_project_requested", onlyCiBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        this.p95TrendsCiPerProjectRequested = table("p95_trends_ci_per_project_requested", () -> computeGroupedByTrends(headers, "ci_per_project_requested", onlyCiBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        this.failuresTrendsCiPerProjectRequested = table("failures_trends_ci_per_project_requested", () -> computeGroupedByTrends(headers, "ci_per_project_requested", onlyCiBuilds(), it -> failures(it), groupingBy, keyExtractor));
+    }
+
+    private void initializeCiPerServer() {
+        record Key(String server) { }
+        final var headers = List.of("Server");
+        final var groupingBy = groupBy(it -> new Key(it.server()));
+        final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.server()));
+        table("ci_per_server", () -> computeGroupedBy(headers, "ci_per_server", onlyCiBuilds(), groupingBy, keyExtractor));
+        table("mean_trends_ci_per_server", () -> computeGroupedByTrends(headers, "ci_per_server", onlyCiBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        table("p50_trends_ci_per_server", () -> computeGroupedByTrends(headers, "ci_per_server", onlyCiBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        table("p95_trends_ci_per_server", () -> computeGroupedByTrends(headers, "ci_per_server", onlyCiBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        table("failures_trends_ci_per_server", () -> computeGroupedByTrends(headers, "ci_per_server", onlyCiBuilds(), it -> failures(it), groupingBy, keyExtractor));
+    }
+
+    private void initializeLocalPerServer() {
+        record Key(String server) { }
+        final var headers = List.of("Server");
+        final var groupingBy = groupBy(it -> new Key(it.server()));
+        final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.server()));
+        table("local_per_server", () -> computeGroupedBy(headers, "local_per_server", onlyLocalBuilds(), groupingBy, keyExtractor));
+        table("mean_trends_local_per_server", () -> computeGroupedByTrends(headers, "local_per_server", onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        table("p50_trends_local_per_server", () -> computeGroupedByTrends(headers, "local_per_server", onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        table("p95_trends_local_per_server", () -> computeGroupedByTrends(headers, "local_per_server", onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        table("failures_trends_local_per_server", () -> computeGroupedByTrends(headers, "local_per_server", onlyLocalBuilds(), it -> failures(it), groupingBy, keyExtractor));
     }
 
     private void initializeLocalPerUser() {
@@ -152,11 +274,11 @@ public final class IncidentReport {
         final var headers = List.of("User");
         final var groupingBy = groupBy(it -> new Key(it.username()));
         final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.username()));
-        this.localPerUser = computeGroupedBy(headers, onlyLocalBuilds(), groupingBy, keyExtractor);
-        this.meanTrendsLocalPerUser = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor);
-        this.p50TrendsLocalPerUser = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor);
-        this.p95TrendsLocalPerUser = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor);
-        this.failuresTrendsLocalPerUser = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> it.getN(), groupingBy, keyExtractor);
+        this.localPerUser = table("local_per_user", () -> computeGroupedBy(headers, "local_per_user", onlyLocalBuilds(), groupingBy, keyExtractor));
+        this.meanTrendsLocalPerUser = table("mean_trends_local_per_user", () -> computeGroupedByTrends(headers, "local_per_user", onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        this.p50TrendsLocalPerUser = table("p50_trends_local_per_user", () -> computeGroupedByTrends(headers, "local_per_user", onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        this.p95TrendsLocalPerUser = table("p95_trends_local_per_user", () -> computeGroupedByTrends(headers, "local_per_user", onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        this.failuresTrendsLocalPerUser = table("failures_trends_local_per_user", () -> computeGroupedByTrends(headers, "local_per_user", onlyLocalBuilds(), it -> failures(it), groupingBy, keyExtractor));
     }
 
     private void initializeLocalPerProject() {
@@ -164,11 +286,11 @@ public final class IncidentReport {
         final var headers = List.of("Project");
         final var groupingBy = groupBy(it -> new Key(it.projectName()));
         final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.projectName()));
-        this.localPerProject = computeGroupedBy(headers, onlyLocalBuilds(), groupingBy, keyExtractor);
-        this.meanTrendsLocalPerProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor);
-        this.p50TrendsLocalPerProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor);
-        this.p95TrendsLocalPerProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor);
-        this.failuresTrendsLocalPerProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> it.getN(), groupingBy, keyExtractor);
+        this.localPerProject = table("local_per_project", () -> computeGroupedBy(headers, "local_per_project", onlyLocalBuilds(), groupingBy, keyExtractor));
+        this.meanTrendsLocalPerProject = table("mean_trends_local_per_project", () -> computeGroupedByTrends(headers, "local_per_project", onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        this.p50TrendsLocalPerProject = table("p50_trends_local_per_project", () -> computeGroupedByTrends(headers, "local_per_project", onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        this.p95TrendsLocalPerProject = table("p95_trends_local_per_project", () -> computeGroupedByTrends(headers, "local_per_project", onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        this.failuresTrendsLocalPerProject = table("failures_trends_local_per_project", () -> computeGroupedByTrends(headers, "local_per_project", onlyLocalBuilds(), it -> failures(it), groupingBy, keyExtractor));
     }
 
     private void initializeLocalPerUserProject() {
@@ -176,11 +298,11 @@ public final class IncidentReport {
         final var headers = List.of("User", "Project");
         final var groupingBy = groupBy(it -> new Key(it.username(), it.projectName()));
         final var keyExtractor = extractKey(Key.class, it -> Stream.of(it.username(), it.projectName()));
-        this.localPerUserProject = computeGroupedBy(headers, onlyLocalBuilds(), groupingBy, keyExtractor);
-        this.meanTrendsLocalPerUserProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor);
-        this.p50TrendsLocalPerUserProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor);
-        this.p95TrendsLocalPerUserProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor);
-        this.failuresTrendsLocalPerUserProject = computeGroupedByTrends(headers, onlyLocalBuilds(), it -> it.getN(), groupingBy, keyExtractor);
+        this.localPerUserProject = table("local_per_user_project", () -> computeGroupedBy(headers, "local_per_user_project", onlyLocalBuilds(), groupingBy, keyExtractor));
+        this.meanTrendsLocalPerUserProject = table("mean_trends_local_per_user_project", () -> computeGroupedByTrends(headers, "local_per_user_project", onlyLocalBuilds(), it -> format(it.getMean()), groupingBy, keyExtractor));
+        this.p50TrendsLocalPerUserProject = table("p50_trends_local_per_user_project", () -> computeGroupedByTrends(headers, "local_per_user_project", onlyLocalBuilds(), it -> format(it.getPercentile(50)), groupingBy, keyExtractor));
+        this.p95TrendsLocalPerUserProject = table("p95_trends_local_per_user_project", () -> computeGroupedByTrends(headers, "local_per_user_project", onlyLocalBuilds(), it -> format(it.getPercentile(95)), groupingBy, keyExtractor));
+        this.failuresTrendsLocalPerUserProject = table("failures_trends_local_per_user_project", () -> computeGroupedByTrends(headers, "local_per_user_project", onlyLocalBuilds(), it -> failures(it), groupingBy, keyExtractor));
     }
 
     public ZonedDateTime since() {
@@ -191,6 +313,22 @@ public final class IncidentReport {
         return until;
     }
 
+    public int incidentCount() {
+        return aggregates.incidentCount();
+    }
+
+    public Sample sample() {
+        return sample;
+    }
+
+    public Map<String, String> tables() {
+        return unmodifiableMap(tables);
+    }
+
+    public Map<String, Duration> tableDurations() {
+        return unmodifiableMap(tableDurations);
+    }
+
     public String ciOverall() {
         return ciOverall;
     }
@@ -351,65 +489,53 @@ public final class IncidentReport {
         return failuresTrendsOverall;
     }
 
-    private String computeOverall(Predicate<Incident> filter) {
-        final var row = calculateStatistics(incidents.stream().filter(filter).toList());
-        final var table = Table.withHeader("Failures", "Mean", "Median", "Min", "Max", "P5", "P25", "P75", "P95");
+    private String computeOverall(String scope, Predicate<Incident> filter) {
+        final var row = aggregates.overall(scope, filter, whole()).getOrDefault(whole, new IncidentStatistics());
+        final var table = Table.withHeader(statisticsHeaders().toArray());
         addRow(table, row);
         return table.toString();
     }
 
     private <Key> String computeGroupedBy(
             List<String> headers,
+            String scope,
             Predicate<Incident> filter,
             Function<Incident, Key> groupingBy,
             Function<Key, Stream<String>> keyExtractor) {
-        final var rows = incidents
-                .stream()
-                .filter(filter)
-                .collect(groupingBy(groupingBy))
-                .entrySet()
-                .stream()
-                .collect(toMap(Entry::getKey, it -> calculateStatistics(it.getValue())))
+        final var rows = aggregates.overall(scope, filter, groupingBy)
                 .entrySet()
                 .stream()
                 .sorted(reverseOrder(comparing(it -> it.getValue().getN())))
                 .toList();
-        final var defaultHeaders = List.of("Failures", "Mean", "Median", "Min", "Max", "P5", "P25", "P75", "P95");
-        final var table = Table.withHeader(concat(headers.stream(), defaultHeaders.stream()).toArray());
+        final var table = Table.withHeader(concat(headers.stream(), statisticsHeaders().stream()).toArray());
         rows.forEach(s -> addRow(table, s.getValue(), keyExtractor.apply(s.getKey()).toArray()));
         return table.toString();
     }
 
-    private String computeOverallTrends(Predicate<Incident> filter, Function<DescriptiveStatistics, Object> getStatistic) {
-        final var row = incidentsPartitioned
-                .entrySet()
-                .stream()
-                .collect(toMap(Entry::getKey, it -> calculateStatistics(it.getValue().stream().filter(filter).toList())))
-                .entrySet()
+    private String computeOverallTrends(String scope, Predicate<Incident> filter, Function<DescriptiveStatistics, Object> getStatistic) {
+        final var byTick = aggregates.byTick(scope, filter, whole());
+        final var row = ticks
                 .stream()
-                .sorted(comparingByKey())
+                .map(it -> byTick.getOrDefault(it, Map.of()).getOrDefault(whole, new IncidentStatistics()))
                 .toList();
-        final var table = Table.withHeader(concat(Stream.of("Failures"), row.stream().map(Entry::getKey).map(resolution::format)).toArray());
-        final var failures = (int) row.stream().mapToDouble(value -> value.getValue().getN()).sum();
-        table.row(concat(Stream.of(failures), row.stream().map(it -> valueOf(getStatistic.apply(it.getValue())))).toArray());
+        final var table = Table.withHeader(concat(Stream.of("Failures"), ticks.stream().map(resolution::format)).toArray());
+        final var failures = sample.scale((long) row.stream().mapToDouble(DescriptiveStatistics::getN).sum());
+        table.row(concat(Stream.of(failures), row.stream().map(it -> valueOf(getStatistic.apply(it)))).toArray());
         return table.toString();
     }
 
     private <Key> String computeGroupedByTrends(
             List<String> headers,
+            String scope,
             Predicate<Incident> filter,
             Function<DescriptiveStatistics, Object> getStatistic,
             Function<Incident, Key> groupingBy,
             Function<Key, Stream<String>> keyExtractor) {
-        record Row<Key>(Key key, int failures, Map<ZonedDateTime, DescriptiveStatistics> columns) { }
-        final var ticks = incidentsPartitioned.keySet().stream().sorted().toList();
-        final var rows = transpose(incidentsPartitioned
+        record Row<Key>(Key key, long failures, Map<ZonedDateTime, IncidentStatistics> columns) { }
+        final var rows = transpose(aggregates.byTick(scope, filter, groupingBy))
                 .entrySet()
                 .stream()
-                .collect(groupingByKeyAndCalculatingStatistics(filter, groupingBy)))
-                .entrySet()
-                .stream()
-                .map(it -> new Row<>(it.getKey(), countFailures(it), it.getValue()))
+                .map(it -> new Row<>(it.getKey(), sample.scale(countFailures(it)), it.getValue()))
                 .sorted(reverseOrder(comparing(Row::failures)))
                 .toList();
         final var table = Table.withHeader(concat(concat(headers.stream(), Stream.of("Failures")), ticks.stream().map(resolution::format)).toArray());
@@ -420,72 +546,135 @@ public final class IncidentReport {
         return table.toString();
     }
 
-    private static <Key> int countFailures(Entry<Key, Map<ZonedDateTime, DescriptiveStatistics>> row) {
+    private static <Key> int countFailures(Entry<Key, Map<ZonedDateTime, IncidentStatistics>> row) {
         return (int) row.getValue().values().stream().mapToDouble(DescriptiveStatistics::getN).sum();
     }
 
-    private List<Incident> sortChronologicallyAndApplyExclusions(List<Incident> incidents, Integer excludeAbovePercentile) {
-        final var sortedIncidents = incidents.stream().sorted(comparing(Incident::startedOn)).filter(it -> it.duration().compareTo(ZERO) > 0);
+    private static List<Incident> sortChronologicallyAndApplyExclusions(List<Incident> incidents, Integer excludeAbovePercentile) {
+        final var sortedIncidents = incidents.stream().sorted(comparing(Incident::startedOn)).filter(it -> isCounted(it, null));
         if (excludeAbovePercentile != null) {
-            final var percentile = calculateStatistics(incidents).getPercentile(excludeAbovePercentile);
-            return sortedIncidents.filter(it -> it.duration().compareTo(ofMillis((long) percentile)) <= 0).toList();
+            final var cutoff = exclusionCutoff(incidents, excludeAbovePercentile);
+            return sortedIncidents.filter(it -> isCounted(it, cutoff)).toList();
         }
         return sortedIncidents.toList();
     }
 
-    private Map<ZonedDateTime, List<Incident>> partition(List<Incident> incidents) {
-        final var ticks = iterate(resolution.truncate(since), it -> it.compareTo(until) < 0, it -> it.plus(1, resolution.asChronoUnit())).toList();
-        final var partitionedIncidents = new HashMap<>(incidents
-                .stream()
-                .collect(groupingBy(it -> resolution.truncate(it.startedOn().atZone(systemDefault())))));
-        ticks.forEach(it -> partitionedIncidents.computeIfAbsent(it, __ -> emptyList()));
-        return partitionedIncidents;
+    /**
+     * The longest duration of the incidents kept when excluding those above the given percentile of all durations.
+     */
+    static Duration exclusionCutoff(Collection<Incident> incidents, int excludeAbovePercentile) {
+        return ofMillis((long) calculateStatistics(incidents).getPercentile(excludeAbovePercentile));
+    }
+
+    /**
+     * Whether an incident is reported on, which it is unless it has no duration or lasted longer than the cutoff.
+     */
+    static boolean isCounted(Incident incident, Duration cutoff) {
+        return incident.duration().compareTo(ZERO) > 0 && (cutoff == null || incident.duration().compareTo(cutoff) <= 0);
     }
 
-    private static DescriptiveStatistics calculateStatistics(List<Incident> incidents) {
-        var s = new DescriptiveStatistics();
-        incidents.stream().mapToLong(it -> it.duration().toMillis()).forEach(s::addValue);
+    static IncidentStatistics calculateStatistics(Collection<Incident> incidents) {
+        var s = new IncidentStatistics();
+        incidents.forEach(s::addIncident);
         return s;
     }
 
-    private static void addRow(Table table, DescriptiveStatistics s, Object... keys) {
-        final var contents = concat(
-                stream(keys),
-                Stream.of(
-                        s.getN(),
-                        format(s.getMean()),
-                        format(s.getPercentile(50)),
-                        format(s.getMin()),
-                        format(s.getMax()),
-                        format(s.getPercentile(5)),
-                        format(s.getPercentile(25)),
-                        format(s.getPercentile(75)),
-                        format(s.getPercentile(95))
-                )).toArray();
-        table.row(contents);
-    }
-
-    private static <T> Map<T, Map<ZonedDateTime, DescriptiveStatistics>> transpose(Map<ZonedDateTime, Map<T, DescriptiveStatistics>> rows) {
-        record Entry(ZonedDateTime outer, Object inner, DescriptiveStatistics value) {}
+    private List<String> statisticsHeaders() {
+        if (sample.isAll()) return List.of("Failures", "Mean", "Median", "Min", "Max", "P5", "P25", "P75", "P95");
+        return List.of("Failures", "Mean", "Mean CI low", "Mean CI high", "Median", "Median CI low", "Median CI high", "Min", "Max", "P5", "P25", "P75", "P95", "P95 CI low", "P95 CI high");
+    }
+
+    private void addRow(Table table, DescriptiveStatistics s, Object... keys) {
+        if (sample.isAll()) {
+            table.row(concat(stream(keys), Stream.of(
+                    s.getN(),
+                    format(s.getMean()),
+                    format(s.getPercentile(50)),
+                    format(s.getMin()),
+                    format(s.getMax()),
+                    format(s.getPercentile(5)),
+                    format(s.getPercentile(25)),
+                    format(s.getPercentile(75)),
+                    format(s.getPercentile(95)))).toArray());
+            return;
+        }
+        // all statistics are calculated by calculateStatistics, and so know the keys of their incidents
+        final var incidents = (IncidentStatistics) s;
+        final var mean = incidents.interval("mean", () -> meanInterval(incidents));
+        final var median = incidents.interval("median", () -> percentileInterval(incidents, 50));
+        final var p95 = incidents.interval("p95", () -> percentileInterval(incidents, 95));
+        table.row(concat(stream(keys), Stream.of(
+                sample.scale(s.getN()),
+                format(s.getMean()),
+                formatBound(mean.low()),
+                formatBound(mean.high()),
+                format(s.getPercentile(50)),
+                formatBound(median.low()),
+                formatBound(median.high()),
+                format(s.getMin()),
+                format(s.getMax()),
+                format(s.getPercentile(5)),
+                format(s.getPercentile(25)),
+                format(s.getPercentile(75)),
+                format(s.getPercentile(95)),
+                formatBound(p95.low()),
+                formatBound(p95.high()))).toArray());
+    }
+
+    private long failures(DescriptiveStatistics s) {
+        return sample.scale(s.getN());
+    }
+
+    // a sample picks whole incident keys, whose incidents tend to last alike, so the variance is worked out from the
+    // totals of each key rather than from single incidents, which would make the intervals too narrow; the normal
+    // approximation is reasonable from a few dozen keys on
+    private Interval meanInterval(IncidentStatistics s) {
+        final var keys = s.totalsByKey(it -> it);
+        if (keys.size() < 2) return new Interval(Double.NaN, Double.NaN);
+        final var margin = z95 * standardError(keys, s.getMean());
+        return new Interval(Math.max(0, s.getMean() - margin), s.getMean() + margin);
+    }
+
+    // the share of incidents up to the percentile gets an interval from the totals of each key as well, which is then
+    // mapped back onto the durations (Woodruff's method)
+    private Interval percentileInterval(IncidentStatistics s, double percentile) {
+        final var value = s.getPercentile(percentile);
+        final var keys = s.totalsByKey(it -> it <= value ? 1 : 0);
+        if (keys.size() < 2) return new Interval(Double.NaN, Double.NaN);
+        final var share = percentile / 100;
+        final var margin = z95 * standardError(keys, keys.stream().mapToDouble(KeyTotals::total).sum() / s.getN());
+        final var sorted = s.getSortedValues();
+        return new Interval(valueAtShare(sorted, share - margin), valueAtShare(sorted, share + margin));
+    }
+
+    // the ratio estimator's linearized variance over the sampled keys, corrected for the share of keys sampled
+    private double standardError(List<KeyTotals> keys, double ratio) {
+        final var meanCount = keys.stream().mapToDouble(KeyTotals::count).sum() / keys.size();
+        final var squaredResiduals = keys.stream().mapToDouble(it -> Math.pow(it.total() - ratio * it.count(), 2)).sum();
+        final var variance = (1 - sample.percent() / 100.0) * squaredResiduals / (keys.size() - 1) / (keys.size() * meanCount * meanCount);
+        return Math.sqrt(variance);
+    }
+
+    private static double valueAtShare(double[] sorted, double share) {
+        final var index = (int) Math.ceil(share * sorted.length) - 1;
+        return sorted[Math.clamp(index, 0, sorted.length - 1)];
+    }
+
+    private static <T> Map<T, Map<ZonedDateTime, IncidentStatistics>> transpose(Map<ZonedDateTime, Map<T, IncidentStatistics>> rows) {
+        record Entry(ZonedDateTime outer, Object inner, IncidentStatistics value) {}
         //noinspection unchecked
-        return (Map<T, Map<ZonedDateTime, DescriptiveStatistics>>) rows
+        return (Map<T, Map<ZonedDateTime, IncidentStatistics>>) rows
                 .entrySet()
                 .stream()
                 .flatMap(outer -> outer.getValue().entrySet().stream().map(inner -> new Entry(outer.getKey(), inner.getKey(), inner.getValue())))
                 .collect(groupingBy(it -> it.inner, toMap(it -> it.outer, it -> it.value)));
     }
 
-    private static <T> Collector<Entry<ZonedDateTime, List<Incident>>, ?, Map<ZonedDateTime, Map<T, DescriptiveStatistics>>> groupingByKeyAndCalculatingStatistics(
-            Predicate<Incident> filter,
-            Function<Incident, T> groupingBy) {
-        return toMap(Entry::getKey, partition -> partition
-                .getValue()
+    private static <Key> Map<Key, IncidentStatistics> statisticsByGroup(List<Incident> incidents, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+        return incidents
                 .stream()
                 .filter(filter)
-                .collect(groupingBy(groupingBy))
-                .entrySet()
-                .stream()
-                .collect(toMap(Entry::getKey, it -> calculateStatistics(it.getValue()))));
+                .collect(groupingBy(groupingBy, collectingAndThen(toList(), IncidentReport::calculateStatistics)));
     }
 
     private static Predicate<Incident> allBuilds() {
@@ -500,6 +689,11 @@ public final class IncidentReport {
         return not(Incident::isCI);
     }
 
+    // the single group of the overall tables
+    private static Function<Incident, String> whole() {
+        return it -> whole;
+    }
+
     private static <Key> Function<Incident, Key> groupBy(Function<Incident, Key> groupingBy) {
         return groupingBy;
     }
@@ -513,4 +707,113 @@ public final class IncidentReport {
         return Durations.format(ofMillis((long) millis));
     }
 
+    // intervals cannot be estimated from a single incident
+    private static String formatBound(double millis) {
+        return Double.isNaN(millis) ? "--" : format(millis);
+    }
+
+    private record Interval(double low, double high) {
+    }
+
+    private record KeyTotals(double total, long count) {
+    }
+
+    /**
+     * The statistics of the incidents a report is computed from, by scope, such as {@code ci_per_project}, by group
+     * within the scope, and by the tick incidents started in. The trend tables of a scope share its statistics with its
+     * overall table.
+     */
+    interface Aggregates {
+
+        int incidentCount();
+
+        /**
+         * The ticks the incidents started in, which may lie outside the window of the report.
+         */
+        Set<ZonedDateTime> ticks();
+
+        <Key> Map<Key, IncidentStatistics> overall(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy);
+
+        <Key> Map<ZonedDateTime, Map<Key, IncidentStatistics>> byTick(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy);
+
+    }
+
+    /**
+     * Works out the statistics of a report from all its incidents at once.
+     */
+    private static final class AllIncidents implements Aggregates {
+
+        private final List<Incident> incidents;
+        private final Map<ZonedDateTime, List<Incident>> incidentsPartitioned;
+
+        AllIncidents(List<Incident> incidents, Resolution resolution) {
+            this.incidents = incidents;
+            this.incidentsPartitioned = incidents.stream().collect(groupingBy(it -> resolution.truncate(it.startedOn().atZone(systemDefault()))));
+        }
+
+        @Override
+        public int incidentCount() {
+            return incidents.size();
+        }
+
+        @Override
+        public Set<ZonedDateTime> ticks() {
+            return incidentsPartitioned.keySet();
+        }
+
+        @Override
+        public <Key> Map<Key, IncidentStatistics> overall(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            return statisticsByGroup(incidents, filter, groupingBy);
+        }
+
+        @Override
+        public <Key> Map<ZonedDateTime, Map<Key, IncidentStatistics>> byTick(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            return incidentsPartitioned
+                    .entrySet()
+                    .stream()
+                    .collect(toMap(Entry::getKey, it -> statisticsByGroup(it.getValue(), filter, groupingBy)));
+        }
+
+    }
+
+    /**
+     * Statistics of incident durations that also remember the key of each incident, for the confidence intervals of
+     * sampled reports. Percentiles and intervals are kept once worked out, as the statistics of provisional reports
+     * outlive a single report.
+     */
+    static final class IncidentStatistics extends DescriptiveStatistics {
+
+        private final List<String> keys = new ArrayList<>();
+        private final Map<Double, Double> percentiles = new HashMap<>();
+        private final Map<String, Interval> intervals = new HashMap<>();
+
+        void addIncident(Incident incident) {
+            addValue(incident.duration().toMillis());
+            keys.add(incident.key());
+            percentiles.clear();
+            intervals.clear();
+        }
+
+        @Override
+        public double getPercentile(double p) {
+            return percentiles.computeIfAbsent(p, super::getPercentile);
+        }
+
+        Interval interval(String name, Supplier<Interval> supplier) {
+            return intervals.computeIfAbsent(name, __ -> supplier.get());
+        }
+
+        List<KeyTotals> totalsByKey(DoubleUnaryOperator valueOf) {
+            final var values = getValues();
+            final var totals = new HashMap<String, double[]>();
+            for (int i = 0; i < values.length; i++) {
+                final var total = totals.computeIfAbsent(keys.get(i), __ -> new double[2]);
+                total[0] += valueOf.applyAsDouble(values[i]);
+                total[1]++;
+            }
+            return totals.values().stream().map(it -> new KeyTotals(it[0], (long) it[1])).toList();
+        }
+
+    }
+
 }
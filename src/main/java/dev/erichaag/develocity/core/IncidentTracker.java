@@ -1,16 +1,26 @@
 package dev.erichaag.develocity.core;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.Build;
 import dev.erichaag.develocity.api.BuildAttributesValue;
 import dev.erichaag.develocity.api.BuildModel;
 import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.api.BuildQuery;
+import dev.erichaag.develocity.api.GradleAttributes;
 import dev.erichaag.develocity.api.GradleBuild;
+import dev.erichaag.develocity.api.MavenAttributes;
 import dev.erichaag.develocity.api.MavenBuild;
+import dev.erichaag.develocity.core.PartialState.IncidentEntry;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,118 +32,340 @@ import static dev.erichaag.develocity.api.BuildModel.MAVEN_ATTRIBUTES;
 import static java.lang.String.join;
 import static java.time.Duration.ofMillis;
 import static java.time.Instant.ofEpochMilli;
+import static java.util.Comparator.comparing;
 
 public final class IncidentTracker implements BuildProcessorListener {
 
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final String defaultServer = "default";
+    private static final Set<BuildModel> requiredBuildModels = Set.of(GRADLE_ATTRIBUTES, MAVEN_ATTRIBUTES);
+    private static final Set<Class<? extends Build>> buildTypes = Set.of(GradleBuild.class, MavenBuild.class);
+    private static final String trackedBuildsQuery = BuildQuery.and(BuildQuery.anyOf("buildTool", List.of("gradle", "maven")), BuildQuery.anyOf("tag", List.of("CI", "LOCAL")));
+
+    private final String server;
+    private final Shard shard;
+    private final Sample sample;
+    private final String query;
     private final List<Incident> resolvedIncidents = new ArrayList<>();
     private final Map<String, Incident> unresolvedIncidents = new HashMap<>();
-    private final Set<BuildView> buildViews = new TreeSet<>();
+    private final Map<String, Set<BuildView>> pendingBuildViews = new HashMap<>();
+    private final Map<String, List<Incident>> provisionalIncidents = new HashMap<>();
+    private final Set<String> staleProvisionalIncidents = new HashSet<>();
+    private final List<BuildView> unsavedBuildViews = new ArrayList<>();
+
+    private long resolvedIncidentsVersion = 0;
+    private boolean tracksProvisionalIncidents;
+    private boolean savedSnapshot;
+
+    public IncidentTracker() {
+        this(defaultServer);
+    }
+
+    /**
+     * @param server the name of the server the builds come from, for reporting incidents across multiple servers
+     */
+    public IncidentTracker(String server) {
+        this(server, Shard.all);
+    }
+
+    /**
+     * @param shard the part of the builds to track, leaving out the builds of projects belonging to other shards
+     */
+    public IncidentTracker(String server, Shard shard) {
+        this(server, shard, Sample.all);
+    }
+
+    /**
+     * @param sample the part of the incidents to track, leaving out the builds of incidents outside the sample
+     */
+    public IncidentTracker(String server, Shard shard, Sample sample) {
+        this.server = server;
+        this.shard = shard;
+        this.sample = sample;
+        this.query = BuildQuery.and(trackedBuildsQuery, shard.query());
+    }
+
+    IncidentTracker(String server, Sample sample, Collection<Incident> resolvedIncidents) {
+        this(server, Shard.all, sample);
+        this.resolvedIncidents.addAll(resolvedIncidents);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public Shard getShard() {
+        return shard;
+    }
+
+    public Sample getSample() {
+        return sample;
+    }
+
+    /**
+     * Keeps track of the incidents that received builds of the current run, so that {@link ProvisionalIncidents} can
+     * report on the run before it finishes, working out only those incidents again.
+     */
+    public synchronized void trackProvisionalIncidents() {
+        this.tracksProvisionalIncidents = true;
+    }
+
+    synchronized List<Incident> getResolvedIncidents() {
+        return List.copyOf(resolvedIncidents);
+    }
 
-    List<Incident> getResolvedIncidents() {
-        return resolvedIncidents;
+    /**
+     * Drops the resolved incidents that started before the given time, which reports no longer cover, and returns how
+     * many were dropped. Unresolved incidents are kept, as builds of later runs may still resolve them.
+     */
+    public synchronized int pruneResolvedIncidents(Instant startedBefore) {
+        final var size = resolvedIncidents.size();
+        resolvedIncidents.removeIf(it -> it.startedOn().isBefore(startedBefore));
+        if (resolvedIncidents.size() < size) resolvedIncidentsVersion++;
+        return size - resolvedIncidents.size();
     }
 
     @Override
     public Set<BuildModel> getRequiredBuildModels() {
-        return Set.of(GRADLE_ATTRIBUTES, MAVEN_ATTRIBUTES);
+        return requiredBuildModels;
+    }
+
+    @Override
+    public Set<Class<? extends Build>> getBuildTypes() {
+        return buildTypes;
+    }
+
+    // only builds tagged CI or LOCAL can contribute to incidents, and only those of projects in the tracked shard
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public boolean receivesBuildBatches() {
+        return true;
+    }
+
+    // the builds of a batch are grouped by incident outside the lock, which is then taken once to add each group
+    @Override
+    public void onBuildBatch(BuildBatchEvent event) {
+        final var buildViewsByIncident = new HashMap<String, List<BuildView>>();
+        for (var build : event.builds()) {
+            buildView(build).ifPresent(buildView -> incidentNameIfTracked(buildView).ifPresent(incidentName ->
+                    buildViewsByIncident.computeIfAbsent(incidentName, __ -> new ArrayList<>()).add(buildView)));
+        }
+        synchronized (this) {
+            buildViewsByIncident.forEach(this::addPending);
+        }
     }
 
     @Override
     public void onGradleBuild(GradleBuild build) {
-        build.getAttributes().ifPresent(attributes ->
-                buildViews.add(new BuildView(
-                    attributes.getEnvironment().getUsername(),
-                    attributes.getRootProjectName(),
-                    attributes.getRequestedTasks(),
-                    attributes.getTags(),
-                    attributes.getValues(),
-                    attributes.getHasFailed(),
-                    ofEpochMilli(attributes.getBuildStartTime()),
-                    ofMillis(attributes.getBuildDuration()))));
+        build.getAttributes().map(IncidentTracker::buildView).ifPresent(this::track);
     }
 
     @Override
     public void onMavenBuild(MavenBuild build) {
-        build.getAttributes().ifPresent(attributes ->
-                buildViews.add(new BuildView(
-                        attributes.getEnvironment().getUsername(),
-                        attributes.getTopLevelProjectName(),
-                        attributes.getRequestedGoals(),
-                        attributes.getTags(),
-                        attributes.getValues(),
-                        attributes.getHasFailed(),
-                        ofEpochMilli(attributes.getBuildStartTime()),
-                        ofMillis(attributes.getBuildDuration()))));
+        build.getAttributes().map(IncidentTracker::buildView).ifPresent(this::track);
     }
 
+    // the builds of the current run are only processed once it finishes, so they are part of the state as they are
+    // a run writes a fresh checkpoint, or appends to the one it resumed from, and either way starts off with a snapshot
     @Override
-    public void onProcessingFinished(ProcessingFinishedEvent event) {
-        buildViews.forEach(this::processBuild);
+    public synchronized void onDiscoveryStarted(DiscoveryStartedEvent event) {
+        unsavedBuildViews.clear();
+        savedSnapshot = false;
     }
 
-    void processBuild(BuildView buildView) {
-        processBuild(
-                buildView.username(),
-                buildView.projectName(),
-                buildView.requested(),
-                buildView.tags(),
-                buildView.values(),
-                buildView.hasFailed(),
-                buildView.buildStartTime(),
-                buildView.buildDuration()
-        );
-    }
-
-    private void processBuild(
-            String username,
-            String projectName,
-            Collection<String> requested,
-            Collection<String> tags,
-            Collection<BuildAttributesValue> values,
-            boolean isFailure,
-            Instant buildStartTime,
-            Duration buildDuration) {
-        final var isCI = hasTag("CI", tags);
-        final var isLocal = hasTag("LOCAL", tags);
-        final var isIdeSync = hasTag("IDE sync", tags);
-        final var gitBranch = findValue("Git branch", values);
-        final var buildValidationScripts = findValue("Build validation scripts", values);
-        if (buildValidationScripts.isEmpty() && (isCI || isLocal) && gitBranch.isPresent()) {
-            handleIncident(username, projectName, requested, isFailure, buildStartTime, buildDuration, isCI, isIdeSync, gitBranch.get());
+    // the first state saved in a run is a snapshot of everything tracked, and later ones only hold the builds tracked
+    // since, so a checkpoint costs as much as the builds it covers rather than all the builds of the run so far
+    @Override
+    public synchronized byte[] saveState() {
+        final State state;
+        if (savedSnapshot) {
+            if (unsavedBuildViews.isEmpty()) return null;
+            state = new State(false, shard.toString(), sample.percent(), List.of(), List.of(), unsavedBuildViews.stream().map(BuildViewEntry::of).toList());
+        } else {
+            state = new State(
+                    true,
+                    shard.toString(),
+                    sample.percent(),
+                    resolvedIncidents.stream().map(IncidentEntry::of).toList(),
+                    unresolvedIncidents.values().stream().map(IncidentEntry::of).toList(),
+                    pendingBuildViews.values().stream().flatMap(Set::stream).map(BuildViewEntry::of).toList());
+        }
+        try {
+            final var bytes = objectMapper.writeValueAsBytes(state);
+            unsavedBuildViews.clear();
+            savedSnapshot = true;
+            return bytes;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
-    private void handleIncident(
-            String username,
-            String projectName,
-            Collection<String> requested,
-            boolean isFailure,
-            Instant buildStartTime,
-            Duration buildDuration,
-            boolean isCI,
-            boolean isIdeSync,
-            String gitBranch) {
-        final var incidentName = isCI ? buildCiIncidentName(projectName, requested, gitBranch) : buildLocalIncidentName(username, projectName, requested, isIdeSync);
-        if (isFailure) {
-            if (!hasUnresolvedIncident(incidentName)) {
-                trackIncident(incidentName, username, projectName, requested, buildStartTime.plus(buildDuration), isCI);
+    /**
+     * Restores a snapshot, replacing everything tracked so far, or adds the builds of a later state to it. Fails when
+     * the state was saved by a tracker of a different shard or sample.
+     */
+    @Override
+    public synchronized void restoreState(byte[] bytes) {
+        final State state;
+        try {
+            state = objectMapper.readValue(bytes, State.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to restore incident tracker state", e);
+        }
+        if (!state.shard().equals(shard.toString()) || state.samplePercent() != sample.percent()) {
+            throw new IllegalStateException("Cannot restore state of shard " + state.shard() + " and a " + state.samplePercent() + "% sample into a tracker of shard " + shard + " and a " + sample + " sample");
+        }
+        if (state.snapshot()) {
+            resolvedIncidents.clear();
+            unresolvedIncidents.clear();
+            pendingBuildViews.clear();
+            provisionalIncidents.clear();
+            staleProvisionalIncidents.clear();
+            state.resolved().forEach(it -> resolvedIncidents.add(it.toIncident()));
+            state.unresolved().forEach(it -> unresolvedIncidents.put(it.key(), it.toIncident()));
+            resolvedIncidentsVersion++;
+        }
+        state.pending().forEach(it -> track(it.toBuildView()));
+        unsavedBuildViews.clear();
+        savedSnapshot = true;
+    }
+
+    synchronized void track(BuildView buildView) {
+        incidentNameIfTracked(buildView).ifPresent(incidentName -> addPending(incidentName, List.of(buildView)));
+    }
+
+    // builds of other shards and of incidents outside the sample are dropped right away, so they take up neither
+    // memory nor sorting time
+    private Optional<String> incidentNameIfTracked(BuildView buildView) {
+        if (!shard.includes(buildView.projectName())) return Optional.empty();
+        return incidentName(buildView).filter(sample::includes);
+    }
+
+    private void addPending(String incidentName, Collection<BuildView> buildViews) {
+        pendingBuildViews.computeIfAbsent(incidentName, __ -> new TreeSet<>()).addAll(buildViews);
+        if (savedSnapshot) unsavedBuildViews.addAll(buildViews);
+        if (tracksProvisionalIncidents) {
+            staleProvisionalIncidents.add(incidentName);
+        }
+    }
+
+    /**
+     * Works out the incidents resolved by the builds of the current run so far, as if the run had finished with them,
+     * for the keys that received builds since the last update. The returned incidents of each key replace those
+     * returned for it before. When the resolved incidents changed since the given version, for example because a run
+     * finished, they are returned as well, along with the provisional incidents of all keys.
+     */
+    synchronized ProvisionalUpdate updateProvisionalIncidents(long knownVersion) {
+        if (!tracksProvisionalIncidents) throw new IllegalStateException("Provisional incidents are not tracked");
+        final var changed = new HashMap<String, List<Incident>>();
+        for (var incidentName : staleProvisionalIncidents) {
+            final var unresolved = new HashMap<String, Incident>();
+            if (unresolvedIncidents.containsKey(incidentName)) unresolved.put(incidentName, unresolvedIncidents.get(incidentName));
+            final var resolved = new ArrayList<Incident>();
+            pendingBuildViews.get(incidentName).forEach(it -> handleIncident(incidentName, it, unresolved, resolved));
+            provisionalIncidents.put(incidentName, resolved);
+            changed.put(incidentName, resolved);
+        }
+        staleProvisionalIncidents.clear();
+        if (knownVersion == resolvedIncidentsVersion) return new ProvisionalUpdate(resolvedIncidentsVersion, null, changed);
+        return new ProvisionalUpdate(resolvedIncidentsVersion, List.copyOf(resolvedIncidents), new HashMap<>(provisionalIncidents));
+    }
+
+    /**
+     * The resolved incidents, along with those resolved by the builds of the current run so far.
+     */
+    synchronized List<Incident> getProvisionalIncidents() {
+        final var update = updateProvisionalIncidents(-1);
+        final var incidents = new ArrayList<>(update.resolved());
+        update.provisional().values().forEach(incidents::addAll);
+        return incidents;
+    }
+
+    // builds are only tracked in start order within a single processing run, so incidents stay open across runs
+    // and builds processed in a later run pick up where the previous run left off; incidents never span keys, so the
+    // builds of each key are processed on their own, and the incidents they resolve are kept in the order resolved
+    @Override
+    public synchronized void onProcessingFinished(ProcessingFinishedEvent event) {
+        final var resolvedInRun = new ArrayList<Incident>();
+        pendingBuildViews.forEach((incidentName, buildViews) ->
+                buildViews.forEach(it -> handleIncident(incidentName, it, unresolvedIncidents, resolvedInRun)));
+        resolvedInRun.sort(comparing(Incident::resolvedOn));
+        resolvedIncidents.addAll(resolvedInRun);
+        resolvedIncidentsVersion++;
+        pendingBuildViews.clear();
+        provisionalIncidents.clear();
+        staleProvisionalIncidents.clear();
+        unsavedBuildViews.clear();
+        savedSnapshot = false;
+    }
+
+    void processBuild(BuildView buildView) {
+        incidentName(buildView).filter(sample::includes).ifPresent(incidentName -> handleIncident(incidentName, buildView, unresolvedIncidents, resolvedIncidents));
+        resolvedIncidentsVersion++;
+    }
+
+    private void handleIncident(String incidentName, BuildView buildView, Map<String, Incident> unresolved, List<Incident> resolved) {
+        if (buildView.hasFailed()) {
+            if (!unresolved.containsKey(incidentName)) {
+                final var startedOn = buildView.buildStartTime().plus(buildView.buildDuration());
+                unresolved.put(incidentName, new Incident(server, incidentName, buildView.username(), buildView.projectName(), buildView.requested(), startedOn, null, hasTag("CI", buildView.tags())));
+            }
+        } else {
+            final var incident = unresolved.remove(incidentName);
+            if (incident != null) {
+                resolved.add(new Incident(server, incidentName, incident.username(), incident.projectName(), incident.requested(), incident.startedOn(), buildView.buildStartTime(), incident.isCI()));
             }
-        } else if (hasUnresolvedIncident(incidentName)) {
-            markIncidentResolved(incidentName, buildStartTime);
         }
     }
 
-    private boolean hasUnresolvedIncident(String incidentName) {
-        return unresolvedIncidents.containsKey(incidentName);
+    private static Optional<BuildView> buildView(Build build) {
+        return switch (build) {
+            case GradleBuild b -> b.getAttributes().map(IncidentTracker::buildView);
+            case MavenBuild b -> b.getAttributes().map(IncidentTracker::buildView);
+            default -> Optional.empty();
+        };
+    }
+
+    private static BuildView buildView(GradleAttributes attributes) {
+        return new BuildView(
+                attributes.getEnvironment().getUsername(),
+                attributes.getRootProjectName(),
+                attributes.getRequestedTasks(),
+                attributes.getTags(),
+                attributes.getValues(),
+                attributes.getHasFailed(),
+                ofEpochMilli(attributes.getBuildStartTime()),
+                ofMillis(attributes.getBuildDuration()));
     }
 
-    private void trackIncident(String incidentName, String username, String projectName, Collection<String> requested, Instant startedOn, boolean isCI) {
-        unresolvedIncidents.put(incidentName, new Incident(incidentName, username, projectName, requested, startedOn, null, isCI));
+    private static BuildView buildView(MavenAttributes attributes) {
+        return new BuildView(
+                attributes.getEnvironment().getUsername(),
+                attributes.getTopLevelProjectName(),
+                attributes.getRequestedGoals(),
+                attributes.getTags(),
+                attributes.getValues(),
+                attributes.getHasFailed(),
+                ofEpochMilli(attributes.getBuildStartTime()),
+                ofMillis(attributes.getBuildDuration()));
     }
 
-    private void markIncidentResolved(String incidentName, Instant resolvedOn) {
-        final var incident = unresolvedIncidents.remove(incidentName);
-        resolvedIncidents.add(new Incident(incidentName, incident.username(), incident.projectName(), incident.requested(), incident.startedOn(), resolvedOn, incident.isCI()));
+    /**
+     * The key of the incident a build belongs to, or nothing when the build cannot contribute to incidents.
+     */
+    private static Optional<String> incidentName(BuildView buildView) {
+        final var isCI = hasTag("CI", buildView.tags());
+        final var isLocal = hasTag("LOCAL", buildView.tags());
+        final var gitBranch = findValue("Git branch", buildView.values());
+        final var buildValidationScripts = findValue("Build validation scripts", buildView.values());
+        if (buildValidationScripts.isPresent() || !(isCI || isLocal) || gitBranch.isEmpty()) return Optional.empty();
+        return Optional.of(isCI
+                ? buildCiIncidentName(buildView.projectName(), buildView.requested(), gitBranch.get())
+                : buildLocalIncidentName(buildView.username(), buildView.projectName(), buildView.requested(), hasTag("IDE sync", buildView.tags())));
     }
 
     private static String buildCiIncidentName(String projectName, Collection<String> requested, String gitBranch) {
@@ -152,6 +384,39 @@ public final class IncidentTracker implements BuildProcessorListener {
         return values.stream().filter(it -> it.getName().equalsIgnoreCase(name)).findFirst().map(BuildAttributesValue::getValue);
     }
 
+    /**
+     * @param resolved the resolved incidents, or {@code null} when they did not change since the known version
+     * @param provisional the provisional incidents by key, of the changed keys only unless the resolved incidents are given
+     */
+    record ProvisionalUpdate(long version, List<Incident> resolved, Map<String, List<Incident>> provisional) {
+    }
+
+    private record State(boolean snapshot, String shard, int samplePercent, List<IncidentEntry> resolved, List<IncidentEntry> unresolved, List<BuildViewEntry> pending) {
+    }
+
+    private record BuildViewEntry(
+            String username,
+            String projectName,
+            List<String> requested,
+            List<String> tags,
+            Map<String, String> values,
+            boolean hasFailed,
+            long buildStartTime,
+            long buildDuration) {
+
+        static BuildViewEntry of(BuildView buildView) {
+            final var values = new LinkedHashMap<String, String>();
+            buildView.values().forEach(it -> values.putIfAbsent(it.getName(), it.getValue()));
+            return new BuildViewEntry(buildView.username(), buildView.projectName(), buildView.requested(), buildView.tags(), values, buildView.hasFailed(), buildView.buildStartTime().toEpochMilli(), buildView.buildDuration().toMillis());
+        }
+
+        BuildView toBuildView() {
+            final var values = this.values.entrySet().stream().map(it -> new BuildAttributesValue().name(it.getKey()).value(it.getValue())).toList();
+            return new BuildView(username, projectName, requested, tags, values, hasFailed, ofEpochMilli(buildStartTime), ofMillis(buildDuration));
+        }
+
+    }
+
     record BuildView(
             String username,
             String projectName,
@@ -0,0 +1,35 @@
+package dev.erichaag.develocity.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    @Name("dev.erichaag.develocity.ReportTable")
+    @Label("Report Table")
+    @Description("Computation of a single table of the incident report")
+    @Category({"Develocity Failure Insights", "Report"})
+    @StackTrace(false)
+    static final class ReportTable extends Event {
+
+        @Label("Name")
+        String name;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        long size;
+
+    }
+
+}
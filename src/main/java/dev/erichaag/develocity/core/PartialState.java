@@ -0,0 +1,171 @@
+package dev.erichaag.develocity.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.time.Instant.ofEpochMilli;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * The resolved incidents of a single shard, written by a worker to a plain file so that the workers of all shards can
+ * be merged into a single report afterward, possibly on another machine sharing the same filesystem.
+ * <p>
+ * Percentiles cannot be combined from per-shard summaries, so the state holds the resolved incidents themselves and
+ * the merged report is computed from all of them, giving the same tables as a single worker would.
+ */
+public final class PartialState {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final int version = 1;
+
+    private final List<IncidentTracker> trackers;
+    private final Instant until;
+    private final Map<Shard, Integer> incidentsByShard;
+
+    private PartialState(List<IncidentTracker> trackers, Instant until, Map<Shard, Integer> incidentsByShard) {
+        this.trackers = trackers;
+        this.until = until;
+        this.incidentsByShard = incidentsByShard;
+    }
+
+    /**
+     * One tracker per server, holding the resolved incidents of all merged shards.
+     */
+    public List<IncidentTracker> trackers() {
+        return trackers;
+    }
+
+    /**
+     * The latest time any of the merged workers finished processing builds.
+     */
+    public Instant until() {
+        return until;
+    }
+
+    /**
+     * The number of resolved incidents of each merged shard, by shard index, which shows how evenly the project names
+     * split across the shards.
+     */
+    public Map<Shard, Integer> incidentsByShard() {
+        return incidentsByShard;
+    }
+
+    /**
+     * Writes the resolved incidents of the trackers, which must all track the same shard, and returns how many were
+     * written. The file is replaced atomically, so a merge never sees a partially written file.
+     */
+    public static int write(Path file, Collection<IncidentTracker> trackers, Instant until) {
+        final var shards = trackers.stream().map(IncidentTracker::getShard).distinct().toList();
+        if (shards.size() != 1) throw new IllegalArgumentException("Trackers must all track the same shard: " + shards);
+        final var incidents = trackers.stream()
+                .flatMap(it -> it.getResolvedIncidents().stream())
+                .map(IncidentEntry::of)
+                .toList();
+        final var shard = shards.getFirst();
+        final var samples = trackers.stream().map(IncidentTracker::getSample).distinct().toList();
+        if (samples.size() != 1) throw new IllegalArgumentException("Trackers must all track the same sample: " + samples);
+        try {
+            final var parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final var temporaryFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temporaryFile.toFile(), new StateFile(version, shard.index(), shard.count(), samples.getFirst().percent(), until.toEpochMilli(), incidents));
+            Files.move(temporaryFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            return incidents.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write partial state to " + file, e);
+        }
+    }
+
+    /**
+     * Reads and merges the partial state files of all shards. Fails when the files were written for different shard
+     * counts, when a shard is present twice, or when a shard is missing.
+     */
+    public static PartialState merge(Collection<Path> files) {
+        final var stateFiles = files.stream().map(PartialState::read).toList();
+        final var shardCounts = stateFiles.stream().map(StateFile::shardCount).distinct().toList();
+        if (shardCounts.size() != 1) throw new IllegalArgumentException("Partial states are for different shard counts: " + shardCounts);
+        final var samples = stateFiles.stream().map(StateFile::sample).distinct().toList();
+        if (samples.size() != 1) throw new IllegalArgumentException("Partial states are for different samples: " + samples);
+        final var shardIndexes = new TreeSet<Integer>();
+        for (var stateFile : stateFiles) {
+            if (!shardIndexes.add(stateFile.shardIndex())) {
+                throw new IllegalArgumentException("Shard " + new Shard(stateFile.shardIndex(), stateFile.shardCount()) + " is present more than once");
+            }
+        }
+        if (shardIndexes.size() != shardCounts.getFirst()) {
+            throw new IllegalArgumentException("Expected " + shardCounts.getFirst() + " shards but got " + shardIndexes);
+        }
+        final var incidentsByServer = stateFiles.stream()
+                .flatMap(it -> it.incidents().stream())
+                .map(IncidentEntry::toIncident)
+                .collect(groupingBy(Incident::server, LinkedHashMap::new, toCollection(ArrayList::new)));
+        final var trackers = incidentsByServer.entrySet().stream()
+                .map(it -> new IncidentTracker(it.getKey(), samples.getFirst(), it.getValue()))
+                .toList();
+        final var until = stateFiles.stream().mapToLong(StateFile::until).max().orElseThrow();
+        final var incidentsByShard = new TreeMap<Shard, Integer>(Comparator.comparingInt(Shard::index));
+        stateFiles.forEach(it -> incidentsByShard.put(new Shard(it.shardIndex(), it.shardCount()), it.incidents().size()));
+        return new PartialState(trackers, ofEpochMilli(until), incidentsByShard);
+    }
+
+    private static StateFile read(Path file) {
+        final StateFile stateFile;
+        try {
+            stateFile = objectMapper.readValue(file.toFile(), StateFile.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read partial state from " + file, e);
+        }
+        if (stateFile.version() != version) {
+            throw new IllegalArgumentException("Unsupported partial state version " + stateFile.version() + " in " + file);
+        }
+        return stateFile;
+    }
+
+    // files written before sampling was supported have no sample, and cover all incidents
+    private record StateFile(int version, int shardIndex, int shardCount, Integer samplePercent, long until, List<IncidentEntry> incidents) {
+
+        Sample sample() {
+            return samplePercent == null ? Sample.all : new Sample(samplePercent);
+        }
+
+    }
+
+    // also used for the incidents in checkpoints of the tracker state, where unresolved incidents have no resolvedOn
+    record IncidentEntry(
+            String server,
+            String key,
+            String username,
+            String projectName,
+            List<String> requested,
+            long startedOn,
+            Long resolvedOn,
+            boolean ci) {
+
+        static IncidentEntry of(Incident incident) {
+            final var resolvedOn = incident.resolvedOn() == null ? null : incident.resolvedOn().toEpochMilli();
+            return new IncidentEntry(incident.server(), incident.key(), incident.username(), incident.projectName(), List.copyOf(incident.requested()), incident.startedOn().toEpochMilli(), resolvedOn, incident.isCI());
+        }
+
+        Incident toIncident() {
+            return new Incident(server, key, username, projectName, requested, ofEpochMilli(startedOn), resolvedOn == null ? null : ofEpochMilli(resolvedOn), ci);
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.core.IncidentReport.IncidentStatistics;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static java.time.Duration.between;
+import static java.time.ZoneId.systemDefault;
+
+/**
+ * The incidents of trackers that are still processing a run, aggregated for provisional reports. The statistics of
+ * each cell of the report tables, that is each group of each scope, overall and per tick, are kept from one report to
+ * the next. Incidents newly resolved since the previous report are added to the statistics of their cells, and only
+ * cells that lose incidents, as when a build of a key arrives out of order, are worked out again from their incidents.
+ * The percentiles of cells that changed are still selected from all their durations, and the tables are still
+ * formatted from all cells every time.
+ * <p>
+ * All cells are worked out again when the resolution of the trends changes as the window grows, when the resolved
+ * incidents of a tracker change, and, with {@code excludeAbovePercentile}, whenever the cutoff moves, which it usually
+ * does as incidents come in, so excluding outliers costs as much as a full report.
+ */
+public final class ProvisionalIncidents {
+
+    private final List<IncidentTracker> trackers;
+    private final ZonedDateTime since;
+    private final Integer excludeAbovePercentile;
+    private final long[] versions;
+    private final Map<Owner, List<Incident>> incidents = new HashMap<>();
+    private final Map<String, Scope<?>> scopes = new HashMap<>();
+    private final Map<ZonedDateTime, Integer> ticks = new HashMap<>();
+
+    private Resolution resolution;
+    private Duration cutoff;
+    private int incidentCount = 0;
+
+    public ProvisionalIncidents(List<IncidentTracker> trackers, ZonedDateTime since, Integer excludeAbovePercentile) {
+        this.trackers = trackers;
+        this.since = since;
+        this.excludeAbovePercentile = excludeAbovePercentile;
+        this.versions = new long[trackers.size()];
+        Arrays.fill(versions, -1);
+        trackers.forEach(IncidentTracker::trackProvisionalIncidents);
+    }
+
+    /**
+     * Reports on the incidents resolved so far, including those resolved by the builds of the runs in progress.
+     */
+    public synchronized IncidentReport report(ZonedDateTime until) {
+        final var previous = new HashMap<Owner, List<Incident>>();
+        var rebuild = false;
+        for (int i = 0; i < trackers.size(); i++) {
+            final var update = trackers.get(i).updateProvisionalIncidents(versions[i]);
+            if (update.resolved() != null) {
+                final var tracker = i;
+                incidents.keySet().removeIf(it -> it.tracker() == tracker);
+                incidents.put(new Owner(i, null), update.resolved());
+                rebuild = true;
+            }
+            versions[i] = update.version();
+            for (var entry : update.provisional().entrySet()) {
+                final var owner = new Owner(i, entry.getKey());
+                final var replaced = incidents.put(owner, entry.getValue());
+                previous.putIfAbsent(owner, replaced == null ? List.of() : replaced);
+            }
+        }
+        final var resolution = Resolution.from(between(since, until));
+        final var cutoff = excludeAbovePercentile == null ? null : IncidentReport.exclusionCutoff(incidents.values().stream().flatMap(List::stream).toList(), excludeAbovePercentile);
+        if (rebuild || resolution != this.resolution || !Objects.equals(cutoff, this.cutoff)) {
+            this.resolution = resolution;
+            this.cutoff = cutoff;
+            ticks.clear();
+            incidentCount = 0;
+            scopes.values().forEach(Scope::clear);
+            incidents.forEach(this::add);
+        } else {
+            previous.forEach((owner, replaced) -> {
+                final var current = incidents.get(owner);
+                // the incidents of a key are usually those of the previous report followed by newly resolved ones
+                if (current.size() >= replaced.size() && current.subList(0, replaced.size()).equals(replaced)) {
+                    add(owner, current.subList(replaced.size(), current.size()));
+                } else {
+                    remove(owner, replaced);
+                    add(owner, current);
+                }
+            });
+        }
+        return new IncidentReport(new Aggregates(incidentCount, Set.copyOf(ticks.keySet())), IncidentReport.sampleOf(trackers), since, until, IncidentReport.includedTables(trackers));
+    }
+
+    private void add(Owner owner, List<Incident> added) {
+        for (var incident : added) {
+            if (!IncidentReport.isCounted(incident, cutoff)) continue;
+            incidentCount++;
+            ticks.merge(tick(incident), 1, Integer::sum);
+            scopes.values().forEach(it -> it.add(owner, incident));
+        }
+    }
+
+    private void remove(Owner owner, List<Incident> removed) {
+        for (var incident : removed) {
+            if (!IncidentReport.isCounted(incident, cutoff)) continue;
+            incidentCount--;
+            ticks.computeIfPresent(tick(incident), (__, count) -> count == 1 ? null : count - 1);
+            scopes.values().forEach(it -> it.remove(owner, incident));
+        }
+    }
+
+    private ZonedDateTime tick(Incident incident) {
+        return resolution.truncate(incident.startedOn().atZone(systemDefault()));
+    }
+
+    private final class Aggregates implements IncidentReport.Aggregates {
+
+        private final int incidentCount;
+        private final Set<ZonedDateTime> ticks;
+
+        Aggregates(int incidentCount, Set<ZonedDateTime> ticks) {
+            this.incidentCount = incidentCount;
+            this.ticks = ticks;
+        }
+
+        @Override
+        public int incidentCount() {
+            return incidentCount;
+        }
+
+        @Override
+        public Set<ZonedDateTime> ticks() {
+            return ticks;
+        }
+
+        @Override
+        public <Key> Map<Key, IncidentStatistics> overall(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            return scope(scope, filter, groupingBy).overall();
+        }
+
+        @Override
+        public <Key> Map<ZonedDateTime, Map<Key, IncidentStatistics>> byTick(String scope, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            return scope(scope, filter, groupingBy).byTick();
+        }
+
+        // scopes are set up by the first report asking for them, and are kept up to date with every change after that
+        private <Key> Scope<Key> scope(String name, Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            //noinspection unchecked
+            return (Scope<Key>) scopes.computeIfAbsent(name, __ -> {
+                final var scope = new Scope<>(filter, groupingBy);
+                incidents.forEach((owner, added) -> added.stream().filter(it -> IncidentReport.isCounted(it, cutoff)).forEach(it -> scope.add(owner, it)));
+                return scope;
+            });
+        }
+
+    }
+
+    /**
+     * The incidents of a scope by cell, along with the statistics of each cell. Added incidents are added to the
+     * statistics of their cells right away, while the statistics of cells that incidents were removed from are worked
+     * out again when they are next asked for.
+     */
+    private final class Scope<Key> {
+
+        private final Predicate<Incident> filter;
+        private final Function<Incident, Key> groupingBy;
+        private final Map<Cell<Key>, Map<Owner, List<Incident>>> cells = new HashMap<>();
+        private final Map<Key, IncidentStatistics> overall = new HashMap<>();
+        private final Map<ZonedDateTime, Map<Key, IncidentStatistics>> byTick = new HashMap<>();
+        private final Set<Cell<Key>> changed = new HashSet<>();
+
+        Scope(Predicate<Incident> filter, Function<Incident, Key> groupingBy) {
+            this.filter = filter;
+            this.groupingBy = groupingBy;
+        }
+
+        void add(Owner owner, Incident incident) {
+            if (!filter.test(incident)) return;
+            for (var cell : cellsOf(incident)) {
+                cells.computeIfAbsent(cell, __ -> new HashMap<>()).computeIfAbsent(owner, __ -> new ArrayList<>()).add(incident);
+                if (!changed.contains(cell)) statistics(cell.tick()).computeIfAbsent(cell.key(), __ -> new IncidentStatistics()).addIncident(incident);
+            }
+        }
+
+        void remove(Owner owner, Incident incident) {
+            if (!filter.test(incident)) return;
+            for (var cell : cellsOf(incident)) {
+                final var owners = cells.get(cell);
+                final var incidents = owners.get(owner);
+                incidents.remove(incident);
+                if (incidents.isEmpty()) owners.remove(owner);
+                if (owners.isEmpty()) cells.remove(cell);
+                changed.add(cell);
+            }
+        }
+
+        void clear() {
+            cells.clear();
+            overall.clear();
+            byTick.clear();
+            changed.clear();
+        }
+
+        Map<Key, IncidentStatistics> overall() {
+            update();
+            return overall;
+        }
+
+        Map<ZonedDateTime, Map<Key, IncidentStatistics>> byTick() {
+            update();
+            return byTick;
+        }
+
+        private void update() {
+            for (var cell : changed) {
+                final var owners = cells.get(cell);
+                final var statistics = statistics(cell.tick());
+                if (owners == null) {
+                    statistics.remove(cell.key());
+                    if (statistics.isEmpty() && cell.tick() != null) byTick.remove(cell.tick());
+                } else {
+                    statistics.put(cell.key(), IncidentReport.calculateStatistics(owners.values().stream().flatMap(List::stream).toList()));
+                }
+            }
+            changed.clear();
+        }
+
+        private Map<Key, IncidentStatistics> statistics(ZonedDateTime tick) {
+            return tick == null ? overall : byTick.computeIfAbsent(tick, __ -> new HashMap<>());
+        }
+
+        private List<Cell<Key>> cellsOf(Incident incident) {
+            final var key = groupingBy.apply(incident);
+            return List.of(new Cell<>(null, key), new Cell<>(tick(incident), key));
+        }
+
+    }
+
+    /**
+     * A group of a scope, over the whole window when the tick is {@code null}.
+     */
+    private record Cell<Key>(ZonedDateTime tick, Key key) {
+    }
+
+    /**
+     * The tracker and key a list of incidents came from, where the resolved incidents of a tracker have no key.
+     */
+    private record Owner(int tracker, String key) {
+    }
+
+}
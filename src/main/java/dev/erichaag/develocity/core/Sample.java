@@ -0,0 +1,51 @@
+package dev.erichaag.develocity.core;
+
+/**
+ * A deterministic sample of the incidents, picked by a hash of the incident key. Every build of a sampled incident key
+ * is tracked, so the incidents of the sample are exactly those of a full run, and counts are scaled up accordingly.
+ */
+public record Sample(int percent) {
+
+    public static final Sample all = new Sample(100);
+
+    public Sample {
+        if (percent < 1 || percent > 100) {
+            throw new IllegalArgumentException("Invalid sample of " + percent + "%, expected 1 to 100");
+        }
+    }
+
+    /**
+     * Parses a sample written as a percentage, with or without a trailing {@code %}, for example {@code 10%}.
+     */
+    public static Sample parse(String value) {
+        return new Sample(Integer.parseInt(value.trim().replaceFirst("%$", "")));
+    }
+
+    public boolean isAll() {
+        return percent == 100;
+    }
+
+    boolean includes(String incidentKey) {
+        return isAll() || Math.floorMod(mix(incidentKey.hashCode()), 100) < percent;
+    }
+
+    long scale(long count) {
+        return isAll() ? count : Math.round(count * 100.0 / percent);
+    }
+
+    @Override
+    public String toString() {
+        return percent + "%";
+    }
+
+    // spreads similar keys, which only differ in a branch or user name, evenly across the percentages
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
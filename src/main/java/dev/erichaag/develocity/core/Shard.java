@@ -0,0 +1,77 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.BuildQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * One of {@code count} disjoint parts of the builds, split by the first character of the project name. Incidents never
+ * span projects, so each shard can be tracked by a separate worker and the resolved incidents merged afterward.
+ * <p>
+ * Splitting by the first character rather than by the whole name lets each worker ask the server for its own builds
+ * only, with a query of project name prefixes, at the cost of shards being as uneven as the first characters are.
+ */
+public record Shard(int index, int count) {
+
+    public static final Shard all = new Shard(0, 1);
+
+    // project names starting with any other character, or without a name, belong to the first shard, and as every
+    // shard needs a first character of its own, there are at most as many shards as there are characters
+    private static final String prefixes = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+    public Shard {
+        if (count < 1 || count > prefixes.length() || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+    }
+
+    /**
+     * Parses a shard written as {@code <index>/<count>}, for example {@code 0/4} for the first of four shards.
+     */
+    public static Shard parse(String value) {
+        final var parts = value.split("/");
+        if (parts.length != 2) throw new IllegalArgumentException("Invalid shard '" + value + "', expected <index>/<count>");
+        return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+    }
+
+    boolean includes(String projectName) {
+        return count == 1 || shardOf(projectName) == index;
+    }
+
+    /**
+     * An advanced search query matching the builds of this shard, which keeps a worker from discovering and fetching
+     * the builds of the other shards, or nothing when there is a single shard.
+     */
+    public String query() {
+        if (count == 1) return null;
+        final var query = BuildQuery.anyOf("project", patterns(prefix -> prefix % count == index));
+        return index == 0 ? BuildQuery.or(query, BuildQuery.not(BuildQuery.anyOf("project", patterns(prefix -> true)))) : query;
+    }
+
+    private int shardOf(String projectName) {
+        if (projectName == null || projectName.isEmpty()) return 0;
+        final var first = Character.toLowerCase(projectName.charAt(0));
+        final var prefix = prefixes.indexOf(first);
+        return prefix < 0 ? 0 : prefix % count;
+    }
+
+    // letters are matched in both cases, in case the server compares project names case-sensitively
+    private static List<String> patterns(IntPredicate includes) {
+        final var patterns = new ArrayList<String>();
+        for (int i = 0; i < prefixes.length(); i++) {
+            if (!includes.test(i)) continue;
+            final var prefix = prefixes.charAt(i);
+            patterns.add(prefix + "*");
+            if (Character.isLetter(prefix)) patterns.add(Character.toUpperCase(prefix) + "*");
+        }
+        return patterns;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+}
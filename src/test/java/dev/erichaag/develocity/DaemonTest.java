@@ -0,0 +1,106 @@
+package dev.erichaag.develocity;
+
+import dev.erichaag.develocity.api.ApiBuild;
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildAttributesEnvironment;
+import dev.erichaag.develocity.api.BuildAttributesValue;
+import dev.erichaag.develocity.api.BuildCache;
+import dev.erichaag.develocity.api.BuildModels;
+import dev.erichaag.develocity.api.BuildModelsGradleAttributes;
+import dev.erichaag.develocity.api.BuildProcessor;
+import dev.erichaag.develocity.api.BuildProcessorListener;
+import dev.erichaag.develocity.api.GradleAttributes;
+import dev.erichaag.develocity.api.InMemoryDevelocityClient;
+import dev.erichaag.develocity.core.IncidentReport;
+import dev.erichaag.develocity.core.IncidentTracker;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class DaemonTest {
+
+    @Test
+    void givenBuildsBecomingAvailableBetweenPolls_thenEachBuildIsProcessedOnce() throws IOException {
+        final var client = new InMemoryDevelocityClient(List.of(build("build-a", 1000), build("build-b", 2000)));
+        final var processor = new BuildProcessor(client, 100, new BuildCache(Files.createTempDirectory("cache")));
+        final var received = new ArrayList<String>();
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public void onBuild(Build build) {
+                received.add(build.getId());
+            }
+        });
+        final var daemon = new Daemon(List.of(processor), List.of(), Duration.ZERO, Duration.ZERO, null, since -> {
+        });
+
+        daemon.poll(Instant.EPOCH.atZone(UTC), null);
+        assertEquals(List.of("build-a", "build-b"), received.stream().sorted().toList());
+
+        // build-c became available in the same millisecond as build-b, but was only indexed after the previous poll
+        client.add(List.of(build("build-c", 2000), build("build-d", 3000)));
+        received.clear();
+        daemon.poll(Instant.EPOCH.atZone(UTC), null);
+        assertEquals(List.of("build-c", "build-d"), received.stream().sorted().toList());
+
+        received.clear();
+        daemon.poll(Instant.EPOCH.atZone(UTC), null);
+        assertEquals(List.of(), received);
+    }
+
+    @Test
+    void givenWindow_thenReportsSlideAndIncidentsBeforeTheWindowAreDropped() throws IOException {
+        final var client = new InMemoryDevelocityClient(List.of(
+                build("old", 1_000, true), build("old", 2_000, false),
+                build("new", 100_000, true), build("new", 101_000, false)));
+        final var processor = new BuildProcessor(client, 100, new BuildCache(Files.createTempDirectory("cache")));
+        final var tracker = new IncidentTracker();
+        processor.registerListener(tracker);
+        final var reportedSince = new ArrayList<ZonedDateTime>();
+        final var daemon = new Daemon(List.of(processor), List.of(tracker), Duration.ZERO, Duration.ZERO, Duration.ofSeconds(100_000), reportedSince::add);
+        final var since = Instant.EPOCH.atZone(UTC);
+        daemon.poll(since, null);
+
+        daemon.report(since, Instant.ofEpochSecond(50_000));
+        assertEquals(List.of(since), reportedSince);
+        assertEquals(2, incidentCount(tracker));
+
+        daemon.report(since, Instant.ofEpochSecond(150_000));
+        assertEquals(Instant.ofEpochSecond(50_000), reportedSince.getLast().toInstant());
+        assertEquals(1, incidentCount(tracker));
+    }
+
+    private static int incidentCount(IncidentTracker tracker) {
+        return new IncidentReport(List.of(tracker), Instant.EPOCH.atZone(UTC), Instant.ofEpochSecond(1_000_000).atZone(UTC), null).incidentCount();
+    }
+
+    private static ApiBuild build(String project, int buildStartTime, boolean hasFailed) {
+        final var attributes = new GradleAttributes()
+                .rootProjectName(project)
+                .requestedTasks(List.of("build"))
+                .tags(List.of("CI"))
+                .values(List.of(new BuildAttributesValue().name("Git branch").value("main")))
+                .hasFailed(hasFailed)
+                .buildStartTime(buildStartTime * 1000L)
+                .buildDuration(100_000L)
+                .environment(new BuildAttributesEnvironment().username("user"));
+        return new ApiBuild()
+                .id(project + "-" + buildStartTime)
+                .availableAt(buildStartTime * 1000L + 100_000L)
+                .buildToolType("gradle")
+                .models(new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(attributes)));
+    }
+
+    private static ApiBuild build(String id, long availableAt) {
+        return new ApiBuild().id(id).availableAt(availableAt).buildToolType("gradle");
+    }
+
+}
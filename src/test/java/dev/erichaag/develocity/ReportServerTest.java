@@ -0,0 +1,137 @@
+package dev.erichaag.develocity;
+
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.core.IncidentReport;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneId.systemDefault;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ReportServerTest {
+
+    private static final ZonedDateTime defaultSince = LocalDate.of(2024, 1, 1).atStartOfDay(systemDefault());
+    private static final String table = IncidentReport.tableNames().get(0);
+    private static final String otherTable = IncidentReport.tableNames().get(1);
+    private static final String thirdTable = IncidentReport.tableNames().get(2);
+    private static final Build build = Build.fromJson("{\"id\":\"build\",\"availableAt\":0,\"buildToolType\":\"gradle\"}".getBytes(UTF_8));
+
+    private final List<String> computed = new ArrayList<>();
+
+    @Test
+    void givenMoreTablesThanTheCacheHolds_thenTheLeastRecentlyUsedTableIsComputedAgain() throws Exception {
+        try (var server = start(2, (name, since, until) -> compute(name))) {
+            get(server, table);
+            get(server, otherTable);
+            get(server, table);
+            get(server, thirdTable);
+            get(server, table);
+            get(server, otherTable);
+
+            assertEquals(List.of(table, otherTable, thirdTable, otherTable), computed);
+        }
+    }
+
+    @Test
+    void givenNewBuilds_thenCachedTablesAreComputedAgain() throws Exception {
+        try (var server = start(10, (name, since, until) -> compute(name))) {
+            get(server, table);
+            server.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+            get(server, table);
+            server.onBuild(build);
+            server.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+            get(server, table);
+
+            assertEquals(List.of(table, table), computed);
+        }
+    }
+
+    @Test
+    void givenNewBuildsWhileComputing_thenTheStaleTableIsNotCached() throws Exception {
+        final var serverReference = new AtomicReference<ReportServer>();
+        try (var server = start(10, (name, since, until) -> {
+            if (computed.isEmpty()) {
+                serverReference.get().onBuild(build);
+                serverReference.get().onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+            }
+            return compute(name);
+        })) {
+            serverReference.set(server);
+            get(server, table);
+            get(server, table);
+            get(server, table);
+
+            assertEquals(List.of(table, table), computed);
+        }
+    }
+
+    @Test
+    void givenDates_thenTheWindowIsParsedFromThem() throws Exception {
+        final var windows = new ArrayList<List<ZonedDateTime>>();
+        try (var server = start(10, (name, since, until) -> {
+            windows.add(List.of(since, until));
+            return compute(name);
+        })) {
+            assertEquals(200, get(server, table + "?since=2024-06-01&until=2024-07-01T12:00:00Z").statusCode());
+            assertEquals(List.of(LocalDate.of(2024, 6, 1).atStartOfDay(systemDefault()), ZonedDateTime.parse("2024-07-01T12:00:00Z")), windows.getFirst());
+
+            final var before = ZonedDateTime.now();
+            assertEquals(200, get(server, table).statusCode());
+            assertEquals(defaultSince, windows.getLast().getFirst());
+            assertTrue(!windows.getLast().getLast().isBefore(before));
+
+            final var invalid = get(server, table + "?since=yesterday");
+            assertEquals(400, invalid.statusCode());
+            assertEquals("Invalid date: yesterday", invalid.body());
+            assertEquals(2, windows.size());
+        }
+    }
+
+    @Test
+    void givenFormat_thenTheTableIsReturnedAsCsvOrJson() throws Exception {
+        try (var server = start(10, (name, since, until) -> "project,incidents\nacme,3\n")) {
+            final var csv = get(server, table + "?format=csv");
+            assertEquals("project,incidents\nacme,3\n", csv.body());
+            assertEquals("text/csv; charset=utf-8", csv.headers().firstValue("Content-Type").orElseThrow());
+
+            final var json = get(server, table);
+            assertEquals("[{\"project\":\"acme\",\"incidents\":\"3\"}]", json.body());
+            assertEquals("application/json; charset=utf-8", json.headers().firstValue("Content-Type").orElseThrow());
+
+            assertEquals(400, get(server, table + "?format=xml").statusCode());
+            assertEquals(404, get(server, "unknown").statusCode());
+        }
+    }
+
+    private String compute(String name) {
+        computed.add(name);
+        return "table\n" + name + "\n";
+    }
+
+    private static ReportServer start(int cacheSize, ReportServer.Tables tables) {
+        final var server = new ReportServer(0, cacheSize, defaultSince, tables);
+        server.start();
+        return server;
+    }
+
+    private static HttpResponse<String> get(ReportServer server, String path) throws IOException, InterruptedException {
+        try (var client = HttpClient.newHttpClient()) {
+            final var request = HttpRequest.newBuilder(server.getUrl().resolve("tables/" + path)).build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+}
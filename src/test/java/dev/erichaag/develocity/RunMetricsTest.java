@@ -0,0 +1,63 @@
+package dev.erichaag.develocity;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.ApiBuild;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingStartedEvent;
+import dev.erichaag.develocity.api.HttpClientDevelocityClient;
+import dev.erichaag.develocity.api.StandInServer;
+import dev.erichaag.develocity.api.StandInServer.Faults;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class RunMetricsTest {
+
+    private static final String prefix = "develocity_failure_insights_";
+
+    @Test
+    void givenRequests_thenOpenMetricsHaveCumulativeBucketsAndCounterTotals() {
+        final var builds = IntStream.range(0, 3).mapToObj(it -> new ApiBuild().id("build" + it).availableAt(1000L + it).buildToolType("gradle")).toList();
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl());
+            builds.forEach(it -> client.getBuild(it.getId()));
+            final var lines = new RunMetrics(List.of(client.getMetrics())).toOpenMetrics().lines().toList();
+
+            final var buckets = lines.stream()
+                    .filter(it -> it.startsWith(prefix + "http_request_duration_seconds_bucket"))
+                    .map(it -> Long.parseLong(it.substring(it.lastIndexOf(' ') + 1)))
+                    .toList();
+            for (int i = 1; i < buckets.size(); i++) {
+                assertTrue(buckets.get(i) >= buckets.get(i - 1));
+            }
+            assertTrue(lines.contains(prefix + "http_request_duration_seconds_bucket{le=\"+Inf\"} 3"));
+            assertTrue(lines.contains(prefix + "http_request_duration_seconds_count 3"));
+            assertTrue(lines.contains("# TYPE " + prefix + "http_failed_requests counter"));
+            assertTrue(lines.contains(prefix + "http_failed_requests_total 0"));
+            assertTrue(lines.contains(prefix + "builds_total{source=\"fetched\"} 0"));
+            assertTrue(lines.stream().anyMatch(it -> it.startsWith(prefix + "heap_peak_bytes ") && !it.endsWith(" 0")));
+            assertEquals("# EOF", lines.getLast());
+        }
+    }
+
+    @Test
+    void givenSeveralProcessors_thenProcessingLastsFromTheFirstStartToTheLastFinish() throws IOException {
+        final var metrics = new RunMetrics(List.of());
+
+        metrics.onProcessingStarted(new ProcessingStartedEvent(Instant.ofEpochSecond(100)));
+        metrics.onProcessingStarted(new ProcessingStartedEvent(Instant.ofEpochSecond(110)));
+        metrics.onProcessingFinished(new ProcessingFinishedEvent(Instant.ofEpochSecond(120)));
+        metrics.onProcessingFinished(new ProcessingFinishedEvent(Instant.ofEpochSecond(130)));
+
+        final var json = new JsonMapper().readTree(metrics.toJson());
+        assertEquals(30.0, json.path("processing").path("durationSeconds").asDouble());
+        assertTrue(metrics.toOpenMetrics().contains(prefix + "stage_duration_seconds{stage=\"processing\"} 30.0\n"));
+    }
+
+}
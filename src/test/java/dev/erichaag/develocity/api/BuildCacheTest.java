@@ -0,0 +1,177 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_ATTRIBUTES;
+import static java.util.Comparator.comparingLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BuildCacheTest {
+
+    private static final Set<BuildModel> buildModels = Set.of(GRADLE_ATTRIBUTES, MAVEN_ATTRIBUTES);
+    private static final List<Build> builds = SyntheticBuildHistory.generate(SyntheticBuildHistory.Profile.of(50, 5, 5)).map(Build::from).toList();
+
+    @Test
+    void givenEntriesInAnyFormat_thenReadInEveryFormat() throws IOException {
+        for (var writtenIn : CacheFormat.values()) {
+            final var directory = Files.createTempDirectory("cache");
+            final var writer = new BuildCache(directory, writtenIn);
+            builds.forEach(it -> writer.write(new CachedBuild(buildModels, it)));
+            for (var readIn : CacheFormat.values()) {
+                final var reader = new BuildCache(directory, readIn);
+                for (var build : builds) {
+                    final var cachedBuild = reader.read(build.getId()).orElseThrow();
+                    assertEquals(buildModels, cachedBuild.buildModels());
+                    assertEquals(build.getAvailableAt(), cachedBuild.build().getAvailableAt());
+                    assertEquals(LazyApiBuild.of(build).fully(), LazyApiBuild.of(cachedBuild.build()).fully());
+                }
+            }
+        }
+    }
+
+    @Test
+    void givenLegacyJsonEntry_whenRewrittenInBinary_thenJsonEntryIsRemoved() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var build = builds.getFirst();
+        new BuildCache(directory).write(new CachedBuild(buildModels, build));
+        final var jsonFile = directory.resolve(build.getId().substring(0, 2)).resolve(build.getId() + ".json");
+        assertTrue(Files.exists(jsonFile));
+
+        final var cache = new BuildCache(directory, CacheFormat.COMPRESSED);
+        cache.write(new CachedBuild(buildModels, build));
+
+        assertFalse(Files.exists(jsonFile));
+        assertTrue(cache.read(build.getId()).isPresent());
+    }
+
+    @Test
+    void givenReopenedCache_thenIndexKnowsCachedBuildsAndTheirModels() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var writer = new BuildCache(directory, CacheFormat.BINARY);
+        builds.subList(0, 10).forEach(it -> writer.write(new CachedBuild(buildModels, it)));
+        writer.write(new CachedBuild(Set.of(GRADLE_ATTRIBUTES), builds.get(10)));
+
+        final var cache = new BuildCache(directory);
+
+        assertEquals(11, cache.index().size());
+        assertTrue(cache.isCached(builds.getFirst().getId(), buildModels));
+        assertFalse(cache.isCached(builds.get(10).getId(), buildModels));
+        assertFalse(cache.isCached(builds.get(11).getId(), buildModels));
+
+        Files.delete(directory.resolve("index"));
+        final var withoutLog = new BuildCache(directory);
+        assertTrue(withoutLog.isCached(builds.get(10).getId(), buildModels));
+    }
+
+    @Test
+    void givenBatchWithFailingWrite_thenOtherBuildsAreWrittenAndIndexed() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var cache = new BuildCache(directory);
+        final var batch = new ArrayList<CachedBuild>();
+        builds.subList(0, 10).forEach(it -> batch.add(new CachedBuild(buildModels, it)));
+        batch.add(5, new CachedBuild(buildModels, Build.from(new ApiBuild().id("x").availableAt(0L).buildToolType("gradle"))));
+        final var failures = new ArrayList<RuntimeException>();
+
+        cache.writeAll(batch, failures::add);
+
+        assertEquals(1, failures.size());
+        assertEquals(10, Files.readAllLines(directory.resolve("index")).size());
+        assertEquals(10, new BuildCache(directory).index().size());
+        assertTrue(new BuildCache(directory).isCached(builds.get(9).getId(), buildModels));
+    }
+
+    @Test
+    void givenUnwritableIndexLog_thenCacheWriterSkipsIndexingWithoutHanging() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var cache = new BuildCache(directory);
+        cache.index();
+        Files.createDirectory(directory.resolve("index"));
+
+        try (var writer = new CacheWriter(cache, 2)) {
+            builds.subList(0, 10).forEach(it -> writer.submit(new CachedBuild(buildModels, it)));
+            writer.flush();
+            builds.subList(10, 20).forEach(it -> writer.submit(new CachedBuild(buildModels, it)));
+            writer.flush();
+        }
+
+        assertTrue(cache.read(builds.get(19).getId()).isPresent());
+    }
+
+    @Test
+    void givenEntriesCachedWithoutNamespace_whenMovedIntoNamespace_thenReadFromNamespace() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var legacy = new BuildCache(directory);
+        builds.subList(0, 10).forEach(it -> legacy.write(new CachedBuild(buildModels, it)));
+        legacy.namespace("other.example.com").write(new CachedBuild(buildModels, builds.get(10)));
+
+        legacy.moveEntriesInto("example.com");
+        final var cache = new BuildCache(directory).namespace("example.com");
+
+        assertEquals(10, cache.index().size());
+        assertTrue(cache.isCached(builds.getFirst().getId(), buildModels));
+        assertTrue(cache.read(builds.getFirst().getId()).isPresent());
+        assertEquals(0, new BuildCache(directory).index().size());
+        assertTrue(new BuildCache(directory).namespace("other.example.com").read(builds.get(10).getId()).isPresent());
+    }
+
+    @Test
+    void givenRetentionBounds_thenOldestBuildsAreEvictedFirst() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var cache = new BuildCache(directory, CacheFormat.BINARY);
+        final var sorted = builds.stream().sorted(comparingLong(Build::getAvailableAt)).toList();
+        sorted.forEach(it -> cache.write(new CachedBuild(buildModels, it)));
+        final var now = Instant.ofEpochMilli(sorted.getLast().getAvailableAt());
+        final var maxAge = Duration.ofMillis(sorted.getLast().getAvailableAt() - sorted.get(10).getAvailableAt());
+
+        final var byAge = cache.evict(new CacheRetention(maxAge, null), now);
+
+        assertEquals(10, byAge.evictedEntries());
+        assertFalse(cache.isCached(sorted.get(9).getId(), buildModels));
+        assertTrue(cache.read(sorted.get(9).getId()).isEmpty());
+        assertTrue(cache.isCached(sorted.get(10).getId(), buildModels));
+
+        Files.delete(directory.resolve("index"));
+        final var reopened = new BuildCache(directory, CacheFormat.BINARY);
+        final var bySize = reopened.maintain(new CacheRetention(null, byAge.size() / 2), now);
+
+        assertTrue(bySize.evictedEntries() > 0);
+        assertTrue(bySize.size() <= byAge.size() / 2);
+        assertEquals(builds.size() - 10 - bySize.evictedEntries(), bySize.entries());
+        assertFalse(reopened.isCached(sorted.get(10).getId(), buildModels));
+        assertTrue(reopened.isCached(sorted.getLast().getId(), buildModels));
+    }
+
+    @Test
+    void givenLargeAndTruncatedEntries_thenLargeOnesAreReadAndTruncatedOnesAreRemoved() throws IOException {
+        final var directory = Files.createTempDirectory("cache");
+        final var large = builds.getFirst();
+        new BuildCache(directory).write(new CachedBuild(buildModels, large));
+        final var largeFile = directory.resolve(large.getId().substring(0, 2)).resolve(large.getId() + ".json");
+        Files.writeString(largeFile, Files.readString(largeFile).replaceFirst("\\{", "{" + " ".repeat((int) BuildCache.mapThreshold)));
+        final var truncated = builds.getLast();
+        new BuildCache(directory, CacheFormat.COMPRESSED).write(new CachedBuild(buildModels, truncated));
+        final var truncatedFile = directory.resolve(truncated.getId().substring(0, 2)).resolve(truncated.getId() + ".bin");
+        final var bytes = Files.readAllBytes(truncatedFile);
+        Files.write(truncatedFile, Arrays.copyOf(bytes, bytes.length - 8));
+
+        final var cache = new BuildCache(directory, CacheFormat.COMPRESSED);
+
+        assertEquals(large.getAvailableAt(), cache.read(large.getId()).orElseThrow().build().getAvailableAt());
+        assertTrue(cache.read(truncated.getId()).isEmpty());
+        assertFalse(Files.exists(truncatedFile));
+    }
+
+}
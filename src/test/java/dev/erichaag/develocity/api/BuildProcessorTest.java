@@ -0,0 +1,241 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildProcessorListener.BuildBatchEvent;
+import dev.erichaag.develocity.api.BuildProcessorListener.Provenance;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BuildProcessorTest {
+
+    private static final List<ApiBuild> builds = SyntheticBuildHistory.generateList(SyntheticBuildHistory.Profile.of(500, 10, 5));
+
+    @Test
+    void givenAsynchronousDispatch_thenListenersReceiveAllBuildsInOrderBeforeProcessingReturns() throws IOException {
+        final var processor = new BuildProcessor(new InMemoryDevelocityClient(builds), 100, new BuildCache(Files.createTempDirectory("cache")));
+        final var received = new ArrayList<String>();
+        final var finished = new ArrayList<String>();
+        processor.dispatchAsynchronously(8);
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public void onBuild(Build build) {
+                Thread.yield();
+                received.add(build.getId());
+            }
+
+            @Override
+            public void onProcessingFinished(ProcessingFinishedEvent event) {
+                finished.add(Thread.currentThread().getName());
+            }
+        });
+
+        processor.process(Instant.EPOCH.atZone(UTC));
+
+        assertEquals(builds.reversed().stream().map(ApiBuild::getId).toList(), received);
+        assertTrue(finished.getFirst().startsWith("listener-"));
+    }
+
+    @Test
+    void givenBatchListener_thenBuildsArriveInBatchesWithProvenance() throws IOException {
+        final var cache = new BuildCache(Files.createTempDirectory("cache"));
+        final var client = new InMemoryDevelocityClient(builds);
+        new BuildProcessor(client, 100, cache).process(Instant.EPOCH.atZone(UTC));
+        final var cachedBuilds = builds.size();
+        final var newBuilds = SyntheticBuildHistory.generate(SyntheticBuildHistory.Profile.of(550, 10, 5)).skip(cachedBuilds).toList();
+        final var allBuilds = new ArrayList<>(builds);
+        allBuilds.addAll(newBuilds);
+
+        final var processor = new BuildProcessor(new InMemoryDevelocityClient(allBuilds), 100, cache);
+        final var batches = new ArrayList<BuildBatchEvent>();
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public boolean receivesBuildBatches() {
+                return true;
+            }
+
+            @Override
+            public void onBuildBatch(BuildBatchEvent event) {
+                batches.add(event);
+            }
+
+            @Override
+            public void onBuild(Build build) {
+                throw new AssertionError("Unexpected per-build callback");
+            }
+        });
+        processor.process(Instant.EPOCH.atZone(UTC));
+
+        assertEquals(List.of(Provenance.FETCHED, Provenance.CACHED), batches.stream().map(BuildBatchEvent::provenance).distinct().toList());
+        assertEquals(newBuilds.size(), batches.getFirst().builds().size());
+        assertEquals(allBuilds.size(), batches.stream().mapToInt(it -> it.builds().size()).sum());
+    }
+
+    @Test
+    void givenListenerInterestedInGradleBuilds_thenOtherBuildsAreNotCachedOrDispatched() throws IOException {
+        final var cache = new BuildCache(Files.createTempDirectory("cache"));
+        final var processor = new BuildProcessor(new InMemoryDevelocityClient(builds), 7, cache);
+        final var gradleBuilds = new ArrayList<String>();
+        final var observedBuilds = new ArrayList<String>();
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public Set<BuildModel> getRequiredBuildModels() {
+                return Set.of(BuildModel.GRADLE_ATTRIBUTES);
+            }
+
+            @Override
+            public Set<Class<? extends Build>> getBuildTypes() {
+                return Set.of(GradleBuild.class);
+            }
+
+            @Override
+            public void onGradleBuild(GradleBuild build) {
+                gradleBuilds.add(build.getId());
+            }
+        });
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public void onBuild(Build build) {
+                observedBuilds.add(build.getId());
+            }
+        });
+
+        processor.process(Instant.EPOCH.atZone(UTC));
+
+        final var expected = builds.reversed().stream().filter(it -> it.getBuildToolType().equals("gradle")).map(ApiBuild::getId).toList();
+        assertEquals(expected, gradleBuilds);
+        assertEquals(expected, observedBuilds);
+        builds.stream().filter(it -> it.getBuildToolType().equals("maven")).forEach(it -> assertTrue(cache.read(it.getId()).isEmpty()));
+        builds.stream().filter(it -> it.getBuildToolType().equals("gradle")).forEach(it -> assertTrue(cache.read(it.getId()).isPresent()));
+    }
+
+    @Test
+    void givenCacheReadAhead_thenCachedAndFetchedBuildsArriveInDiscoveryOrder() throws IOException {
+        final var cache = new BuildCache(Files.createTempDirectory("cache"), CacheFormat.COMPRESSED);
+        new BuildProcessor(new InMemoryDevelocityClient(builds.subList(0, 300)), 100, cache).process(Instant.EPOCH.atZone(UTC));
+
+        final var processor = new BuildProcessor(new InMemoryDevelocityClient(builds), 100, cache);
+        final var received = new ArrayList<String>();
+        final var cached = new ArrayList<String>();
+        processor.readCacheAhead(16);
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public void onBuild(Build build) {
+                received.add(build.getId());
+            }
+
+            @Override
+            public void onCachedBuild(CachedBuildEvent event) {
+                cached.add(event.build().getId());
+            }
+        });
+        processor.process(Instant.EPOCH.atZone(UTC));
+
+        assertEquals(builds.reversed().stream().map(ApiBuild::getId).toList(), received);
+        assertEquals(builds.subList(0, 300).reversed().stream().map(ApiBuild::getId).toList(), cached);
+    }
+
+    @Test
+    void givenWriteBehind_thenAllFetchedBuildsAreCachedWhenProcessingFinishes() throws IOException {
+        final var cache = new BuildCache(Files.createTempDirectory("cache"));
+        final var processor = new BuildProcessor(new InMemoryDevelocityClient(builds), 100, cache);
+        final var cachedOnFinish = new ArrayList<Boolean>();
+        processor.writeCacheBehind(4);
+        processor.registerListener(new BuildProcessorListener() {
+            @Override
+            public void onProcessingFinished(ProcessingFinishedEvent event) {
+                cachedOnFinish.add(builds.stream().allMatch(it -> cache.read(it.getId()).isPresent()));
+            }
+        });
+
+        processor.process(Instant.EPOCH.atZone(UTC));
+
+        assertEquals(List.of(true), cachedOnFinish);
+    }
+
+    @Test
+    void givenInterruptedRun_whenResumed_thenRemainingBuildsAreDispatchedWithoutDiscoveringAgain() throws IOException {
+        final var cache = new BuildCache(Files.createTempDirectory("cache"));
+        final var checkpoints = Files.createTempDirectory("checkpoints");
+        final var interrupted = new BuildProcessor(new InMemoryDevelocityClient(builds), 100, cache);
+        interrupted.checkpoint(checkpoints, Duration.ZERO, false);
+        interrupted.registerListener(new ReceivingListener(250));
+        assertThrows(IllegalStateException.class, () -> interrupted.process(Instant.EPOCH.atZone(UTC)));
+
+        final var discoveryRequests = new AtomicInteger();
+        final var client = new InMemoryDevelocityClient(builds);
+        final var resumed = new BuildProcessor(new DevelocityClient() {
+            @Override
+            public Build getBuild(String id, BuildModel... buildModels) {
+                return client.getBuild(id, buildModels);
+            }
+
+            @Override
+            public List<Build> getBuilds(String query, Integer maxBuilds, String fromBuild, BuildModel... buildModels) {
+                if (buildModels.length == 0) discoveryRequests.incrementAndGet();
+                return client.getBuilds(query, maxBuilds, fromBuild, buildModels);
+            }
+        }, 100, cache);
+        final var listener = new ReceivingListener(Integer.MAX_VALUE);
+        resumed.checkpoint(checkpoints, Duration.ZERO, true);
+        resumed.registerListener(listener);
+        resumed.process(Instant.EPOCH.atZone(UTC));
+
+        assertEquals(0, discoveryRequests.get());
+        assertEquals(builds.reversed().stream().map(ApiBuild::getId).toList(), listener.received);
+        try (var files = Files.list(checkpoints)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static final class ReceivingListener implements BuildProcessorListener {
+
+        private final List<String> received = new ArrayList<>();
+        private final int failAfter;
+
+        private int saved;
+
+        private ReceivingListener(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public Set<BuildModel> getRequiredBuildModels() {
+            return Set.of(BuildModel.GRADLE_ATTRIBUTES, BuildModel.MAVEN_ATTRIBUTES);
+        }
+
+        @Override
+        public void onBuild(Build build) {
+            if (received.size() == failAfter) throw new IllegalStateException("Interrupted");
+            received.add(build.getId());
+        }
+
+        @Override
+        public byte[] saveState() {
+            final var unsaved = received.subList(saved, received.size());
+            if (unsaved.isEmpty()) return null;
+            saved = received.size();
+            return String.join(",", unsaved).getBytes(UTF_8);
+        }
+
+        @Override
+        public void restoreState(byte[] state) {
+            received.addAll(List.of(new String(state, UTF_8).split(",")));
+            saved = received.size();
+        }
+
+    }
+
+}
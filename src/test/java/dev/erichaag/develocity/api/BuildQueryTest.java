@@ -0,0 +1,27 @@
+package dev.erichaag.develocity.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class BuildQueryTest {
+
+    @Test
+    void givenBlankQueries_thenTheyAreLeftOut() {
+        assertNull(BuildQuery.and(null, " "));
+        assertEquals("tag:CI", BuildQuery.and(null, "tag:CI"));
+    }
+
+    @Test
+    void givenMultipleQueries_thenEachIsParenthesized() {
+        final var query = BuildQuery.and(BuildQuery.anyOf("tag", List.of("CI", "LOCAL")), "project:\"my project\"");
+
+        assertEquals("((tag:CI) or (tag:LOCAL)) and (project:\"my project\")", query);
+        assertEquals("(user:a) or (user:\"b c\")", BuildQuery.anyOf("user", List.of("a", "b c")));
+        assertEquals("(tag:CI) or (not (project:a*))", BuildQuery.or("tag:CI", BuildQuery.not("project:a*")));
+    }
+
+}
@@ -0,0 +1,64 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.BuildCache.CachedBuild;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.MAVEN_ATTRIBUTES;
+import static java.util.Comparator.comparingLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class CacheBundleTest {
+
+    private static final Set<BuildModel> buildModels = Set.of(GRADLE_ATTRIBUTES, MAVEN_ATTRIBUTES);
+    private static final List<Build> builds = SyntheticBuildHistory.generate(SyntheticBuildHistory.Profile.of(50, 5, 5))
+            .map(Build::from)
+            .sorted(comparingLong(Build::getAvailableAt))
+            .toList();
+
+    @Test
+    void givenExportedRange_thenImportedCacheHoldsBuildsOfThatRange() throws IOException {
+        final var source = new BuildCache(Files.createTempDirectory("cache"), CacheFormat.COMPRESSED);
+        builds.forEach(it -> source.write(new CachedBuild(buildModels, it)));
+        final var bundle = Files.createTempDirectory("bundle").resolve("cache.zip");
+        final var from = Instant.ofEpochMilli(builds.get(20).getAvailableAt());
+
+        final var exported = CacheBundle.export(Map.of("default", source), bundle, from, Instant.ofEpochMilli(Long.MAX_VALUE));
+        final var target = new BuildCache(Files.createTempDirectory("cache"));
+        final var imported = CacheBundle.importInto(Map.of("default", target), bundle);
+
+        assertEquals(30, exported);
+        assertEquals(30, imported);
+        assertFalse(target.isCached(builds.get(19).getId(), buildModels));
+        assertTrue(target.isCached(builds.get(20).getId(), buildModels));
+        assertEquals(builds.getLast().getAvailableAt(), target.read(builds.getLast().getId()).orElseThrow().build().getAvailableAt());
+        assertEquals(30, new BuildCache(target.getDirectory()).index().size());
+    }
+
+    @Test
+    void givenTruncatedBundle_thenNothingIsImported() throws IOException {
+        final var source = new BuildCache(Files.createTempDirectory("cache"));
+        builds.forEach(it -> source.write(new CachedBuild(buildModels, it)));
+        final var bundle = Files.createTempDirectory("bundle").resolve("cache.zip");
+        CacheBundle.export(Map.of("default", source), bundle, Instant.EPOCH, Instant.ofEpochMilli(Long.MAX_VALUE));
+        final var bytes = Files.readAllBytes(bundle);
+        Files.write(bundle, Arrays.copyOf(bytes, bytes.length / 2));
+
+        final var target = new BuildCache(Files.createTempDirectory("cache"));
+
+        assertThrows(RuntimeException.class, () -> CacheBundle.importInto(Map.of("default", target), bundle));
+        assertEquals(0, new BuildCache(target.getDirectory()).index().size());
+    }
+
+}
@@ -0,0 +1,154 @@
+package dev.erichaag.develocity.api;
+
+import dev.erichaag.develocity.api.HttpClientDevelocityClient.RequestType;
+import dev.erichaag.develocity.api.StandInServer.Fault;
+import dev.erichaag.develocity.api.StandInServer.Faults;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static java.time.Duration.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class HttpClientDevelocityClientTest {
+
+    private static final List<ApiBuild> builds = IntStream.range(0, 250)
+            .mapToObj(it -> new ApiBuild()
+                    .id("build" + it)
+                    .availableAt(1000L + it)
+                    .buildToolType("gradle")
+                    .models(new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(new GradleAttributes().rootProjectName("project" + it)))))
+            .toList();
+
+    @Test
+    void givenManyBuilds_whenPaginatingInReverse_thenAllBuildsAreReturnedNewestFirst() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl());
+            final var discovered = new ArrayList<Build>();
+            List<Build> page;
+            do {
+                page = client.getBuilds(null, 100, discovered.isEmpty() ? null : discovered.getLast().getId());
+                discovered.addAll(page);
+            } while (!page.isEmpty());
+
+            assertEquals(250, discovered.size());
+            assertEquals("build249", discovered.getFirst().getId());
+            assertEquals("build0", discovered.getLast().getId());
+        }
+    }
+
+    @Test
+    void givenQuery_thenOnlyMatchingBuildsAreTransferred() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl());
+            final var all = client.getBuilds(null, 1000, null, GRADLE_ATTRIBUTES);
+            final var allBytes = client.getMetrics().getReceivedBytes();
+            final var matching = new ArrayList<Build>();
+            List<Build> page;
+            do {
+                page = client.getBuilds("project:project1*", 50, matching.isEmpty() ? null : matching.getLast().getId(), GRADLE_ATTRIBUTES);
+                matching.addAll(page);
+            } while (!page.isEmpty());
+
+            assertEquals(250, all.size());
+            assertEquals(111, matching.size());
+            assertTrue(matching.stream().allMatch(it -> ((GradleBuild) it).getAttributes().orElseThrow().getRootProjectName().startsWith("project1")));
+            assertTrue(client.getMetrics().getReceivedBytes() - allBytes < allBytes / 2);
+        }
+    }
+
+    @Test
+    void givenModelsAreNotRequested_thenModelsAreNotReturned() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl());
+
+            assertTrue(((GradleBuild) client.getBuild("build7")).getAttributes().isEmpty());
+            assertEquals("project7", ((GradleBuild) client.getBuild("build7", GRADLE_ATTRIBUTES)).getAttributes().orElseThrow().getRootProjectName());
+        }
+    }
+
+    @Test
+    void givenSlowResponse_whenHedging_thenFasterHedgedResponseIsUsed() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl(), new RequestHedging(50, 100));
+            warmUp(client);
+            server.injectFaults(new Fault(Duration.ofSeconds(5), false, false));
+
+            final var startedOn = System.nanoTime();
+            assertEquals("build7", client.getBuild("build7").getId());
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - startedOn).compareTo(Duration.ofSeconds(5)) < 0);
+            assertEquals(1, client.getHedgedRequests());
+            assertEquals(0, client.getLatencies(RequestType.DISCOVERY).size());
+        }
+    }
+
+    @Test
+    void givenExhaustedBudget_whenHedging_thenSlowResponseIsAwaited() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl(), new RequestHedging(50, 0));
+            warmUp(client);
+            server.injectFaults(new Fault(Duration.ofMillis(300), false, false));
+
+            assertEquals("build7", client.getBuild("build7").getId());
+            assertEquals(0, client.getHedgedRequests());
+        }
+    }
+
+    @Test
+    void givenFastErrorFromHedge_whenHedging_thenSlowerSuccessfulResponseIsUsed() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl(), new RequestHedging(50, 100));
+            warmUp(client);
+            server.injectFaults(new Fault(Duration.ofMillis(500), false, false), new Fault(ZERO, false, true));
+
+            assertEquals("build7", client.getBuild("build7").getId());
+            assertEquals(1, client.getHedgedRequests());
+            assertEquals(0, client.getMetrics().getFailedRequests());
+        }
+    }
+
+    @Test
+    void givenSlowResponse_whenHedging_thenLatencyOfPrimaryIsRecorded() throws InterruptedException {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl(), new RequestHedging(50, 100));
+            warmUp(client);
+            server.injectFaults(new Fault(Duration.ofMillis(500), false, false));
+
+            assertEquals("build7", client.getBuild("build7").getId());
+            final var latencies = client.getLatencies(RequestType.BUILD);
+            final var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (latencies.size() < 21 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(1, client.getHedgedRequests());
+            assertEquals(21, latencies.size());
+            assertTrue(latencies.percentile(100).orElseThrow().compareTo(Duration.ofMillis(500)) >= 0);
+        }
+    }
+
+    @Test
+    void givenErrorResponse_thenItsLatencyIsNotRecorded() {
+        try (var server = StandInServer.start(0, builds, Faults.none())) {
+            final var client = new HttpClientDevelocityClient(server.getServerUrl());
+            server.injectFaults(new Fault(ZERO, false, true));
+
+            assertThrows(RuntimeException.class, () -> client.getBuild("build7"));
+            assertEquals(0, client.getLatencies(RequestType.BUILD).size());
+            assertEquals("build7", client.getBuild("build7").getId());
+            assertEquals(1, client.getLatencies(RequestType.BUILD).size());
+        }
+    }
+
+    private static void warmUp(HttpClientDevelocityClient client) {
+        IntStream.range(0, 20).forEach(it -> client.getBuild("build" + it));
+    }
+
+}
@@ -0,0 +1,32 @@
+package dev.erichaag.develocity.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class LatencyTrackerTest {
+
+    @Test
+    void givenTooFewLatencies_thenNoPercentile() {
+        final var latencies = new LatencyTracker();
+        IntStream.range(0, 19).forEach(it -> latencies.record(Duration.ofMillis(it)));
+
+        assertTrue(latencies.percentile(50).isEmpty());
+    }
+
+    @Test
+    void givenFullWindow_thenPercentileOfMostRecentLatencies() {
+        final var latencies = new LatencyTracker(100);
+        IntStream.range(0, 100).forEach(it -> latencies.record(Duration.ofSeconds(10)));
+        IntStream.rangeClosed(1, 100).forEach(it -> latencies.record(Duration.ofMillis(it)));
+
+        assertEquals(100, latencies.size());
+        assertEquals(Duration.ofMillis(95), latencies.percentile(95).orElseThrow());
+        assertEquals(Duration.ofMillis(100), latencies.percentile(99.9).orElseThrow());
+    }
+
+}
@@ -0,0 +1,80 @@
+package dev.erichaag.develocity.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_ATTRIBUTES;
+import static dev.erichaag.develocity.api.BuildModel.GRADLE_BUILD_CACHE_PERFORMANCE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class LazyApiBuildTest {
+
+    private static final String gradleBuild = """
+            {"id":"abc","availableAt":1000,"buildToolType":"gradle","buildToolVersion":"8.8","buildAgentVersion":"3.17",\
+            "models":{"gradleAttributes":{"model":{"id":"abc","rootProjectName":"myProject","hasFailed":true}},\
+            "gradleBuildCachePerformance":{"model":{"id":"abc"}}}}""";
+
+    private static final String mavenBuild = """
+            {"id":"def","availableAt":2000,"buildToolType":"maven","buildToolVersion":"3.9.6","buildAgentVersion":"1.21"}""";
+
+    @Test
+    void givenRawBuild_whenReadingHeader_thenModelsAreNotDecoded() {
+        final var build = LazyApiBuild.of(gradleBuild.getBytes(UTF_8));
+
+        assertEquals("abc", build.header().getId());
+        assertEquals(1000, build.header().getAvailableAt().longValue());
+        assertNull(build.header().getModels());
+    }
+
+    @Test
+    void givenRawBuild_whenReadingModel_thenOnlyThatModelIsDecoded() {
+        final var build = (GradleBuild) Build.fromJson(gradleBuild.getBytes(UTF_8));
+
+        assertEquals("myProject", build.getAttributes().orElseThrow().getRootProjectName());
+        assertNull(build.lazyBuild().header().getModels().getGradleBuildCachePerformance());
+        assertTrue(build.getBuildCachePerformance().isPresent());
+        assertNotNull(build.lazyBuild().header().getModels().getGradleAttributes());
+    }
+
+    @Test
+    void givenRawBuilds_whenSplittingArray_thenEachBuildRetainsItsOwnJson() throws IOException {
+        final var builds = LazyApiBuild.ofArray(("[" + gradleBuild + "," + mavenBuild + "]").getBytes(UTF_8));
+
+        assertEquals(2, builds.size());
+        assertEquals(GradleBuild.class, builds.get(0).toBuild().getClass());
+        assertEquals(MavenBuild.class, builds.get(1).toBuild().getClass());
+        final var outputStream = new ByteArrayOutputStream();
+        builds.get(1).writeTo(outputStream);
+        assertEquals(mavenBuild, outputStream.toString(UTF_8));
+    }
+
+    @Test
+    void givenRawBuilds_whenComparingAndPrinting_thenModelsAreNotDecoded() {
+        final var build = (GradleBuild) Build.fromJson(gradleBuild.getBytes(UTF_8));
+        final var sameBuild = (GradleBuild) Build.fromJson(gradleBuild.getBytes(UTF_8));
+
+        assertEquals(build, sameBuild);
+        assertEquals(build.hashCode(), sameBuild.hashCode());
+        assertEquals("GradleBuild{id=abc, availableAt=1000}", build.toString());
+        assertNull(build.lazyBuild().header().getModels());
+    }
+
+    @Test
+    void givenBoundBuild_whenReadingModel_thenBoundModelIsReturned() {
+        final var apiBuild = new ApiBuild()
+                .id("ghi")
+                .buildToolType("gradle")
+                .models(new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(new GradleAttributes().rootProjectName("bound"))));
+        final var build = LazyApiBuild.of(apiBuild);
+
+        assertEquals("bound", build.models(GRADLE_ATTRIBUTES).orElseThrow().getGradleAttributes().getModel().getRootProjectName());
+        assertNull(build.models(GRADLE_BUILD_CACHE_PERFORMANCE).orElseThrow().getGradleBuildCachePerformance());
+    }
+
+}
@@ -0,0 +1,26 @@
+package dev.erichaag.develocity.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class RequestMetricsTest {
+
+    @Test
+    void givenRequests_thenLatenciesAreCountedInTheirBuckets() {
+        final var metrics = new RequestMetrics();
+
+        metrics.recordRequest(Duration.ofMillis(5));
+        metrics.recordRequest(Duration.ofMillis(10));
+        metrics.recordRequest(Duration.ofMillis(11));
+        metrics.recordRequest(Duration.ofMinutes(1));
+
+        assertArrayEquals(new long[]{2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}, metrics.getBucketCounts());
+        assertEquals(4, metrics.getRequests());
+        assertEquals(Duration.ofMillis(60_026), metrics.getTotalLatency());
+    }
+
+}
@@ -0,0 +1,118 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SyntheticBuildHistoryTest {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final Profile profile = Profile.of(50_000, 500, 50);
+
+    @Test
+    void givenSameSeed_thenSameHistory() {
+        final var small = Profile.of(1_000, 100, 10);
+
+        assertEquals(toJson(SyntheticBuildHistory.generateList(small)), toJson(SyntheticBuildHistory.generateList(small)));
+        assertNotEquals(toJson(SyntheticBuildHistory.generateList(small)), toJson(SyntheticBuildHistory.generateList(small.withSeed(7))));
+    }
+
+    @Test
+    void givenProfile_thenHistoryFollowsItsDistribution() {
+        final var builds = SyntheticBuildHistory.generateList(profile);
+
+        assertEquals(profile.builds(), builds.size());
+        assertEquals(profile.builds(), builds.stream().map(ApiBuild::getId).distinct().count());
+        for (int i = 1; i < builds.size(); i++) {
+            assertTrue(builds.get(i - 1).getAvailableAt() < builds.get(i).getAvailableAt());
+        }
+        assertEquals(profile.ciShare(), share(builds, it -> it.tags().contains("CI")), 0.02);
+        assertEquals(profile.gradleShare(), share(builds, Attributes::isGradle), 0.02);
+
+        final var buildsPerProject = builds.stream().map(it -> attributes(it).project()).collect(groupingBy(identity(), counting()));
+        final var mostBuilds = buildsPerProject.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        final var fewestBuilds = buildsPerProject.values().stream().mapToLong(Long::longValue).min().orElseThrow();
+        assertTrue(mostBuilds > 10 * fewestBuilds, "projects are skewed");
+
+        final var failureStatistics = failureStatistics(builds);
+        assertEquals(profile.failureRate(), failureStatistics.failureRate(), 0.01);
+        assertEquals(profile.meanFailureStreak(), failureStatistics.meanFailureStreak(), 0.3);
+    }
+
+    // works out the chance to start and to keep failing from consecutive builds of the same incident key, as many keys
+    // only have a few builds and their streaks would be cut off by the end of the history; the branch is not recorded
+    // for a few builds, which mixes up their keys, hence the tolerances
+    private static FailureStatistics failureStatistics(List<ApiBuild> builds) {
+        final var lastFailed = new HashMap<String, Boolean>();
+        var starts = 0;
+        var startedFailing = 0;
+        var continuations = 0;
+        var keptFailing = 0;
+        for (var build : builds) {
+            final var attributes = attributes(build);
+            if (lastFailed.getOrDefault(attributes.key(), false)) {
+                continuations++;
+                if (attributes.hasFailed()) keptFailing++;
+            } else {
+                starts++;
+                if (attributes.hasFailed()) startedFailing++;
+            }
+            lastFailed.put(attributes.key(), attributes.hasFailed());
+        }
+        return new FailureStatistics((double) startedFailing / starts, 1 / (1 - (double) keptFailing / continuations));
+    }
+
+    private static String toJson(List<ApiBuild> builds) {
+        try {
+            return objectMapper.writeValueAsString(builds);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double share(List<ApiBuild> builds, Predicate<Attributes> predicate) {
+        return (double) builds.stream().map(SyntheticBuildHistoryTest::attributes).filter(predicate).count() / builds.size();
+    }
+
+    private static Attributes attributes(ApiBuild build) {
+        final var models = build.getModels();
+        if (models.getGradleAttributes() != null) {
+            final var attributes = models.getGradleAttributes().getModel();
+            return new Attributes(true, attributes.getRootProjectName(), attributes.getEnvironment().getUsername(), attributes.getRequestedTasks(), attributes.getTags(), branch(attributes.getValues()), attributes.getHasFailed());
+        }
+        final var attributes = models.getMavenAttributes().getModel();
+        return new Attributes(false, attributes.getTopLevelProjectName(), attributes.getEnvironment().getUsername(), attributes.getRequestedGoals(), attributes.getTags(), branch(attributes.getValues()), attributes.getHasFailed());
+    }
+
+    private static String branch(List<BuildAttributesValue> values) {
+        return values.stream().filter(it -> it.getName().equals("Git branch")).map(BuildAttributesValue::getValue).findFirst().orElse("");
+    }
+
+    private record FailureStatistics(double failureRate, double meanFailureStreak) {
+    }
+
+    private record Attributes(boolean isGradle, String project, String username, List<String> requested, List<String> tags, String branch, boolean hasFailed) {
+
+        private String key() {
+            return tags.contains("CI")
+                    ? "ci," + project + "," + requested + "," + branch
+                    : "local," + username + "," + project + "," + requested + "," + new HashSet<>(tags);
+        }
+
+    }
+
+}
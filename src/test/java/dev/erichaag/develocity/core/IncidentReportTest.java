@@ -0,0 +1,181 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.BuildAttributesValue;
+import dev.erichaag.develocity.core.IncidentTracker.BuildView;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class IncidentReportTest {
+
+    private final IncidentTracker incidentTracker = new IncidentTracker();
+
+    @Test
+    void givenTableForWindow_thenOnlyIncidentsStartedWithinWindowAreIncluded() {
+        build(1000, true);
+        build(2000, false);
+        build(5000, true);
+        build(6000, false);
+
+        final var since = Instant.ofEpochSecond(4000).atZone(UTC);
+        final var until = Instant.ofEpochSecond(10_000).atZone(UTC);
+        final var report = IncidentReport.forTable(List.of(incidentTracker), since, until, null, "ci_overall");
+
+        assertEquals(1, report.incidentCount());
+        assertEquals("1", report.ciOverall().lines().toList().get(1).split(",")[0]);
+        assertNull(report.overall());
+        assertEquals(List.of("ci_overall"), List.copyOf(report.tables().keySet()));
+    }
+
+    @Test
+    void givenTrackersForTwoServers_thenPerServerTablesSplitIncidentsByServer() {
+        final var otherTracker = new IncidentTracker("other.example.com");
+        build(1000, true);
+        build(2000, false);
+        build(otherTracker, 1000, true);
+        build(otherTracker, 3000, false);
+
+        final var since = Instant.ofEpochSecond(0).atZone(UTC);
+        final var until = Instant.ofEpochSecond(10_000).atZone(UTC);
+        final var report = new IncidentReport(List.of(incidentTracker, otherTracker), since, until, null);
+
+        assertEquals(2, report.incidentCount());
+        final var rows = report.tables().get("ci_per_server").lines().skip(1).map(it -> it.split(",")[0]).sorted().toList();
+        assertEquals(List.of("default", "other.example.com"), rows);
+        assertNull(new IncidentReport(incidentTracker, since, until, null).tables().get("ci_per_server"));
+    }
+
+    @Test
+    void givenSample_thenSampledIncidentsAreExactAndFailuresAreScaled() {
+        final var sampledTracker = new IncidentTracker("default", Shard.all, new Sample(50));
+        for (int i = 0; i < 200; i++) {
+            for (var tracker : List.of(incidentTracker, sampledTracker)) {
+                build(tracker, "project" + i, 1000 + i, true);
+                build(tracker, "project" + i, 2000 + i, false);
+            }
+        }
+
+        final var since = Instant.ofEpochSecond(0).atZone(UTC);
+        final var until = Instant.ofEpochSecond(10_000).atZone(UTC);
+        final var sampled = sampledTracker.getResolvedIncidents();
+        final var report = new IncidentReport(List.of(sampledTracker), since, until, null);
+
+        assertTrue(sampled.size() > 70 && sampled.size() < 130, "sampled " + sampled.size() + " of 200 incidents");
+        assertTrue(incidentTracker.getResolvedIncidents().containsAll(sampled));
+        final var ciOverall = report.ciOverall().lines().toList();
+        assertEquals("Failures,Mean,Mean CI low,Mean CI high", String.join(",", List.of(ciOverall.getFirst().split(",")).subList(0, 4)));
+        assertEquals(String.valueOf(sampled.size() * 2), ciOverall.get(1).split(",")[0]);
+    }
+
+    @Test
+    void givenSampleOfKeysWithAlikeIncidents_thenMeanIntervalAllowsForPickingWholeKeys() {
+        final var sampledTracker = new IncidentTracker("default", Shard.all, new Sample(50));
+        for (int i = 0; i < 60; i++) {
+            for (int j = 0; j < 5; j++) {
+                final var failedAt = 1000 + j * 100_000;
+                build(sampledTracker, "project" + i, failedAt, true);
+                build(sampledTracker, "project" + i, failedAt + 100 + (i + 1) * 60, false);
+            }
+        }
+
+        final var since = Instant.ofEpochSecond(0).atZone(UTC);
+        final var until = Instant.ofEpochSecond(1_000_000).atZone(UTC);
+        final var row = new IncidentReport(List.of(sampledTracker), since, until, null).ciOverall().lines().toList().get(1).split(",");
+        final var margin = (seconds(row[3]) - seconds(row[2])) / 2.0;
+
+        final var durations = sampledTracker.getResolvedIncidents().stream().mapToDouble(it -> it.duration().toSeconds()).toArray();
+        final var mean = Arrays.stream(durations).average().orElseThrow();
+        final var variance = Arrays.stream(durations).map(it -> (it - mean) * (it - mean)).sum() / (durations.length - 1);
+        final var marginOfSingleIncidents = 1.96 * Math.sqrt(0.5 * variance / durations.length);
+        assertTrue(margin > 1.5 * marginOfSingleIncidents, "margin " + margin + " against " + marginOfSingleIncidents + " for single incidents");
+    }
+
+    @Test
+    void givenProvisionalIncidents_thenEachReportHasTheTablesOfAFullReport() {
+        final var random = new Random(42);
+        final var buildViews = IntStream.range(0, 2000).mapToObj(it -> new BuildView(
+                "user" + random.nextInt(5),
+                "project" + random.nextInt(20),
+                List.of("build"),
+                List.of(it % 3 == 0 ? "LOCAL" : "CI"),
+                List.of(new BuildAttributesValue().name("Git branch").value("main")),
+                random.nextInt(4) == 0,
+                Instant.ofEpochSecond(1000 + it * 2000L),
+                Duration.ofSeconds(100))).toList();
+        final var since = Instant.ofEpochSecond(0).atZone(UTC);
+
+        for (var excludeAbovePercentile : Arrays.asList(null, 95)) {
+            final var tracker = new IncidentTracker();
+            final var incidents = new ProvisionalIncidents(List.of(tracker), since, excludeAbovePercentile);
+            final var reference = new IncidentTracker();
+            for (int batch = 0; batch < 4; batch++) {
+                buildViews.subList(batch * 500, (batch + 1) * 500).forEach(it -> {
+                    tracker.track(it);
+                    reference.processBuild(it);
+                });
+                // the window grows from days into weeks, which changes the resolution of the trends
+                final var until = Instant.ofEpochSecond(1000 + (batch + 1) * 500 * 2000L).atZone(UTC);
+
+                final var report = incidents.report(until);
+                final var full = new IncidentReport(reference, since, until, excludeAbovePercentile);
+
+                assertEquals(full.incidentCount(), report.incidentCount());
+                assertEquals(sortedRows(full), sortedRows(report));
+            }
+        }
+    }
+
+    // rows with the same number of failures may come in any order
+    private static Map<String, List<String>> sortedRows(IncidentReport report) {
+        return report.tables().entrySet().stream().collect(toMap(Map.Entry::getKey, it -> {
+            final var lines = it.getValue().lines().toList();
+            return Stream.concat(lines.stream().limit(1), lines.stream().skip(1).sorted()).toList();
+        }));
+    }
+
+    private static long seconds(String formatted) {
+        return Arrays.stream(formatted.split(" ")).mapToLong(it -> {
+            final var value = Long.parseLong(it.substring(0, it.length() - 1));
+            return switch (it.charAt(it.length() - 1)) {
+                case 'd' -> value * 86_400;
+                case 'h' -> value * 3_600;
+                case 'm' -> value * 60;
+                default -> value;
+            };
+        }).sum();
+    }
+
+    private void build(int buildStartTime, boolean hasFailed) {
+        build(incidentTracker, buildStartTime, hasFailed);
+    }
+
+    private static void build(IncidentTracker incidentTracker, int buildStartTime, boolean hasFailed) {
+        build(incidentTracker, "myProject", buildStartTime, hasFailed);
+    }
+
+    private static void build(IncidentTracker incidentTracker, String projectName, int buildStartTime, boolean hasFailed) {
+        incidentTracker.processBuild(new BuildView(
+                "user",
+                projectName,
+                List.of("build"),
+                List.of("CI"),
+                List.of(new BuildAttributesValue().name("Git branch").value("main")),
+                hasFailed,
+                Instant.ofEpochSecond(buildStartTime),
+                Duration.ofSeconds(100)));
+    }
+
+}
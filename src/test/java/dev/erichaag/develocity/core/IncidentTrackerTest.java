@@ -1,6 +1,16 @@
 package dev.erichaag.develocity.core;
 
+import dev.erichaag.develocity.api.ApiBuild;
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.BuildAttributesEnvironment;
 import dev.erichaag.develocity.api.BuildAttributesValue;
+import dev.erichaag.develocity.api.BuildModels;
+import dev.erichaag.develocity.api.BuildModelsGradleAttributes;
+import dev.erichaag.develocity.api.BuildProcessorListener.BuildBatchEvent;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.BuildProcessorListener.Provenance;
+import dev.erichaag.develocity.api.GradleAttributes;
+import dev.erichaag.develocity.api.GradleBuild;
 import dev.erichaag.develocity.core.IncidentTracker.BuildView;
 import org.junit.jupiter.api.Test;
 
@@ -10,8 +20,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public final class IncidentTrackerTest {
 
@@ -64,6 +78,106 @@ public final class IncidentTrackerTest {
         assertEquals(6000, secondIncident().resolvedOn().getEpochSecond());
     }
 
+    @Test
+    void givenFailureAndFixInSeparateRuns_thenSingleIncident() {
+        incidentTracker.onGradleBuild(gradleBuild(2000, true));
+        incidentTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        assertEquals(0, incidentTracker.getResolvedIncidents().size());
+
+        incidentTracker.onGradleBuild(gradleBuild(3000, false));
+        incidentTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        incidents.addAll(incidentTracker.getResolvedIncidents());
+
+        assertEquals(1, incidentCount());
+        assertEquals(2100, firstIncident().startedOn().getEpochSecond());
+        assertEquals(3000, firstIncident().resolvedOn().getEpochSecond());
+    }
+
+    @Test
+    void givenBuildBatch_thenSameIncidentsAsPerBuildCallbacks() {
+        final List<Build> builds = List.of(gradleBuild(4000, false), gradleBuild(3000, true), gradleBuild(2000, false), gradleBuild(1000, true));
+        builds.forEach(it -> incidentTracker.onGradleBuild((GradleBuild) it));
+        incidentTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+
+        final var batchTracker = new IncidentTracker();
+        batchTracker.onBuildBatch(new BuildBatchEvent(Instant.now(), builds, Provenance.FETCHED));
+        batchTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+
+        assertEquals(2, batchTracker.getResolvedIncidents().size());
+        assertEquals(incidentTracker.getResolvedIncidents(), batchTracker.getResolvedIncidents());
+    }
+
+    @Test
+    void givenStateRestoredMidRun_thenSameIncidentsAsUninterruptedRun() {
+        incidentTracker.onGradleBuild(gradleBuild(2000, true));
+        incidentTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        incidentTracker.onGradleBuild(gradleBuild(3000, false));
+
+        final var restored = new IncidentTracker();
+        restored.restoreState(incidentTracker.saveState());
+        restored.onGradleBuild(gradleBuild(4000, true));
+        restored.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        incidents.addAll(restored.getResolvedIncidents());
+
+        assertEquals(1, incidentCount());
+        assertEquals(2100, firstIncident().startedOn().getEpochSecond());
+        assertEquals(3000, firstIncident().resolvedOn().getEpochSecond());
+    }
+
+    @Test
+    void givenSnapshotAndLaterStatesRestoredInOrder_thenSameIncidentsAsUninterruptedRun() {
+        IntStream.range(0, 10).forEach(it -> incidentTracker.onGradleBuild(gradleBuild(2000 + it, true)));
+        final var snapshot = incidentTracker.saveState();
+        assertNull(incidentTracker.saveState());
+        incidentTracker.onGradleBuild(gradleBuild(3000, false));
+        final var later = incidentTracker.saveState();
+
+        final var restored = new IncidentTracker();
+        restored.restoreState(snapshot);
+        restored.restoreState(later);
+        restored.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+        incidents.addAll(restored.getResolvedIncidents());
+
+        assertTrue(later.length < snapshot.length / 5);
+        assertEquals(1, incidentCount());
+        assertEquals(2100, firstIncident().startedOn().getEpochSecond());
+        assertEquals(3000, firstIncident().resolvedOn().getEpochSecond());
+        assertThrows(IllegalStateException.class, () -> new IncidentTracker("default", new Shard(1, 2)).restoreState(snapshot));
+    }
+
+    @Test
+    void givenProvisionalIncidentsMidRun_thenSameIncidentsAsFinishedRun() {
+        incidentTracker.trackProvisionalIncidents();
+        incidentTracker.onGradleBuild(gradleBuild(2000, true));
+        incidentTracker.onGradleBuild(gradleBuild(3000, false));
+        assertEquals(1, incidentTracker.getProvisionalIncidents().size());
+
+        incidentTracker.onGradleBuild(gradleBuild(5000, false));
+        incidentTracker.onGradleBuild(gradleBuild(4000, true));
+        final var provisionalIncidents = incidentTracker.getProvisionalIncidents();
+        incidentTracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now()));
+
+        assertEquals(2, provisionalIncidents.size());
+        assertEquals(incidentTracker.getResolvedIncidents(), provisionalIncidents);
+    }
+
+    private static GradleBuild gradleBuild(int buildStartTime, boolean hasFailed) {
+        final var attributes = new GradleAttributes()
+                .rootProjectName("myProject")
+                .requestedTasks(List.of("build"))
+                .tags(List.of("CI"))
+                .values(List.of(new BuildAttributesValue().name("Git branch").value("feature")))
+                .hasFailed(hasFailed)
+                .buildStartTime(buildStartTime * 1000L)
+                .buildDuration(100_000L)
+                .environment(new BuildAttributesEnvironment().username("user"));
+        return (GradleBuild) Build.from(new ApiBuild()
+                .id("build" + buildStartTime)
+                .availableAt(buildStartTime * 1000L + 100_000L)
+                .buildToolType("gradle")
+                .models(new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(attributes))));
+    }
+
     private void failedBuild(int buildStartTime) {
         buildViews.add(new BuildView(
                 "user",
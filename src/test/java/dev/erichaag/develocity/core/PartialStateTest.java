@@ -0,0 +1,123 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.ApiBuild;
+import dev.erichaag.develocity.api.BuildAttributesEnvironment;
+import dev.erichaag.develocity.api.BuildAttributesValue;
+import dev.erichaag.develocity.api.BuildCache;
+import dev.erichaag.develocity.api.BuildModels;
+import dev.erichaag.develocity.api.BuildModelsGradleAttributes;
+import dev.erichaag.develocity.api.BuildProcessor;
+import dev.erichaag.develocity.api.GradleAttributes;
+import dev.erichaag.develocity.api.InMemoryDevelocityClient;
+import dev.erichaag.develocity.core.IncidentTracker.BuildView;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PartialStateTest {
+
+    private static final List<String> projects = IntStream.range(0, 20).mapToObj(it -> "project" + it).toList();
+
+    @Test
+    void givenPartialStatesOfAllShards_thenMergedReportMatchesSingleWorker() throws IOException {
+        final var directory = Files.createTempDirectory("partial");
+        final var singleWorker = trackAll(Shard.all);
+        final var first = directory.resolve("shard-0.json");
+        final var second = directory.resolve("shard-1.json");
+        PartialState.write(first, List.of(trackAll(new Shard(0, 2))), Instant.ofEpochSecond(10_000));
+        PartialState.write(second, List.of(trackAll(new Shard(1, 2))), Instant.ofEpochSecond(20_000));
+
+        final var merged = PartialState.merge(List.of(first, second));
+
+        final var since = Instant.ofEpochSecond(0).atZone(UTC);
+        final var until = Instant.ofEpochSecond(20_000).atZone(UTC);
+        assertEquals(until.toInstant(), merged.until());
+        assertEquals(projects.size(), merged.incidentsByShard().values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(List.of(new Shard(0, 2), new Shard(1, 2)), List.copyOf(merged.incidentsByShard().keySet()));
+        final var expected = new IncidentReport(singleWorker, since, until, null);
+        final var actual = new IncidentReport(merged.trackers(), since, until, null);
+        assertEquals(projects.size(), actual.incidentCount());
+        assertEquals(expected.tables(), actual.tables());
+    }
+
+    @Test
+    void givenMissingOrDuplicateShard_thenMergeFails() throws IOException {
+        final var directory = Files.createTempDirectory("partial");
+        final var first = directory.resolve("shard-0.json");
+        PartialState.write(first, List.of(trackAll(new Shard(0, 2))), Instant.ofEpochSecond(10_000));
+
+        assertThrows(IllegalArgumentException.class, () -> PartialState.merge(List.of(first)));
+        assertThrows(IllegalArgumentException.class, () -> PartialState.merge(List.of(first, first)));
+    }
+
+    @Test
+    void givenShards_thenEachWorkerFetchesOnlyTheBuildsOfItsShard() throws IOException {
+        final var names = List.of("alpha", "Bravo", "charlie", "delta", "echo", "foxtrot", "golf", "9lives", "_internal");
+        final var apiBuilds = IntStream.range(0, 90).mapToObj(it -> apiBuild(names.get(it % names.size()), 1000 + it, it % 3 == 0)).toList();
+        final var shards = IntStream.range(0, 3).mapToObj(it -> new Shard(it, 3)).toList();
+
+        var fetchedBuilds = 0;
+        for (var shard : shards) {
+            final var client = new InMemoryDevelocityClient(apiBuilds);
+            final var processor = new BuildProcessor(client, 100, new BuildCache(Files.createTempDirectory("cache")));
+            processor.registerListener(new IncidentTracker("default", shard));
+            processor.process(Instant.EPOCH.atZone(UTC));
+
+            final var buildsOfShard = names.stream().filter(shard::includes).count() * apiBuilds.size() / names.size();
+            assertTrue(buildsOfShard > 0 && buildsOfShard < apiBuilds.size());
+            assertEquals(buildsOfShard, client.getFetchedBuilds());
+            fetchedBuilds += client.getFetchedBuilds();
+        }
+        assertEquals(apiBuilds.size(), fetchedBuilds);
+    }
+
+    private static IncidentTracker trackAll(Shard shard) {
+        final var tracker = new IncidentTracker("default", shard);
+        for (int i = 0; i < projects.size(); i++) {
+            tracker.track(build(projects.get(i), 1000 + i, true));
+            tracker.track(build(projects.get(i), 5000 + i * 100, false));
+        }
+        tracker.onProcessingFinished(null);
+        return tracker;
+    }
+
+    private static ApiBuild apiBuild(String project, int buildStartTime, boolean hasFailed) {
+        final var attributes = new GradleAttributes()
+                .rootProjectName(project)
+                .requestedTasks(List.of("build"))
+                .tags(List.of("CI"))
+                .values(List.of(new BuildAttributesValue().name("Git branch").value("main")))
+                .hasFailed(hasFailed)
+                .buildStartTime(buildStartTime * 1000L)
+                .buildDuration(100_000L)
+                .environment(new BuildAttributesEnvironment().username("user"));
+        return new ApiBuild()
+                .id(project + "-" + buildStartTime)
+                .availableAt(buildStartTime * 1000L + 100_000L)
+                .buildToolType("gradle")
+                .models(new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(attributes)));
+    }
+
+    private static BuildView build(String project, int buildStartTime, boolean hasFailed) {
+        return new BuildView(
+                "user",
+                project,
+                List.of("build"),
+                List.of("CI"),
+                List.of(new BuildAttributesValue().name("Git branch").value("main")),
+                hasFailed,
+                Instant.ofEpochSecond(buildStartTime),
+                Duration.ofSeconds(100));
+    }
+
+}
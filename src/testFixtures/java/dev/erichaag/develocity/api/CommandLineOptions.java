@@ -0,0 +1,23 @@
+package dev.erichaag.develocity.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses {@code --name=value} options, and {@code --name} flags as {@code true}, for the fixtures run from the command line.
+ */
+public final class CommandLineOptions {
+
+    private CommandLineOptions() {
+    }
+
+    public static Map<String, String> parse(String[] args) {
+        final var options = new HashMap<String, String>();
+        for (var arg : args) {
+            final var option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+}
@@ -0,0 +1,74 @@
+package dev.erichaag.develocity.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * A {@link DevelocityClient} serving builds from memory, for feeding {@link BuildProcessor} without any HTTP.
+ * Requested models are ignored and builds are always returned with all the models they were created with. Queries are
+ * matched as far as {@link QueryMatcher} understands them.
+ */
+public final class InMemoryDevelocityClient implements DevelocityClient {
+
+    private final List<ApiBuild> apiBuilds = new ArrayList<>();
+    private final Map<String, Integer> buildIndex = new HashMap<>();
+    private final Map<String, Predicate<ApiBuild>> queries = new HashMap<>();
+    private final AtomicInteger fetchedBuilds = new AtomicInteger();
+
+    private List<ApiBuild> sortedApiBuilds;
+    private List<Build> builds;
+
+    public InMemoryDevelocityClient(Collection<ApiBuild> builds) {
+        add(builds);
+    }
+
+    /**
+     * Adds builds as if they became available on the server since the last request.
+     */
+    public synchronized void add(Collection<ApiBuild> builds) {
+        apiBuilds.addAll(builds);
+        this.sortedApiBuilds = apiBuilds.stream()
+                .sorted(Comparator.comparingLong(ApiBuild::getAvailableAt).reversed())
+                .toList();
+        this.builds = sortedApiBuilds.stream().map(Build::from).toList();
+        buildIndex.clear();
+        for (int i = 0; i < this.builds.size(); i++) {
+            buildIndex.put(this.builds.get(i).getId(), i);
+        }
+    }
+
+    /**
+     * The number of builds returned so far by requests for models, which are the builds that were fetched.
+     */
+    public int getFetchedBuilds() {
+        return fetchedBuilds.get();
+    }
+
+    @Override
+    public synchronized Build getBuild(String id, BuildModel... buildModels) {
+        final var index = buildIndex.get(id);
+        if (index == null) throw new RuntimeException("Build " + id + " not found");
+        if (buildModels.length > 0) fetchedBuilds.incrementAndGet();
+        return builds.get(index);
+    }
+
+    @Override
+    public synchronized List<Build> getBuilds(String query, Integer maxBuilds, String fromBuild, BuildModel... buildModels) {
+        final var matcher = queries.computeIfAbsent(String.valueOf(query), it -> QueryMatcher.parse(query));
+        final var start = fromBuild == null ? 0 : buildIndex.get(fromBuild) + 1;
+        final var max = maxBuilds == null ? 100 : maxBuilds;
+        final var page = new ArrayList<Build>();
+        for (int i = start; i < builds.size() && page.size() < max; i++) {
+            if (matcher.test(sortedApiBuilds.get(i))) page.add(builds.get(i));
+        }
+        if (buildModels.length > 0) fetchedBuilds.addAndGet(page.size());
+        return page;
+    }
+
+}
@@ -0,0 +1,118 @@
+package dev.erichaag.develocity.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Matches builds against the subset of the advanced search syntax composed by {@link BuildQuery}: {@code field:value}
+ * terms on the {@code project}, {@code tag}, {@code buildTool}, and {@code user} fields, with {@code *} wildcards,
+ * combined with {@code and}, {@code or}, {@code not}, and parentheses.
+ */
+final class QueryMatcher {
+
+    private final List<String> tokens;
+    private int position;
+
+    private QueryMatcher(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    static Predicate<ApiBuild> parse(String query) {
+        if (query == null || query.isBlank()) return it -> true;
+        final var parser = new QueryMatcher(tokenize(query));
+        final var predicate = parser.or();
+        if (parser.position != parser.tokens.size()) throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in query: " + query);
+        return predicate;
+    }
+
+    private Predicate<ApiBuild> or() {
+        var predicate = and();
+        while (accept("or")) predicate = predicate.or(and());
+        return predicate;
+    }
+
+    private Predicate<ApiBuild> and() {
+        var predicate = unary();
+        while (accept("and")) predicate = predicate.and(unary());
+        return predicate;
+    }
+
+    private Predicate<ApiBuild> unary() {
+        if (accept("not")) return unary().negate();
+        if (accept("(")) {
+            final var predicate = or();
+            if (!accept(")")) throw new IllegalArgumentException("Missing ')' in query");
+            return predicate;
+        }
+        return term(tokens.get(position++));
+    }
+
+    private boolean accept(String token) {
+        if (position >= tokens.size() || !tokens.get(position).equals(token)) return false;
+        position++;
+        return true;
+    }
+
+    private static Predicate<ApiBuild> term(String term) {
+        final var separator = term.indexOf(':');
+        if (separator < 0) throw new IllegalArgumentException("Expected <field>:<value> but was '" + term + "'");
+        final var value = term.substring(separator + 1).replaceAll("^\"|\"$", "");
+        final var pattern = Pattern.compile(Stream.of(value.split("\\*", -1)).map(Pattern::quote).reduce((a, b) -> a + ".*" + b).orElseThrow());
+        final var field = term.substring(0, separator);
+        return switch (field) {
+            case "project" -> build -> matches(pattern, attribute(build, "project"));
+            case "tag" -> build -> tags(build).stream().anyMatch(it -> pattern.matcher(it).matches());
+            case "buildTool" -> build -> matches(pattern, build.getBuildToolType());
+            case "user" -> build -> matches(pattern, attribute(build, "user"));
+            default -> throw new IllegalArgumentException("Unsupported field '" + field + "'");
+        };
+    }
+
+    private static boolean matches(Pattern pattern, String value) {
+        return value != null && pattern.matcher(value).matches();
+    }
+
+    private static String attribute(ApiBuild build, String name) {
+        final var models = build.getModels();
+        if (models == null) return null;
+        if (models.getGradleAttributes() != null) {
+            final var attributes = models.getGradleAttributes().getModel();
+            return name.equals("project") ? attributes.getRootProjectName() : attributes.getEnvironment().getUsername();
+        }
+        if (models.getMavenAttributes() != null) {
+            final var attributes = models.getMavenAttributes().getModel();
+            return name.equals("project") ? attributes.getTopLevelProjectName() : attributes.getEnvironment().getUsername();
+        }
+        return null;
+    }
+
+    private static List<String> tags(ApiBuild build) {
+        final var models = build.getModels();
+        if (models == null) return List.of();
+        if (models.getGradleAttributes() != null) return models.getGradleAttributes().getModel().getTags();
+        if (models.getMavenAttributes() != null) return models.getMavenAttributes().getModel().getTags();
+        return List.of();
+    }
+
+    private static List<String> tokenize(String query) {
+        final var tokens = new ArrayList<String>();
+        var token = new StringBuilder();
+        var quoted = false;
+        for (var c : query.toCharArray()) {
+            if (c == '"') quoted = !quoted;
+            if (!quoted && (Character.isWhitespace(c) || c == '(' || c == ')')) {
+                if (!token.isEmpty()) tokens.add(token.toString());
+                token = new StringBuilder();
+                if (!Character.isWhitespace(c)) tokens.add(String.valueOf(c));
+            } else {
+                token.append(c);
+            }
+        }
+        if (!token.isEmpty()) tokens.add(token.toString());
+        return tokens;
+    }
+
+}
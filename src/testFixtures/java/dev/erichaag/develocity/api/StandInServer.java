@@ -0,0 +1,307 @@
+package dev.erichaag.develocity.api;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.lang.Integer.parseInt;
+import static java.lang.Math.min;
+import static java.net.URLDecoder.decode;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A local stand-in for the Develocity builds API that serves recorded or generated builds.
+ * Supports the {@code query}, {@code fromBuild}, {@code reverse}, {@code maxBuilds}, {@code models} and
+ * {@code allModels} parameters of {@code /api/builds} and {@code /api/builds/{id}}, and can inject latency, server
+ * errors and rate limiting. Queries are matched as far as {@link QueryMatcher} understands them.
+ */
+public final class StandInServer implements AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new JsonMapper();
+    private static final ObjectMapper apiBuildMapper = new JsonMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final int defaultMaxBuilds = 100;
+    private static final int maxMaxBuilds = 1_000;
+
+    private final List<ObjectNode> builds;
+    private final Map<String, Integer> buildIndex = new HashMap<>();
+    private final Map<Integer, ApiBuild> apiBuilds = new ConcurrentHashMap<>();
+    private final Map<String, Predicate<ApiBuild>> queries = new ConcurrentHashMap<>();
+    private final Faults faults;
+    private final Random random;
+    private final Deque<Fault> injectedFaults = new ArrayDeque<>();
+    private final HttpServer server;
+
+    private StandInServer(int port, Collection<ObjectNode> builds, Faults faults) throws IOException {
+        this.builds = builds.stream().sorted(Comparator.comparingLong(it -> it.path("availableAt").asLong())).toList();
+        for (int i = 0; i < this.builds.size(); i++) {
+            buildIndex.put(this.builds.get(i).path("id").asText(), i);
+        }
+        this.faults = faults;
+        this.random = new Random(faults.seed());
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/api/builds", this::handle);
+        this.server.start();
+    }
+
+    public static StandInServer start(int port, Collection<ApiBuild> builds, Faults faults) {
+        return startWithJson(port, builds.stream().map(it -> (ObjectNode) objectMapper.valueToTree(it)).toList(), faults);
+    }
+
+    public static StandInServer startWithJson(int port, Collection<ObjectNode> builds, Faults faults) {
+        try {
+            return new StandInServer(port, builds, faults);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public URI getServerUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    public int size() {
+        return builds.size();
+    }
+
+    /**
+     * Injects the given faults into the next requests in the order they arrive, ahead of the random ones.
+     */
+    public synchronized void injectFaults(Fault... faults) {
+        injectedFaults.addAll(List.of(faults));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Loads recorded builds from a JSON array file, a single build file or a directory of such files.
+     * A directory written by {@link BuildProcessor} as its cache can be replayed as-is.
+     */
+    public static List<ObjectNode> load(Path path) {
+        try (var files = Files.isDirectory(path) ? Files.walk(path) : Stream.of(path)) {
+            final var builds = new ArrayList<ObjectNode>();
+            files.filter(it -> it.toString().endsWith(".json") || it.toString().endsWith(".bin")).forEach(file -> {
+                final var json = readTree(file);
+                if (json.isArray()) {
+                    json.forEach(it -> builds.add((ObjectNode) it));
+                } else if (json.has("build") && json.has("buildModels")) {
+                    builds.add((ObjectNode) json.get("build"));
+                } else {
+                    builds.add((ObjectNode) json);
+                }
+            });
+            return builds;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final var fault = nextFault();
+            if (!fault.latency().isZero()) sleep(fault.latency());
+            if (fault.throttled()) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 429, "{\"title\":\"Too many requests\"}");
+            } else if (fault.failed()) {
+                respond(exchange, 500, "{\"title\":\"Injected server error\"}");
+            } else if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "{\"title\":\"Method not allowed\"}");
+            } else {
+                route(exchange);
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        final var path = exchange.getRequestURI().getPath();
+        final var parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        final var modelsFilter = new ModelsFilter(
+                parameters.getOrDefault("allModels", List.of()).contains("true"),
+                new HashSet<>(parameters.getOrDefault("models", List.of())));
+        if (path.equals("/api/builds") || path.equals("/api/builds/")) {
+            handleBuilds(exchange, parameters, modelsFilter);
+        } else {
+            handleBuild(exchange, path.substring("/api/builds/".length()), modelsFilter);
+        }
+    }
+
+    private void handleBuilds(HttpExchange exchange, Map<String, List<String>> parameters, ModelsFilter modelsFilter) throws IOException {
+        final var reverse = first(parameters, "reverse").map(Boolean::parseBoolean).orElse(false);
+        final var maxBuilds = min(first(parameters, "maxBuilds").map(Integer::parseInt).orElse(defaultMaxBuilds), maxMaxBuilds);
+        final Predicate<ApiBuild> matcher;
+        try {
+            matcher = first(parameters, "query").map(it -> queries.computeIfAbsent(it, QueryMatcher::parse)).orElse(null);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, objectMapper.writeValueAsString(Map.of("title", String.valueOf(e.getMessage()))));
+            return;
+        }
+        var start = 0;
+        final var fromBuild = first(parameters, "fromBuild");
+        if (fromBuild.isPresent()) {
+            final var index = buildIndex.get(fromBuild.get());
+            if (index == null) {
+                respond(exchange, 400, "{\"title\":\"Unknown build " + fromBuild.get() + "\"}");
+                return;
+            }
+            start = (reverse ? builds.size() - 1 - index : index) + 1;
+        }
+        final var page = objectMapper.createArrayNode();
+        for (int i = start; i < builds.size() && page.size() < maxBuilds; i++) {
+            final var index = reverse ? builds.size() - 1 - i : i;
+            if (matcher == null || matcher.test(apiBuild(index))) page.add(modelsFilter.apply(builds.get(index)));
+        }
+        respond(exchange, 200, objectMapper.writeValueAsString(page));
+    }
+
+    // builds are only read into their models for matching queries, and only once
+    private ApiBuild apiBuild(int index) {
+        return apiBuilds.computeIfAbsent(index, it -> apiBuildMapper.convertValue(builds.get(it), ApiBuild.class));
+    }
+
+    private void handleBuild(HttpExchange exchange, String id, ModelsFilter modelsFilter) throws IOException {
+        final var index = buildIndex.get(id);
+        if (index == null) {
+            respond(exchange, 404, "{\"title\":\"Build not found\"}");
+            return;
+        }
+        respond(exchange, 200, objectMapper.writeValueAsString(modelsFilter.apply(builds.get(index))));
+    }
+
+    private synchronized Fault nextFault() {
+        if (!injectedFaults.isEmpty()) return injectedFaults.poll();
+        final var jitter = faults.jitter().isZero() ? 0 : (long) (random.nextDouble() * faults.jitter().toNanos());
+        final var throttled = random.nextDouble() < faults.throttleRate();
+        final var failed = random.nextDouble() < faults.errorRate();
+        return new Fault(faults.latency().plusNanos(jitter), throttled, failed);
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        final var bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, List<String>> parseParameters(String rawQuery) {
+        final var parameters = new HashMap<String, List<String>>();
+        if (rawQuery == null || rawQuery.isEmpty()) return parameters;
+        Arrays.stream(rawQuery.split("&")).map(it -> it.split("=", 2)).forEach(it ->
+                parameters.computeIfAbsent(decode(it[0], UTF_8), __ -> new ArrayList<>()).add(it.length > 1 ? decode(it[1], UTF_8) : ""));
+        return parameters;
+    }
+
+    private static Optional<String> first(Map<String, List<String>> parameters, String name) {
+        return parameters.getOrDefault(name, List.of()).stream().findFirst();
+    }
+
+    // binary cache entries are converted back to the JSON of the build they hold
+    private static JsonNode readTree(Path file) {
+        try {
+            final var bytes = Files.readAllBytes(file);
+            if (BinaryCachedBuild.isBinary(bytes)) {
+                final var json = new ByteArrayOutputStream();
+                LazyApiBuild.of(BinaryCachedBuild.read(bytes).build()).writeTo(json);
+                return objectMapper.readTree(json.toByteArray());
+            }
+            return objectMapper.readTree(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read recorded builds from " + file, e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+        final var options = CommandLineOptions.parse(args);
+        final var builds = options.containsKey("synthetic")
+                ? generate(options)
+                : load(Path.of(options.getOrDefault("builds", BuildCache.inUserHome().getDirectory().toString())));
+        final var faults = new Faults(
+                Duration.ofMillis(parseInt(options.getOrDefault("latency", "0"))),
+                Duration.ofMillis(parseInt(options.getOrDefault("jitter", "0"))),
+                Double.parseDouble(options.getOrDefault("error-rate", "0")),
+                Double.parseDouble(options.getOrDefault("throttle-rate", "0")),
+                Long.parseLong(options.getOrDefault("seed", "0")));
+        final var server = startWithJson(parseInt(options.getOrDefault("port", "8080")), builds, faults);
+        System.out.println("Serving " + server.size() + " builds at " + server.getServerUrl());
+    }
+
+    private static List<ObjectNode> generate(Map<String, String> options) {
+        var profile = SyntheticBuildHistory.Profile.named(options.get("synthetic"));
+        if (options.containsKey("synthetic-builds")) profile = profile.withBuilds(parseInt(options.get("synthetic-builds")));
+        return SyntheticBuildHistory.generate(profile).map(it -> (ObjectNode) objectMapper.valueToTree(it)).toList();
+    }
+
+    public record Faults(Duration latency, Duration jitter, double errorRate, double throttleRate, long seed) {
+
+        public static Faults none() {
+            return new Faults(Duration.ZERO, Duration.ZERO, 0, 0, 0);
+        }
+
+    }
+
+    public record Fault(Duration latency, boolean throttled, boolean failed) {
+    }
+
+    private record ModelsFilter(boolean allModels, Set<String> models) {
+
+        private ObjectNode apply(ObjectNode build) {
+            final var result = objectMapper.createObjectNode();
+            build.fields().forEachRemaining(field -> {
+                if (!field.getKey().equals("models")) {
+                    result.set(field.getKey(), field.getValue());
+                } else if (allModels) {
+                    result.set("models", field.getValue());
+                } else if (!models.isEmpty()) {
+                    final var filtered = result.putObject("models");
+                    Arrays.stream(BuildModel.values())
+                            .filter(it -> models.contains(it.modelName))
+                            .filter(it -> field.getValue().has(it.propertyName))
+                            .forEach(it -> filtered.set(it.propertyName, field.getValue().get(it.propertyName)));
+                }
+            });
+            return result;
+        }
+
+    }
+
+}
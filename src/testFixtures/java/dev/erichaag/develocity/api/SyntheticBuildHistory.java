@@ -0,0 +1,214 @@
+package dev.erichaag.develocity.api;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.pow;
+
+/**
+ * Generates a deterministic, realistic-looking history of Gradle and Maven builds for scale testing.
+ * <p>
+ * Projects and users are chosen with a Zipf-like skew so that a few of them account for most builds, as on real servers.
+ * Failures come in streaks: each incident key (the same key {@code IncidentTracker} uses) starts failing with probability
+ * {@link Profile#failureRate()} and then keeps failing for a geometrically distributed number of builds with mean
+ * {@link Profile#meanFailureStreak()}.
+ * Builds are generated in ascending {@code availableAt} order, lazily, so arbitrarily large histories can be streamed.
+ */
+public final class SyntheticBuildHistory {
+
+    private static final List<List<String>> gradleTasks = List.of(List.of("build"), List.of("check"), List.of("test"), List.of("assemble"), List.of("clean", "build"));
+    private static final List<List<String>> mavenGoals = List.of(List.of("clean", "install"), List.of("verify"), List.of("package"), List.of("test"));
+    private static final char[] idAlphabet = "abcdefghijklmnopqrstuvwxyz234567".toCharArray();
+
+    private final Profile profile;
+    private final Random random;
+    private final double[] projectWeights;
+    private final double[] userWeights;
+    private final Set<String> failingKeys = new HashSet<>();
+
+    private long index = 0;
+    private long availableAt;
+
+    private SyntheticBuildHistory(Profile profile) {
+        this.profile = profile;
+        this.random = new Random(profile.seed());
+        this.projectWeights = zipfCumulativeWeights(profile.projects());
+        this.userWeights = zipfCumulativeWeights(profile.users());
+        this.availableAt = profile.start().toEpochMilli();
+    }
+
+    public static Stream<ApiBuild> generate(Profile profile) {
+        final var history = new SyntheticBuildHistory(profile);
+        return IntStream.range(0, profile.builds()).mapToObj(__ -> history.next());
+    }
+
+    public static List<ApiBuild> generateList(Profile profile) {
+        return generate(profile).toList();
+    }
+
+    public static void writeCache(Profile profile, Path cacheDirectory) {
+        final var cache = new BuildCache(cacheDirectory);
+        final var buildModels = Set.of(BuildModel.GRADLE_ATTRIBUTES, BuildModel.MAVEN_ATTRIBUTES);
+        generate(profile).forEach(it -> cache.write(new BuildCache.CachedBuild(buildModels, Build.from(it))));
+    }
+
+    private ApiBuild next() {
+        availableAt += max(1, (long) exponential(profile.meanInterval().toMillis()));
+        final var isGradle = random.nextDouble() < profile.gradleShare();
+        final var isCi = random.nextDouble() < profile.ciShare();
+        final var project = "project-" + pick(projectWeights);
+        final var username = isCi ? "ci-agent-" + random.nextInt(max(1, profile.users() / 100)) : "user-" + pick(userWeights);
+        final var requested = isGradle ? gradleTasks.get(random.nextInt(gradleTasks.size())) : mavenGoals.get(random.nextInt(mavenGoals.size()));
+        final var branch = random.nextDouble() < 0.6 ? "main" : "feature-" + random.nextInt(profile.branchesPerProject());
+        final var isIdeSync = !isCi && isGradle && random.nextDouble() < 0.1;
+        final var hasBranch = random.nextDouble() >= 0.02;
+        final var key = isCi
+                ? "ci," + project + "," + String.join(" ", requested) + "," + branch
+                : "local," + username + "," + project + "," + String.join(" ", requested) + ",ide_sync=" + isIdeSync;
+        final var hasFailed = nextFailure(key);
+        final var duration = max(1_000, (long) exponential(profile.meanBuildDuration().toMillis()));
+        final var buildStartTime = availableAt - duration - random.nextInt(5_000);
+        final var tags = isCi ? List.of("CI") : isIdeSync ? List.of("LOCAL", "IDE sync") : List.of("LOCAL");
+        final var values = hasBranch ? List.of(new BuildAttributesValue().name("Git branch").value(branch)) : List.<BuildAttributesValue>of();
+        final var environment = new BuildAttributesEnvironment().username(username);
+        final var id = nextId();
+        final var models = isGradle
+                ? new BuildModels().gradleAttributes(new BuildModelsGradleAttributes().model(new GradleAttributes()
+                        .id(id)
+                        .buildStartTime(buildStartTime)
+                        .buildDuration(duration)
+                        .gradleVersion("8.8")
+                        .rootProjectName(project)
+                        .requestedTasks(requested)
+                        .hasFailed(hasFailed)
+                        .tags(tags)
+                        .values(values)
+                        .environment(environment)))
+                : new BuildModels().mavenAttributes(new BuildModelsMavenAttributes().model(new MavenAttributes()
+                        .id(id)
+                        .buildStartTime(buildStartTime)
+                        .buildDuration(duration)
+                        .mavenVersion("3.9.6")
+                        .topLevelProjectName(project)
+                        .requestedGoals(requested)
+                        .hasFailed(hasFailed)
+                        .tags(tags)
+                        .values(values)
+                        .environment(environment)));
+        return new ApiBuild()
+                .id(id)
+                .availableAt(availableAt)
+                .buildToolType(isGradle ? "gradle" : "maven")
+                .buildToolVersion(isGradle ? "8.8" : "3.9.6")
+                .buildAgentVersion(isGradle ? "3.17.4" : "1.21.4")
+                .models(models);
+    }
+
+    private boolean nextFailure(String key) {
+        if (failingKeys.contains(key)) {
+            if (random.nextDouble() < 1 / profile.meanFailureStreak()) {
+                failingKeys.remove(key);
+                return false;
+            }
+            return true;
+        }
+        if (random.nextDouble() < profile.failureRate()) {
+            failingKeys.add(key);
+            return true;
+        }
+        return false;
+    }
+
+    // a bijective mix of the build index, so ids are unique, stable for a seed and look like Develocity build scan ids
+    private String nextId() {
+        var value = (index++) ^ profile.seed();
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        value = value ^ (value >>> 31);
+        final var id = new char[13];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = idAlphabet[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(id);
+    }
+
+    private int pick(double[] cumulativeWeights) {
+        final var index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private double exponential(double mean) {
+        return -mean * log(1 - random.nextDouble());
+    }
+
+    private static double[] zipfCumulativeWeights(int size) {
+        final var weights = new double[size];
+        var total = 0.0;
+        for (int i = 0; i < size; i++) {
+            total += 1 / pow(i + 1, 1.1);
+            weights[i] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            weights[i] /= total;
+        }
+        weights[size - 1] = 1.0;
+        return weights;
+    }
+
+    public record Profile(
+            int builds,
+            int users,
+            int projects,
+            int branchesPerProject,
+            double ciShare,
+            double gradleShare,
+            double failureRate,
+            double meanFailureStreak,
+            Duration meanBuildDuration,
+            Duration meanInterval,
+            Instant start,
+            long seed) {
+
+        public static Profile of(int builds, int users, int projects) {
+            return new Profile(builds, users, projects, 20, 0.4, 0.7, 0.05, 3, Duration.ofMinutes(4), Duration.ofSeconds(3), Instant.parse("2024-01-01T00:00:00Z"), 42);
+        }
+
+        public static Profile named(String scenario) {
+            return switch (scenario) {
+                case "small" -> of(100_000, 1_000, 100);
+                case "medium" -> of(1_000_000, 10_000, 1_000);
+                case "large" -> of(10_000_000, 50_000, 5_000);
+                default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            };
+        }
+
+        public Profile withBuilds(int builds) {
+            return new Profile(builds, users, projects, branchesPerProject, ciShare, gradleShare, failureRate, meanFailureStreak, meanBuildDuration, meanInterval, start, seed);
+        }
+
+        public Profile withFailures(double failureRate, double meanFailureStreak) {
+            return new Profile(builds, users, projects, branchesPerProject, ciShare, gradleShare, failureRate, meanFailureStreak, meanBuildDuration, meanInterval, start, seed);
+        }
+
+        public Profile withSeed(long seed) {
+            return new Profile(builds, users, projects, branchesPerProject, ciShare, gradleShare, failureRate, meanFailureStreak, meanBuildDuration, meanInterval, start, seed);
+        }
+
+        public Instant end() {
+            return start.plus(meanInterval.multipliedBy(builds));
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package dev.erichaag.develocity.core;
+
+import dev.erichaag.develocity.api.Build;
+import dev.erichaag.develocity.api.CommandLineOptions;
+import dev.erichaag.develocity.api.BuildProcessorListener.ProcessingFinishedEvent;
+import dev.erichaag.develocity.api.GradleBuild;
+import dev.erichaag.develocity.api.MavenBuild;
+import dev.erichaag.develocity.api.SyntheticBuildHistory;
+import dev.erichaag.develocity.api.SyntheticBuildHistory.Profile;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static dev.erichaag.develocity.core.Durations.format;
+import static java.lang.Integer.parseInt;
+import static java.time.ZoneId.systemDefault;
+
+/**
+ * Feeds a synthetic build history through {@link IncidentTracker} and {@link IncidentReport} and reports the time
+ * spent in each stage together with the peak heap usage. See the README for the available scenarios.
+ */
+public final class ScaleTest {
+
+    private static final AtomicLong peakHeapUsage = new AtomicLong();
+
+    public static void main(String[] args) {
+        final var options = CommandLineOptions.parse(args);
+        final var scenario = Profile.named(options.getOrDefault("scenario", "small"));
+        final var profile = options.containsKey("builds") ? scenario.withBuilds(parseInt(options.get("builds"))) : scenario;
+        System.out.printf("Running scale test with %d builds, %d users and %d projects%n", profile.builds(), profile.users(), profile.projects());
+
+        final var tracker = new IncidentTracker();
+        final var builds = new AtomicLong();
+        final var trackingDuration = measure(() -> SyntheticBuildHistory.generate(profile).map(Build::from).forEach(build -> {
+            switch (build) {
+                case GradleBuild b -> tracker.onGradleBuild(b);
+                case MavenBuild b -> tracker.onMavenBuild(b);
+                default -> {
+                }
+            }
+            if (builds.incrementAndGet() % 1_000 == 0) sampleHeapUsage();
+        }));
+        print("Generated and tracked %d builds", builds.get(), trackingDuration);
+
+        final var incidentsDuration = measure(() -> tracker.onProcessingFinished(new ProcessingFinishedEvent(Instant.now())));
+        print("Derived %d resolved incidents", tracker.getResolvedIncidents().size(), incidentsDuration);
+
+        final var since = profile.start().atZone(systemDefault());
+        final var until = profile.end().atZone(systemDefault());
+        final var report = new AtomicReference<IncidentReport>();
+        final var reportDuration = measure(() -> report.set(new IncidentReport(tracker, since, until, null)));
+        print("Computed %d report tables", report.get().tables().size(), reportDuration);
+
+        System.out.printf("Peak heap usage %d MiB%n", peakHeapUsage.get() / (1024 * 1024));
+    }
+
+    private static Duration measure(Runnable runnable) {
+        final var startedOn = System.nanoTime();
+        runnable.run();
+        sampleHeapUsage();
+        return Duration.ofNanos(System.nanoTime() - startedOn);
+    }
+
+    private static void print(String format, long count, Duration duration) {
+        final var perSecond = duration.toMillis() == 0 ? count : count * 1000 / duration.toMillis();
+        System.out.printf(format + " in %s (%d/s)%n", count, format(duration), perSecond);
+    }
+
+    // the heap pools peak at different times, so the heap is sampled as a whole rather than summing their peaks
+    private static void sampleHeapUsage() {
+        peakHeapUsage.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+}